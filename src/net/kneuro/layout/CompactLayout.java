@@ -0,0 +1,396 @@
+/**
+ * Copyright (c) 2018 Joseph A Knapka
+ *
+ * This code is released under the terms of the MIT License.
+ */
+package net.kneuro.layout;
+
+import java.nio.CharBuffer;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * A parsed layout stored as parallel arrays rather than as one object
+ * per component. Component i's position and extent are rows[i],
+ * cols[i], widths[i] and heights[i]; its embedded constraints are
+ * specs[specIndexes[i]], where specs holds each distinct spec once;
+ * and its name is the characters names[nameStarts[i]] up to
+ * names[nameStarts[i+1]] in a single shared character table. Names
+ * are found through an open-addressing hash table of component
+ * indexes, so looking a component up never creates a String.
+ * <p>
+ * For layouts with tens of thousands of cells this takes a fraction
+ * of the memory of a LayoutParser's object graph, and it does not
+ * keep the layout text alive. As in a LayoutParser, a component in a
+ * repeated row whose name contains '#' is stored once, with its
+ * repeat count in repeats[i], as the template for all its copies.
+ * Sub-layouts are not supported.
+ *
+ * @author jk
+ */
+final class CompactLayout {
+
+	/**
+	 * Parse a layout into compact form.
+	 * @param layout The layout text.
+	 * @return The compact layout.
+	 * @throws RuntimeException if the layout cannot be parsed, uses a
+	 * component identifier more than once, or has a sub-layout.
+	 */
+	static CompactLayout compile(CharSequence layout) {
+		Builder builder = new Builder();
+		StreamingLayoutParser.parse(layout,builder);
+		return builder.build();
+	}
+
+	/**
+	 * @return The number of components stored, counting a component in
+	 * a repeated row once.
+	 */
+	int size() {
+		return size;
+	}
+
+	/**
+	 * @return The number of components, counting each copy of a
+	 * component in a repeated row.
+	 */
+	long componentCount() {
+		long count = size - templates.length;
+		for (LayoutComponent template: templates) {
+			count += template.repeat;
+		}
+		return count;
+	}
+
+	/**
+	 * @param name A component name.
+	 * @return The component with that name, including a copy of a
+	 * component in a repeated row, or null.
+	 */
+	LayoutComponent getComponent(String name) {
+		int idx = indexOf(name);
+		if (idx >= 0) {
+			return componentAt(idx);
+		}
+		LayoutComponent template = (shapes != null) ? shapes.find(name,0,name.length()) : null;
+		return (template != null) ? template.getRepetition(template.repetitionIndex(name)) : null;
+	}
+
+	/**
+	 * @param name A component name.
+	 * @return The index of the component with that name, or -1. The
+	 * copies of a component in a repeated row are not found.
+	 */
+	int indexOf(String name) {
+		int mask = slots.length - 1;
+		int slot = spread(name.hashCode()) & mask;
+		while (slots[slot] != 0) {
+			int idx = slots[slot] - 1;
+			if (nameEquals(idx,name)) {
+				return idx;
+			}
+			slot = (slot + 1) & mask;
+		}
+		return -1;
+	}
+
+	/**
+	 * @param idx A component index.
+	 * @return The component's name.
+	 */
+	String nameAt(int idx) {
+		return new String(names,nameStarts[idx],nameStarts[idx+1] - nameStarts[idx]).intern();
+	}
+
+	// Component details by index.
+
+	int rowAt(int idx) {
+		return rows[idx];
+	}
+
+	int columnAt(int idx) {
+		return cols[idx];
+	}
+
+	int widthAt(int idx) {
+		return widths[idx];
+	}
+
+	int heightAt(int idx) {
+		return heights[idx];
+	}
+
+	// The number of copies, if the component is in a repeated row and
+	// its name contains '#'; otherwise 0.
+	int repeatAt(int idx) {
+		return repeats[idx];
+	}
+
+	ConstraintSpec constraintsAt(int idx) {
+		return specs[specIndexes[idx]];
+	}
+
+	/**
+	 * @param idx A component index.
+	 * @return A LayoutComponent holding a copy of the component's details.
+	 */
+	LayoutComponent componentAt(int idx) {
+		LayoutComponent comp = new LayoutComponent(nameAt(idx),rows[idx],cols[idx],constraintsAt(idx));
+		comp.width = widths[idx];
+		comp.height = heights[idx];
+		comp.repeat = repeats[idx];
+		return comp;
+	}
+
+	/**
+	 * Create a compact layout from its arrays, which it takes ownership
+	 * of, and index the names.
+	 * @param size The number of components.
+	 * @param rows Each component's row.
+	 * @param cols Each component's column.
+	 * @param widths Each component's width.
+	 * @param heights Each component's height.
+	 * @param repeats Each component's repeat count, or 0.
+	 * @param specIndexes Each component's index in specs.
+	 * @param specs The distinct constraint specs.
+	 * @param names All the names, end to end.
+	 * @param nameStarts Where each name starts in names, followed by
+	 * the end of the last name.
+	 * @throws RuntimeException if two components, or copies of
+	 * components in repeated rows, have the same name.
+	 */
+	CompactLayout(int size,int[] rows,int[] cols,int[] widths,int[] heights,int[] repeats,
+			int[] specIndexes,ConstraintSpec[] specs,char[] names,int[] nameStarts) {
+		super();
+		this.size = size;
+		this.rows = rows;
+		this.cols = cols;
+		this.widths = widths;
+		this.heights = heights;
+		this.repeats = repeats;
+		this.specIndexes = specIndexes;
+		this.specs = specs;
+		this.names = names;
+		this.nameStarts = nameStarts;
+		// Keep the table at most half full.
+		int capacity = 16;
+		while (capacity < size * 2) {
+			capacity *= 2;
+		}
+		this.slots = new int[capacity];
+		int templateCount = 0;
+		for (int idx=0; idx<size; ++idx) {
+			if (repeats[idx] > 0) {
+				++templateCount;
+			} else if (!addSlot(idx)) {
+				throw duplicateName(nameAt(idx));
+			}
+		}
+		this.templates = new LayoutComponent[templateCount];
+		this.shapes = (templateCount > 0) ? indexTemplates() : null;
+	}
+
+	// Collect the components in repeated rows, checking their copies'
+	// names against the other components and each other's copies.
+	private ShapeIndex indexTemplates() {
+		ShapeIndex index = new ShapeIndex();
+		int count = 0;
+		for (int idx=0; idx<size; ++idx) {
+			if (repeats[idx] > 0) {
+				LayoutComponent template = componentAt(idx);
+				String shared = index.add(template);
+				if (shared != null) {
+					throw duplicateName(shared);
+				}
+				templates[count++] = template;
+			}
+		}
+		CharSequence allNames = CharBuffer.wrap(names);
+		for (int idx=0; idx<size; ++idx) {
+			if ((repeats[idx] == 0) && (index.find(allNames,nameStarts[idx],nameStarts[idx+1]) != null)) {
+				throw duplicateName(nameAt(idx));
+			}
+		}
+		return index;
+	}
+
+	private static RuntimeException duplicateName(String name) {
+		return new RuntimeException("Duplicate component name "+name+" in layout string.");
+	}
+
+	// Details used to write the layout out.
+
+	int specIndexAt(int idx) {
+		return specIndexes[idx];
+	}
+
+	int specCount() {
+		return specs.length;
+	}
+
+	ConstraintSpec specAt(int specIndex) {
+		return specs[specIndex];
+	}
+
+	int nameLength(int idx) {
+		return nameStarts[idx+1] - nameStarts[idx];
+	}
+
+	char nameCharAt(int idx,int ii) {
+		return names[nameStarts[idx] + ii];
+	}
+
+	// Add component idx to the hash table. Returns false if the name
+	// is a duplicate.
+	private boolean addSlot(int idx) {
+		int hash = 0;
+		for (int ii=nameStarts[idx]; ii<nameStarts[idx+1]; ++ii) {
+			hash = 31 * hash + names[ii];
+		}
+		int mask = slots.length - 1;
+		int slot = spread(hash) & mask;
+		while (slots[slot] != 0) {
+			if (sameName(slots[slot] - 1,idx)) {
+				return false;
+			}
+			slot = (slot + 1) & mask;
+		}
+		slots[slot] = idx + 1;
+		return true;
+	}
+
+	private boolean sameName(int idx1,int idx2) {
+		int start1 = nameStarts[idx1], start2 = nameStarts[idx2];
+		int len = nameStarts[idx1+1] - start1;
+		if (len != nameStarts[idx2+1] - start2) return false;
+		for (int ii=0; ii<len; ++ii) {
+			if (names[start1 + ii] != names[start2 + ii]) return false;
+		}
+		return true;
+	}
+
+	// True if component idx is named name.
+	private boolean nameEquals(int idx,String name) {
+		int start = nameStarts[idx];
+		int len = nameStarts[idx+1] - start;
+		if (len != name.length()) return false;
+		for (int ii=0; ii<len; ++ii) {
+			if (names[start + ii] != name.charAt(ii)) return false;
+		}
+		return true;
+	}
+
+	// Mix the high bits of a String hash into the low ones.
+	private static int spread(int hash) {
+		return hash ^ (hash >>> 16);
+	}
+
+	/**
+	 * Collects finished components from a StreamingLayoutParser.
+	 */
+	private static final class Builder implements LayoutListener {
+
+		@Override
+		public void componentFinished(LayoutComponent comp) {
+			if ((comp.repeat > 1) && !comp.hasRepeatIndex()) {
+				// Every copy would have the same name.
+				throw duplicateName(comp.getName());
+			}
+			add(comp);
+		}
+
+		@Override
+		public LayoutListener subLayoutStarted(LayoutComponent comp) {
+			throw new RuntimeException("Component "+comp.getName()+" holds a sub-layout, which a compact layout cannot store.");
+		}
+
+		CompactLayout build() {
+			ConstraintSpec[] specTable = new ConstraintSpec[specs.size()];
+			for (Map.Entry<ConstraintSpec,Integer> entry: specs.entrySet()) {
+				specTable[entry.getValue()] = entry.getKey();
+			}
+			return new CompactLayout(size,Arrays.copyOf(rows,size),Arrays.copyOf(cols,size),
+					Arrays.copyOf(widths,size),Arrays.copyOf(heights,size),Arrays.copyOf(repeats,size),
+					Arrays.copyOf(specIndexes,size),
+					specTable,Arrays.copyOf(names,nameLength),Arrays.copyOf(nameStarts,size + 1));
+		}
+
+		// Append a component to the arrays.
+		private void add(LayoutComponent comp) {
+			if (size == rows.length) {
+				int capacity = size * 2;
+				rows = Arrays.copyOf(rows,capacity);
+				cols = Arrays.copyOf(cols,capacity);
+				widths = Arrays.copyOf(widths,capacity);
+				heights = Arrays.copyOf(heights,capacity);
+				repeats = Arrays.copyOf(repeats,capacity);
+				specIndexes = Arrays.copyOf(specIndexes,capacity);
+				nameStarts = Arrays.copyOf(nameStarts,capacity + 1);
+			}
+			int len = comp.nameLength();
+			if (nameLength + len > names.length) {
+				names = Arrays.copyOf(names,Math.max(names.length * 2,nameLength + len));
+			}
+			for (int ii=0; ii<len; ++ii) {
+				names[nameLength + ii] = comp.nameCharAt(ii);
+			}
+			nameStarts[size] = nameLength;
+			nameStarts[size + 1] = nameLength + len;
+			nameLength += len;
+			rows[size] = comp.row;
+			cols[size] = comp.col;
+			widths[size] = comp.width;
+			heights[size] = comp.height;
+			repeats[size] = ((comp.repeat > 0) && comp.hasRepeatIndex()) ? comp.repeat : 0;
+			Integer specIndex = specs.get(comp.constraints);
+			if (specIndex == null) {
+				specIndex = specs.size();
+				specs.put(comp.constraints,specIndex);
+			}
+			specIndexes[size] = specIndex;
+			++size;
+		}
+
+		private int size;
+		private int[] rows = new int[16];
+		private int[] cols = new int[16];
+		private int[] widths = new int[16];
+		private int[] heights = new int[16];
+		private int[] repeats = new int[16];
+		private int[] specIndexes = new int[16];
+		private int[] nameStarts = new int[17];
+		private char[] names = new char[128];
+		private int nameLength;
+		private final HashMap<ConstraintSpec,Integer> specs = new HashMap<>();
+	}
+
+	// The number of components.
+	private final int size;
+
+	// Each component's position and extent.
+	private final int[] rows;
+	private final int[] cols;
+	private final int[] widths;
+	private final int[] heights;
+
+	// Each component's repeat count, if it is the template for the
+	// copies of a repeated row, or 0; and the templates as components.
+	private final int[] repeats;
+	private final LayoutComponent[] templates;
+	// The templates by the shape of their names, or null if there are none.
+	private final ShapeIndex shapes;
+
+	// Each component's index in specs, and the distinct specs.
+	private final int[] specIndexes;
+	private final ConstraintSpec[] specs;
+
+	// All names, end to end, and where each component's name starts.
+	// Component i's name ends where component i+1's starts.
+	private final char[] names;
+	private final int[] nameStarts;
+
+	// Hash table of component index + 1, keyed by name; 0 is empty.
+	private final int[] slots;
+}
@@ -0,0 +1,306 @@
+/**
+ * Copyright (c) 2018 Joseph A Knapka
+ *
+ * This code is released under the terms of the MIT License.
+ */
+package net.kneuro.layout;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.Reader;
+import java.net.URL;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * A parsed layout string that can be shared. A CompiledLayout is
+ * immutable once created, so any number of Gridder instances, on any
+ * threads, can use the same one without the layout being parsed again:
+ * <br><br>
+ * <pre>
+ *    static final CompiledLayout DETAIL = CompiledLayout.of("{nameLbl nameFld}{addrLbl addrFld}");
+ *    ...
+ *    Gridder gr = new Gridder(panel);
+ *    gr.useLayout(DETAIL);
+ *    gr.add("nameLbl",new JLabel("Name:"));
+ * </pre>
+ *
+ * CompiledLayout.of() keeps a bounded cache of recently used layouts
+ * keyed by their text, so even code that passes the same layout string
+ * to Gridder.parseLayout() for every new container only parses it once.
+ * Redefining a constraint style that is in use empties the cache, since
+ * cached layouts hold the compiled styles of their embedded constraints.
+ * <p>
+ * CompiledLayout.compileCompact() stores a layout as parallel arrays
+ * rather than one object per component, for generated layouts with
+ * tens of thousands of cells.
+ *
+ * @author jk
+ */
+public final class CompiledLayout {
+
+	// The maximum number of layouts kept by of().
+	static final int CACHE_CAPACITY = 256;
+
+	/**
+	 * Get the compiled form of a layout string, from the cache if an
+	 * identical string has been compiled recently.
+	 * @param layout The layout string.
+	 * @return The compiled layout.
+	 * @throws RuntimeException if the layout cannot be parsed, or uses
+	 * a component identifier more than once.
+	 */
+	public static CompiledLayout of(String layout) {
+		CompiledLayout compiled;
+		synchronized (CACHE) {
+			compiled = CACHE.get(layout);
+		}
+		if (compiled == null) {
+			// Parse outside the lock; if another thread gets there
+			// first we just store an equivalent layout.
+			compiled = compile(layout);
+			synchronized (CACHE) {
+				CACHE.put(layout,compiled);
+			}
+		}
+		return compiled;
+	}
+
+	/**
+	 * Compile a layout without caching it. A String or a layout file
+	 * mapped by LayoutFiles.map() is read in place; any other text is
+	 * copied first, as by Gridder.parseLayout(CharSequence).
+	 * @param layout The layout text.
+	 * @return The compiled layout.
+	 * @throws RuntimeException if the layout cannot be parsed, or uses
+	 * a component identifier more than once.
+	 */
+	public static CompiledLayout compile(CharSequence layout) {
+		return new CompiledLayout(new LayoutParser(LayoutFiles.unchanging(layout)),null);
+	}
+
+	/**
+	 * Compile a layout without caching it, tokenizing blocks of rows in
+	 * parallel on a ForkJoinPool. This is worthwhile for generated
+	 * layouts of a megabyte or more. The result, and any error
+	 * reported, is the same as compile()'s. The layout text must be
+	 * safe to read from several threads at once, as Strings and
+	 * layout files mapped by LayoutFiles.map() are.
+	 * @param layout The layout text.
+	 * @param pool The pool to use, such as ForkJoinPool.commonPool().
+	 * @return The compiled layout.
+	 * @throws RuntimeException if the layout cannot be parsed, or uses
+	 * a component identifier more than once.
+	 */
+	public static CompiledLayout compile(CharSequence layout,ForkJoinPool pool) {
+		return new CompiledLayout(new LayoutParser(LayoutFiles.unchanging(layout),pool),null);
+	}
+
+	/**
+	 * Compile a layout, without caching it, into a compact form that
+	 * keeps component positions, extents and constraints in parallel
+	 * arrays and all the names in one character table. A compact
+	 * layout takes much less memory than one from compile() when there
+	 * are many components, and does not refer to the layout text, but
+	 * getComponent() creates a new LayoutComponent each time it is
+	 * called.
+	 * @param layout The layout text.
+	 * @return The compiled layout.
+	 * @throws RuntimeException if the layout cannot be parsed, or uses
+	 * a component identifier more than once.
+	 */
+	public static CompiledLayout compileCompact(CharSequence layout) {
+		return new CompiledLayout(null,CompactLayout.compile(layout));
+	}
+
+	/**
+	 * Write a layout in precompiled form, so that it can be loaded by
+	 * load() or loadPrecompiled() without being parsed. A component in
+	 * a repeated row is stored once for all its copies. References to
+	 * constraint styles are stored as the styles are defined now.
+	 * @param layout The layout text.
+	 * @param out The stream to write. It is flushed but not closed.
+	 * @throws IOException if writing fails.
+	 * @throws RuntimeException if the layout cannot be parsed, or uses
+	 * a component identifier more than once.
+	 */
+	public static void precompile(CharSequence layout,OutputStream out) throws IOException {
+		PrecompiledLayout.write(CompactLayout.compile(layout),out);
+	}
+
+	/**
+	 * Load a layout resource. If the resource has been precompiled, as
+	 * by the precompile-layouts build target, so that resource+".bin"
+	 * exists in a supported format version, that is loaded without
+	 * parsing anything. Otherwise the resource itself is read as UTF-8
+	 * layout text and compiled.
+	 * @param loader The class loader to load the resource with, or null
+	 * for the system class loader.
+	 * @param resource The resource name, such as "com/example/detail.layout".
+	 * @return The compiled layout.
+	 * @throws IOException if the resource cannot be found or read, or
+	 * its precompiled form is malformed.
+	 * @throws RuntimeException if the layout text cannot be parsed, or
+	 * uses a component identifier more than once.
+	 */
+	public static CompiledLayout load(ClassLoader loader,String resource) throws IOException {
+		if (loader == null) {
+			loader = ClassLoader.getSystemClassLoader();
+		}
+		URL precompiled = loader.getResource(resource + PrecompiledLayout.SUFFIX);
+		if (precompiled != null) {
+			try (InputStream in = precompiled.openStream()) {
+				CompactLayout compact = PrecompiledLayout.read(in);
+				if (compact != null) {
+					return new CompiledLayout(null,compact);
+				}
+			}
+		}
+		URL text = loader.getResource(resource);
+		if (text == null) {
+			throw new IOException("Layout resource "+resource+" not found");
+		}
+		try (InputStream in = text.openStream()) {
+			StringBuilder sb = new StringBuilder();
+			Reader reader = new InputStreamReader(in,StandardCharsets.UTF_8);
+			char[] chars = new char[8192];
+			int count;
+			while ((count = reader.read(chars)) >= 0) {
+				sb.append(chars,0,count);
+			}
+			return compile(sb.toString());
+		}
+	}
+
+	/**
+	 * Load a precompiled layout file, mapping it into memory.
+	 * @param file A file written by precompile().
+	 * @return The compiled layout.
+	 * @throws IOException if the file cannot be read, is malformed, or
+	 * is in an unsupported format version.
+	 */
+	public static CompiledLayout loadPrecompiled(Path file) throws IOException {
+		ByteBuffer bytes;
+		try (FileChannel channel = FileChannel.open(file,StandardOpenOption.READ)) {
+			bytes = channel.map(FileChannel.MapMode.READ_ONLY,0,channel.size());
+		}
+		CompactLayout compact = PrecompiledLayout.read(bytes);
+		if (compact == null) {
+			throw new IOException(file+" is not a precompiled layout in format version "+PrecompiledLayout.VERSION);
+		}
+		return new CompiledLayout(null,compact);
+	}
+
+	/**
+	 * @param name A component identifier.
+	 * @return The component's position, extent and embedded
+	 * constraints, or null if the layout has no such component.
+	 */
+	public LayoutComponent getComponent(String name) {
+		if (compact != null) {
+			return compact.getComponent(name);
+		}
+		return parser.getComponentByName(name);
+	}
+
+	/**
+	 * Wrap a layout that has been parsed. Exactly one of parser and
+	 * compact is non-null.
+	 */
+	CompiledLayout(LayoutParser parser,CompactLayout compact) {
+		super();
+		this.parser = parser;
+		this.compact = compact;
+	}
+
+	/**
+	 * @return The parsed layout, or null for a compact layout.
+	 */
+	LayoutParser parser() {
+		return parser;
+	}
+
+	/**
+	 * @return The number of components, counting each copy of a
+	 * component in a repeated row.
+	 */
+	long componentCount() {
+		return (parser != null) ? parser.getComponentCount() : compact.componentCount();
+	}
+
+	/**
+	 * @return Every component, ordered by row and then by column.
+	 */
+	List<LayoutComponent> componentsInRowOrder() {
+		if (parser != null) {
+			return parser.getComponentsInRowOrder();
+		}
+		ArrayList<LayoutComponent> result = new ArrayList<>(compact.size());
+		for (int idx=0; idx<compact.size(); ++idx) {
+			LayoutComponent comp = compact.componentAt(idx);
+			if (comp.repeat > 0) {
+				for (int ii=0; ii<comp.repeat; ++ii) {
+					result.add(comp.getRepetition(ii));
+				}
+			} else {
+				result.add(comp);
+			}
+		}
+		result.sort(LayoutParser.ROW_ORDER);
+		return result;
+	}
+
+	/**
+	 * @return The components whose cells hold sub-layouts, in layout
+	 * order. A compact layout has none.
+	 */
+	List<LayoutComponent> subLayoutComponents() {
+		return (parser != null) ? parser.getSubLayoutComponents() : Collections.emptyList();
+	}
+
+	/**
+	 * Forget every cached layout, so that layouts are compiled again
+	 * with the current style definitions.
+	 */
+	static void clearCache() {
+		synchronized (CACHE) {
+			CACHE.clear();
+		}
+	}
+
+	/**
+	 * @return The number of cached layouts.
+	 */
+	static int cacheSize() {
+		synchronized (CACHE) {
+			return CACHE.size();
+		}
+	}
+
+	// Recently used layouts by text, in access order. Guarded by
+	// synchronizing on itself.
+	private static final LinkedHashMap<String,CompiledLayout> CACHE =
+			new LinkedHashMap<String,CompiledLayout>(16,0.75f,true) {
+				private static final long serialVersionUID = 1L;
+				@Override
+				protected boolean removeEldestEntry(Map.Entry<String,CompiledLayout> eldest) {
+					return size() > CACHE_CAPACITY;
+				}
+			};
+
+	// The parsed layout, in one of two forms. Neither is modified after
+	// construction.
+	private final LayoutParser parser;
+	private final CompactLayout compact;
+}
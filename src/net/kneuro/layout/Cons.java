@@ -0,0 +1,106 @@
+/**
+ * Copyright (c) 2018 Joseph A Knapka
+ *
+ * This code is released under the terms of the MIT License.
+ */
+package net.kneuro.layout;
+
+/**
+ * Static starting points for building typed Constraints, so that
+ * a chain can begin with the first constraint it sets:
+ * <br><br>
+ * <pre>
+ *    gr.add(btn,2,0,Cons.anchor(GridBagConstraints.EAST).insets(5));
+ * </pre>
+ *
+ * Each method is equivalent to calling the method of the same name
+ * on Constraints.NONE.
+ *
+ * @author jk
+ */
+public final class Cons {
+
+	private Cons() {
+		// Static methods only.
+	}
+
+	/** @see Constraints#gridwidth(int) */
+	public static Constraints gridwidth(int gridwidth) {
+		return Constraints.NONE.gridwidth(gridwidth);
+	}
+
+	/** @see Constraints#gridheight(int) */
+	public static Constraints gridheight(int gridheight) {
+		return Constraints.NONE.gridheight(gridheight);
+	}
+
+	/** @see Constraints#weightx(double) */
+	public static Constraints weightx(double weightx) {
+		return Constraints.NONE.weightx(weightx);
+	}
+
+	/** @see Constraints#weighty(double) */
+	public static Constraints weighty(double weighty) {
+		return Constraints.NONE.weighty(weighty);
+	}
+
+	/** @see Constraints#weight(double) */
+	public static Constraints weight(double weight) {
+		return Constraints.NONE.weight(weight);
+	}
+
+	/** @see Constraints#anchor(int) */
+	public static Constraints anchor(int anchor) {
+		return Constraints.NONE.anchor(anchor);
+	}
+
+	/** @see Constraints#fill(int) */
+	public static Constraints fill(int fill) {
+		return Constraints.NONE.fill(fill);
+	}
+
+	/** @see Constraints#ipadx(int) */
+	public static Constraints ipadx(int ipadx) {
+		return Constraints.NONE.ipadx(ipadx);
+	}
+
+	/** @see Constraints#ipady(int) */
+	public static Constraints ipady(int ipady) {
+		return Constraints.NONE.ipady(ipady);
+	}
+
+	/** @see Constraints#ipad(int) */
+	public static Constraints ipad(int ipad) {
+		return Constraints.NONE.ipad(ipad);
+	}
+
+	/** @see Constraints#insetTop(int) */
+	public static Constraints insetTop(int top) {
+		return Constraints.NONE.insetTop(top);
+	}
+
+	/** @see Constraints#insetLeft(int) */
+	public static Constraints insetLeft(int left) {
+		return Constraints.NONE.insetLeft(left);
+	}
+
+	/** @see Constraints#insetBottom(int) */
+	public static Constraints insetBottom(int bottom) {
+		return Constraints.NONE.insetBottom(bottom);
+	}
+
+	/** @see Constraints#insetRight(int) */
+	public static Constraints insetRight(int right) {
+		return Constraints.NONE.insetRight(right);
+	}
+
+	/** @see Constraints#insets(int) */
+	public static Constraints insets(int inset) {
+		return Constraints.NONE.insets(inset);
+	}
+
+	/** @see Constraints#insets(int,int,int,int) */
+	public static Constraints insets(int top,int left,int bottom,int right) {
+		return Constraints.NONE.insets(top,left,bottom,right);
+	}
+}
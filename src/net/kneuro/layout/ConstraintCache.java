@@ -0,0 +1,220 @@
+/**
+ * Copyright (c) 2018 Joseph A Knapka
+ *
+ * This code is released under the terms of the MIT License.
+ */
+package net.kneuro.layout;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * A bounded, thread-safe cache of compiled constraints, keyed by
+ * the constraint arguments they were compiled from. Least-recently
+ * used entries are evicted once the cache is full.
+ * <p>
+ * Only arguments that are known to be immutable (strings, boxed
+ * primitives, Constraints objects, and nulls) can be cached.
+ * Anything else is compiled afresh on every call.
+ *
+ * @author jk
+ */
+final class ConstraintCache {
+
+	// The default maximum number of cached specs.
+	static final int DEFAULT_CAPACITY = 1024;
+
+	// The cache shared by all Gridder instances. It starts out holding
+	// any constraints that were precompiled by ConstraintCompilerPlugin.
+	static final ConstraintCache SHARED = new ConstraintCache(DEFAULT_CAPACITY,
+			PrecompiledConstraints.load(ConstraintCache.class.getClassLoader()));
+
+	/**
+	 * Create a cache.
+	 * @param capacity The maximum number of entries to retain.
+	 */
+	ConstraintCache(int capacity) {
+		this(capacity,Collections.<Object,ConstraintSpec>emptyMap());
+	}
+
+	/**
+	 * Create a cache with a fixed set of precompiled entries. The
+	 * precompiled entries are never evicted and do not count toward
+	 * the capacity.
+	 * @param capacity The maximum number of compiled entries to retain.
+	 * @param precompiled Specs keyed as keyFor() keys them. The map is
+	 * not copied and must not be modified afterward.
+	 */
+	ConstraintCache(int capacity,Map<Object,ConstraintSpec> precompiled) {
+		super();
+		if (capacity < 1) {
+			throw new IllegalArgumentException("capacity must be positive");
+		}
+		this.capacity = capacity;
+		this.precompiled = precompiled;
+		this.entries = new LinkedHashMap<Object,ConstraintSpec>(16,0.75f,true) {
+			private static final long serialVersionUID = 1L;
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<Object,ConstraintSpec> eldest) {
+				if (size() > ConstraintCache.this.capacity) {
+					++evictions;
+					return true;
+				}
+				return false;
+			}
+		};
+	}
+
+	/**
+	 * Get the compiled form of a constraint argument list, compiling
+	 * and caching it if necessary.
+	 * @param constraints Constraint arguments as passed to Gridder.add().
+	 * @return The compiled constraints.
+	 * @throws RuntimeException if the constraints cannot be interpreted.
+	 */
+	ConstraintSpec get(Object[] constraints) {
+		if (constraints.length == 0) {
+			return ConstraintSpec.EMPTY;
+		}
+		if ((constraints.length == 1) && (constraints[0] instanceof Constraints)) {
+			// Already compiled.
+			return ((Constraints)constraints[0]).spec();
+		}
+		Object key = keyFor(constraints);
+		if (key == null) {
+			return ConstraintParser.compile(constraints);
+		}
+		return lookup(key,constraints);
+	}
+
+	/**
+	 * Look up a key, compiling and caching its constraints on a miss.
+	 */
+	private ConstraintSpec lookup(Object key,Object[] constraints) {
+		ConstraintSpec spec;
+		synchronized (entries) {
+			spec = find(key);
+			if (spec != null) {
+				++hits;
+				return spec;
+			}
+			++misses;
+		}
+		// Compile outside the lock; if another thread gets there first
+		// we just store an equal spec.
+		spec = ConstraintParser.compile(constraints).intern();
+		synchronized (entries) {
+			entries.put(key,spec);
+		}
+		return spec;
+	}
+
+	/**
+	 * Find a key among the precompiled and cached entries. Must be
+	 * called with the entries lock held.
+	 */
+	private ConstraintSpec find(Object key) {
+		ConstraintSpec spec = precompiled.get(key);
+		return (spec != null) ? spec : entries.get(key);
+	}
+
+	/**
+	 * Discard all cached entries. Precompiled entries are kept, and
+	 * the hit and miss counters are not reset.
+	 */
+	void clear() {
+		synchronized (entries) {
+			entries.clear();
+		}
+	}
+
+	/**
+	 * @return The number of cached entries, not counting precompiled ones.
+	 */
+	int size() {
+		synchronized (entries) {
+			return entries.size();
+		}
+	}
+
+	/**
+	 * @return The number of lookups satisfied from the cache.
+	 */
+	long hits() {
+		synchronized (entries) {
+			return hits;
+		}
+	}
+
+	/**
+	 * @return The number of lookups that required compilation.
+	 */
+	long misses() {
+		synchronized (entries) {
+			return misses;
+		}
+	}
+
+	/**
+	 * @return The number of entries evicted to keep the cache bounded.
+	 */
+	long evictions() {
+		synchronized (entries) {
+			return evictions;
+		}
+	}
+
+	/**
+	 * Compute a cache key for a constraint argument list.
+	 * @param constraints The constraint arguments.
+	 * @return A key with value semantics, or null if the arguments
+	 * contain something that cannot safely be cached.
+	 */
+	static Object keyFor(Object[] constraints) {
+		if ((constraints.length == 1) && (constraints[0] instanceof String)) {
+			return constraints[0];
+		}
+		for (Object obj: constraints) {
+			if (!isImmutable(obj)) {
+				return null;
+			}
+		}
+		// Copy, since the caller owns the varargs array.
+		return Arrays.asList(constraints.clone());
+	}
+
+	/**
+	 * @param obj A constraint argument.
+	 * @return true if obj is null or of a type whose string form can
+	 * never change.
+	 */
+	private static boolean isImmutable(Object obj) {
+		return (obj == null) ||
+				(obj instanceof String) ||
+				(obj instanceof Constraints) ||
+				(obj instanceof Integer) ||
+				(obj instanceof Double) ||
+				(obj instanceof Long) ||
+				(obj instanceof Float) ||
+				(obj instanceof Short) ||
+				(obj instanceof Byte) ||
+				(obj instanceof Character) ||
+				(obj instanceof Boolean);
+	}
+
+	// Maximum number of entries.
+	private final int capacity;
+
+	// Specs compiled at build time; read-only.
+	private final Map<Object,ConstraintSpec> precompiled;
+
+	// Cached specs in access order, guarded by synchronizing on itself.
+	private final LinkedHashMap<Object,ConstraintSpec> entries;
+
+	// Counters, guarded by entries.
+	private long hits;
+	private long misses;
+	private long evictions;
+}
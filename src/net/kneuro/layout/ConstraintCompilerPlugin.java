@@ -0,0 +1,275 @@
+/**
+ * Copyright (c) 2018 Joseph A Knapka
+ *
+ * This code is released under the terms of the MIT License.
+ */
+package net.kneuro.layout;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.element.VariableElement;
+import javax.lang.model.type.TypeKind;
+import javax.lang.model.type.TypeMirror;
+import javax.tools.Diagnostic;
+
+import com.sun.source.tree.CompilationUnitTree;
+import com.sun.source.tree.ExpressionTree;
+import com.sun.source.tree.IdentifierTree;
+import com.sun.source.tree.LiteralTree;
+import com.sun.source.tree.MemberSelectTree;
+import com.sun.source.tree.MethodInvocationTree;
+import com.sun.source.tree.NewClassTree;
+import com.sun.source.tree.ParenthesizedTree;
+import com.sun.source.tree.Tree;
+import com.sun.source.util.JavacTask;
+import com.sun.source.util.Plugin;
+import com.sun.source.util.TaskEvent;
+import com.sun.source.util.TaskListener;
+import com.sun.source.util.TreePath;
+import com.sun.source.util.TreePathScanner;
+import com.sun.source.util.Trees;
+
+/**
+ * A javac plugin that checks Gridder constraints at build time. It
+ * looks at every call to a Gridder constructor, Gridder.add(),
+ * addAll(), addSubLayouts() or updateConstraints() whose constraint
+ * arguments are all compile-time constants, and compiles those constraints exactly as
+ * the call would at run time. Bad constraints are reported as
+ * compile errors, so a typo like "wieghtx 1" breaks the build rather
+ * than the application.
+ * <p>
+ * If an output directory is given, the compiled constraints are also
+ * written there as a class path resource. Gridder loads that resource
+ * when it starts, so constraints that were compiled at build time are
+ * never parsed at run time. Use the directory that the classes are
+ * compiled into:
+ * <br><br>
+ * <pre>
+ *    javac -cp gridder.jar -Xplugin:"GridderConstraints classes" -d classes ...
+ * </pre>
+ *
+ * The resource is written once, when the compilation finishes, and
+ * holds only the constraints found by that compilation, as suits a
+ * full build. A build that compiles only the changed sources should
+ * add "incremental" after the directory, so that the constraints
+ * saved by earlier builds are kept as well:
+ * <br><br>
+ * <pre>
+ *    javac -cp gridder.jar -Xplugin:"GridderConstraints classes incremental" -d classes ...
+ * </pre>
+ *
+ * Calls whose constraints are not all constants, such as ones that
+ * pass a variable or a Constraints object, and calls that refer to a
+ * ConstraintStyles style, are left alone and handled at run time as
+ * usual.
+ *
+ * @author jk
+ */
+public class ConstraintCompilerPlugin implements Plugin {
+
+	// The plugin name, as given to -Xplugin.
+	public static final String NAME = "GridderConstraints";
+
+	// The plugin argument that keeps the constraints of earlier builds.
+	public static final String INCREMENTAL = "incremental";
+
+	@Override
+	public String getName() {
+		return NAME;
+	}
+
+	@Override
+	public void init(JavacTask task,String... args) {
+		final Trees trees = Trees.instance(task);
+		final File output = (args.length > 0) ? new File(args[0],PrecompiledConstraints.RESOURCE) : null;
+		if ((output != null) && (args.length > 1) && args[1].equals(INCREMENTAL)) {
+			readExisting(output);
+		}
+		task.addTaskListener(new TaskListener() {
+			@Override
+			public void started(TaskEvent evt) {
+			}
+
+			@Override
+			public void finished(TaskEvent evt) {
+				if (evt.getKind() == TaskEvent.Kind.ANALYZE) {
+					lastUnit = evt.getCompilationUnit();
+					new CallScanner(trees,lastUnit).scan(lastUnit,null);
+				} else if ((evt.getKind() == TaskEvent.Kind.COMPILATION) && (output != null) && (lastUnit != null)) {
+					writeOutput(trees,lastUnit,output);
+				}
+			}
+
+			// The last unit analyzed, to report write failures against.
+			private CompilationUnitTree lastUnit;
+		});
+	}
+
+	/**
+	 * Check the constant constraint arguments of a single Gridder call.
+	 * @param args The constraint arguments, evaluated.
+	 * @return null if the constraints are good, otherwise the message
+	 * the call would fail with at run time.
+	 */
+	String check(Object[] args) {
+		ConstraintSpec spec;
+		try {
+			spec = ConstraintParser.compile(args).intern();
+		} catch (RuntimeException ex) {
+			return ex.getMessage();
+		}
+		compiled.put(ConstraintCache.keyFor(args),new Entry(args,spec));
+		return null;
+	}
+
+	// Keep the entries of a previous build, so that an incremental
+	// build that compiles only some of the sources does not lose the
+	// others.
+	private void readExisting(File output) {
+		if (!output.isFile()) return;
+		try (InputStream in = new FileInputStream(output)) {
+			Map<Object[],ConstraintSpec> entries = PrecompiledConstraints.read(in);
+			if (entries != null) {
+				for (Map.Entry<Object[],ConstraintSpec> entry: entries.entrySet()) {
+					compiled.put(ConstraintCache.keyFor(entry.getKey()),new Entry(entry.getKey(),entry.getValue()));
+				}
+			}
+		} catch (IOException ex) {
+			// Start over.
+		}
+	}
+
+	private void writeOutput(Trees trees,CompilationUnitTree cu,File output) {
+		Map<Object[],ConstraintSpec> entries = new LinkedHashMap<>();
+		for (Entry entry: compiled.values()) {
+			entries.put(entry.args,entry.spec);
+		}
+		File dir = output.getParentFile();
+		try {
+			if (!dir.isDirectory() && !dir.mkdirs()) {
+				throw new IOException("Cannot create "+dir);
+			}
+			try (OutputStream out = new FileOutputStream(output)) {
+				PrecompiledConstraints.write(out,entries);
+			}
+		} catch (IOException ex) {
+			trees.printMessage(Diagnostic.Kind.WARNING,
+					"Could not write precompiled Gridder constraints: "+ex.getMessage(),cu,cu);
+		}
+	}
+
+	/**
+	 * Finds Gridder calls in an analyzed compilation unit.
+	 */
+	private class CallScanner extends TreePathScanner<Void,Void> {
+
+		CallScanner(Trees trees,CompilationUnitTree cu) {
+			super();
+			this.trees = trees;
+			this.cu = cu;
+		}
+
+		@Override
+		public Void visitMethodInvocation(MethodInvocationTree node,Void unused) {
+			Element method = trees.getElement(new TreePath(getCurrentPath(),node.getMethodSelect()));
+			checkCall(method,node.getArguments());
+			return super.visitMethodInvocation(node,unused);
+		}
+
+		@Override
+		public Void visitNewClass(NewClassTree node,Void unused) {
+			checkCall(trees.getElement(getCurrentPath()),node.getArguments());
+			return super.visitNewClass(node,unused);
+		}
+
+		private void checkCall(Element element,List<? extends ExpressionTree> args) {
+			if (!isGridderCall(element)) return;
+			ExecutableElement method = (ExecutableElement)element;
+			int first = method.getParameters().size() - 1;
+			if (args.size() == method.getParameters().size()) {
+				// An array passed straight through as the varargs.
+				TypeMirror last = trees.getTypeMirror(new TreePath(getCurrentPath(),args.get(first)));
+				if ((last == null) || (last.getKind() == TypeKind.ARRAY) || (last.getKind() == TypeKind.NULL)) return;
+			}
+			Object[] values = new Object[args.size() - first];
+			for (int ii=0; ii<values.length; ++ii) {
+				ExpressionTree arg = args.get(first + ii);
+				if (!isConstant(arg)) return;
+				values[ii] = constantValue(arg);
+				// Styles are defined at run time.
+				if (ConstraintStyles.refersToStyle(values[ii])) return;
+			}
+			String error = check(values);
+			if (error != null) {
+				trees.printMessage(Diagnostic.Kind.ERROR,"Bad Gridder constraints: "+error,args.get(first),cu);
+			}
+		}
+
+		// True if the element is a Gridder method whose last parameter
+		// is the Object... constraint list.
+		private boolean isGridderCall(Element element) {
+			if (!(element instanceof ExecutableElement)) return false;
+			ExecutableElement method = (ExecutableElement)element;
+			Element owner = method.getEnclosingElement();
+			if (!(owner instanceof TypeElement) ||
+					!((TypeElement)owner).getQualifiedName().contentEquals(Gridder.class.getName())) {
+				return false;
+			}
+			String name = method.getSimpleName().toString();
+			return method.isVarArgs() &&
+					((method.getKind() == ElementKind.CONSTRUCTOR) ||
+					 name.equals("add") || name.equals("addAll") ||
+					 name.equals("addSubLayouts") || name.equals("updateConstraints"));
+		}
+
+		private boolean isConstant(ExpressionTree arg) {
+			while (arg instanceof ParenthesizedTree) {
+				arg = ((ParenthesizedTree)arg).getExpression();
+			}
+			if (arg instanceof LiteralTree) return true;
+			if ((arg instanceof IdentifierTree) || (arg instanceof MemberSelectTree)) {
+				Element element = trees.getElement(new TreePath(getCurrentPath(),arg));
+				return (element instanceof VariableElement) &&
+						(((VariableElement)element).getConstantValue() != null);
+			}
+			return false;
+		}
+
+		private Object constantValue(ExpressionTree arg) {
+			while (arg instanceof ParenthesizedTree) {
+				arg = ((ParenthesizedTree)arg).getExpression();
+			}
+			if (arg.getKind() == Tree.Kind.NULL_LITERAL) return null;
+			if (arg instanceof LiteralTree) return ((LiteralTree)arg).getValue();
+			return ((VariableElement)trees.getElement(new TreePath(getCurrentPath(),arg))).getConstantValue();
+		}
+
+		private final Trees trees;
+		private final CompilationUnitTree cu;
+	}
+
+	// A compiled argument list.
+	private static final class Entry {
+		Entry(Object[] args,ConstraintSpec spec) {
+			this.args = args;
+			this.spec = spec;
+		}
+		final Object[] args;
+		final ConstraintSpec spec;
+	}
+
+	// Everything compiled so far, keyed as ConstraintCache keys it.
+	private final Map<Object,Entry> compiled = new LinkedHashMap<>();
+}
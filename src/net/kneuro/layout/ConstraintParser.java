@@ -51,8 +51,17 @@ class ConstraintParser {
 	 * in as specified, and default values for any unspecified constraint.
 	 */
 	static void parseConstraints(GridBagConstraints toUpdate,Object... constraints) {
-		String bigConstraintString = buildConstraintString(constraints);
-		parseStringConstraints(bigConstraintString,toUpdate);
+		ConstraintCache.SHARED.get(constraints).applyTo(toUpdate);
+	}
+
+	/**
+	 * Compile a set of constraints without consulting the constraint cache.
+	 * @param constraints Logically, a list of constraintName value pairs.
+	 * @return The compiled constraints.
+	 * @throws RuntimeException if the constraints cannot be interpreted.
+	 */
+	static ConstraintSpec compile(Object... constraints) {
+		return ConstraintScanner.compile(constraints);
 	}
 
 	/**
@@ -82,18 +91,7 @@ class ConstraintParser {
 	 * @param gbc The GridBagConstraints object to update.
 	 */
 	static void parseStringConstraints(String constraints,GridBagConstraints gbc) {
-		if (constraints.length() == 0) return;
-		String[] toks = constraints.split("\\s+");
-		for (int ii=0; ii<toks.length; ii += 2) {
-			String cname = toks[ii];
-			String cval = "";
-			if (ii+1 < toks.length) {
-				cval = toks[ii+1];
-			} else {
-				throw new RuntimeException("Odd number of constraint tokens in {"+constraints+"}");
-			}
-			interpretConstraint(cname,cval,gbc);
-		}
+		ConstraintScanner.scan(constraints,gbc);
 	}
 
 	/**
@@ -104,85 +102,7 @@ class ConstraintParser {
 	 * @throws RuntimeException if the constraint cannot be interpreted.
 	 */
 	static void interpretConstraint(String cname,String cval,GridBagConstraints gbc) {
-		cname = cname.toLowerCase();
-		cval = cval.toLowerCase();
-		switch (cname) {
-		case "gridwidth":
-		case "width":
-		case "wd":
-			gbc.gridwidth = toInt(cname,cval);
-			break;
-		case "gridheight":
-		case "height":
-		case "ht":
-			gbc.gridheight = toInt(cname,cval);
-			break;
-		case "weightx":
-		case "wx":
-			gbc.weightx = toDouble(cname,cval);
-			break;
-		case "weighty":
-		case "wy":
-			gbc.weighty = toDouble(cname,cval);
-			break;
-		case "weight*":
-		case "w*":
-			// Set both weights to the given cval.
-			gbc.weightx = gbc.weighty = toDouble(cname,cval);
-			break;
-		case "anchor":
-		case "a":
-			gbc.anchor = toAnchorValue(cval);
-			break;
-		case "fill":
-		case "f":
-			gbc.fill = toFillValue(cval);
-			break;
-		case "ipadx":
-		case "px":
-			gbc.ipadx = toInt(cname,cval);
-			break;
-		case "ipady":
-		case "py":
-			gbc.ipady = toInt(cname,cval);
-			break;
-		case "p*":
-		case "ipad*":
-			// Set both internal paddings to the cval.
-			gbc.ipadx = gbc.ipady = toInt(cname,cval);
-			break;
-		case "inset_top":
-		case "insets_top":
-		case "it":
-			// Note: we know gbc.insets is non-null because we create all
-			// GBC objects that this code will see.
-			gbc.insets.top = toInt(cname,cval);
-			break;
-		case "inset_bottom":
-		case "insets_bottom":
-		case "ib":
-			gbc.insets.bottom = toInt(cname,cval);
-			break;
-		case "inset_left":
-		case "insets_left":
-		case "il":
-			gbc.insets.left = toInt(cname,cval);
-			break;
-		case "inset_right":
-		case "insets_right":
-		case "ir":
-			gbc.insets.right = toInt(cname,cval);
-			break;
-		case "i*":
-		case "inset*":
-		case "insets*":
-			// Set all insets to the given cval.
-			gbc.insets.left = gbc.insets.right
-				= gbc.insets.top = gbc.insets.bottom = toInt(cname,cval);
-			break;
-		default:
-			throw new RuntimeException("Unknown constraint: "+cname);
-		}
+		ConstraintScanner.interpret(cname,0,cname.length(),cval,0,cval.length(),gbc,null);
 	}
 
 	/**
@@ -192,63 +112,14 @@ class ConstraintParser {
 	 * @return The corresponding GridBagConstraints.anchor value.
 	 */
 	static int toAnchorValue(String value) {
-		// First, see if it's just an integer, in which case,
-		// return its value. In this case we simply assume the
-		// supplied value is one of the GridBagConstraints constants.
-		try {
-			int ival = Integer.parseInt(value);
-			return ival;
-		} catch (NumberFormatException ex) {
-			// Nothing to do.
-		}
-		// Not an integer, so interpret the string.
-		switch (value.toLowerCase()) {
-		case "center":
-		case "ctr":
-		case "c":
-			return GridBagConstraints.CENTER;
-		case "north":
-		case "n":
-		case "top":
-			return GridBagConstraints.NORTH;
-		case "south":
-		case "s":
-		case "bottom":
-		case "bot":
-			return GridBagConstraints.SOUTH;
-		case "east":
-		case "e":
-		case "right":
-		case "r":
-			return GridBagConstraints.EAST;
-		case "west":
-		case "w":
-		case "left":
-		case "l":
-			return GridBagConstraints.WEST;
-		case "northeast":
-		case "ne":
-		case "topright":
-		case "tr":
-			return GridBagConstraints.NORTHEAST;
-		case "northwest":
-		case "nw":
-		case "topleft":
-		case "tl":
-			return GridBagConstraints.NORTHWEST;
-		case "southeast":
-		case "se":
-		case "bottomright":
-		case "br":
-			return GridBagConstraints.SOUTHEAST;
-		case "southwest":
-		case "sw":
-		case "bottomleft":
-		case "bl":
-			return GridBagConstraints.SOUTHWEST;
-		default:
-			throw new RuntimeException("Unknown anchor value {"+value+"}");
+		// Integers are recognised before keywords, without throwing.
+		// In this case we simply assume the supplied value is one of
+		// the GridBagConstraints constants.
+		int anchor = ConstraintScanner.anchorValue(value,0,value.length());
+		if (anchor == ConstraintScanner.NO_VALUE) {
+			throw ConstraintScanner.unknownAnchorValue(value);
 		}
+		return anchor;
 	}
 
 	/**
@@ -259,39 +130,14 @@ class ConstraintParser {
 	 * @throws RuntimeException if the value cannot be interpreted.
 	 */
 	static int toFillValue(String value) {
-		// First, see if it's just an integer, in which case,
-		// return its value. In this case we simply assume the
-		// supplied value is one of the GridBagConstraints constants.
-		try {
-			int ival = Integer.parseInt(value);
-			return ival;
-		} catch (NumberFormatException ex) {
-			// Nothing to do.
+		// Integers are recognised before keywords, without throwing.
+		// In this case we simply assume the supplied value is one of
+		// the GridBagConstraints constants.
+		int fill = ConstraintScanner.fillValue(value,0,value.length());
+		if (fill == ConstraintScanner.NO_VALUE) {
+			throw ConstraintScanner.unknownFillValue(value);
 		}
-		// Not an integer, so interpret the string.
-		switch (value.toLowerCase()) {
-		case "none":
-		case "neither":
-		case "n":
-			return GridBagConstraints.NONE;
-		case "horizontal":
-		case "h":
-		case "x":
-			return GridBagConstraints.HORIZONTAL;
-		case "vertical":
-		case "v":
-		case "y":
-			return GridBagConstraints.VERTICAL;
-		case "both":
-		case "all":
-		case "xy":
-		case "yx":
-		case "hv":
-		case "vh":
-			return GridBagConstraints.BOTH;
-		default:
-			throw new RuntimeException("Unknown fill value {"+value+"}");
-		}		
+		return fill;
 	}
 
 	/**
@@ -302,13 +148,13 @@ class ConstraintParser {
 	 * @throws RuntimeException if conversion fails.
 	 */
 	static int toInt(String cname,String value) {
-		try {
-			return Integer.parseInt(value);
-		} catch (NumberFormatException ex) {
-			throw new RuntimeException("Bad int constraint value {"+value+"} for constraint "+cname);
+		long lval = ConstraintScanner.parseInt(value,0,value.length());
+		if (lval == ConstraintScanner.NOT_AN_INT) {
+			throw ConstraintScanner.badIntValue(cname,value);
 		}
+		return (int)lval;
 	}
-	
+
 	/**
 	 * Convert a string to a double value, and throw a RuntimeException
 	 * if this cannot be done.
@@ -317,42 +163,11 @@ class ConstraintParser {
 	 * @throws RuntimeException if conversion fails.
 	 */
 	static double toDouble(String cname,String value) {
-		try {
-			return Double.parseDouble(value);
-		} catch (NumberFormatException ex) {
-			throw new RuntimeException("Bad float constraint value {"+value+"} for constraint "+cname);
-		}
-	}
-	
-	/**
-	 * A layout identifier may be followed by a colon and a comma-separated
-	 * list of constraint names and values, with no gap between constraint
-	 * names and values, eg:
-	 * 
-	 *   comp1:wx1,wy2,p*5
-	 * 
-	 * which sets weightx to 1.0, weighty to 2.0, and all ipad values to 5
-	 * for component comp1 (using default constraints for all other values).
-	 * This method parses those overridden constraints from an identifier
-	 * string and returns a string in "constraint1 value1 constraint2 value2 ..."
-	 * form.
-	 * 
-	 * @param id A layout ID string.
-	 * @return a layout string in the canonical "name1 value1 name2 value2 ..." form.
-	 */
-	static String parseConstraintsFromIdentifier(String id) {
-		StringBuilder sb = new StringBuilder();
-		String[] idAndConstraints = id.split(":");
-		if (idAndConstraints.length < 2) {
-			// No constraints to parse.
-			return "";
-		}
-		String[] constraints = idAndConstraints[1].split(",");
-		for (String cons: constraints) {
-			String[] cnameAndVal = getConstraintNameAndValue(cons);
-			sb.append(' ').append(cnameAndVal[0]).append(' ').append(cnameAndVal[1]);
+		double dval = ConstraintScanner.parseDouble(value,0,value.length());
+		if (Double.isNaN(dval)) {
+			throw ConstraintScanner.badFloatValue(cname,value);
 		}
-		return sb.toString().trim();
+		return dval;
 	}
 
 	static String[] CONSTRAINT_NAMES = {
@@ -394,19 +209,4 @@ class ConstraintParser {
 			"inset*",
 			"i*"
 	};
-	
-	/**
-	 * Split a single constraintValue token into the constraint name and value.
-	 * @param constraint A constraint and its value run together in a single string,
-	 *        like "wx1.0".
-	 * @return A two-element String[] array containing the constraint name and value.
-	 */
-	static String[] getConstraintNameAndValue(String constraint) {
-		for (String cname: CONSTRAINT_NAMES) {
-			if (constraint.startsWith(cname)) {
-				return new String[] {constraint.substring(0,cname.length()),constraint.substring(cname.length())};
-			}
-		}
-		throw new RuntimeException("Could not intepret embedded constraint "+constraint);
-	}
 }
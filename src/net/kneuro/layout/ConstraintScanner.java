@@ -0,0 +1,496 @@
+/**
+ * Copyright (c) 2018 Joseph A Knapka
+ *
+ * This code is released under the terms of the MIT License.
+ */
+package net.kneuro.layout;
+
+import java.awt.GridBagConstraints;
+
+/**
+ * A single-pass scanner for constraint strings. It works directly on
+ * the characters of a CharSequence using index offsets: keywords are
+ * resolved case-insensitively in place by the KeywordTable trie, and
+ * numbers are converted straight from the characters. Scanning a
+ * well-formed constraint string into a GridBagConstraints object
+ * allocates nothing; only error reporting and style references, which
+ * look the style up by name, build strings.
+ * <p>
+ * A token that starts with ConstraintStyles.PREFIX, such as "@label",
+ * applies the named style in place of a name and value pair.
+ *
+ * @author jk
+ */
+final class ConstraintScanner {
+
+	// Returned by parseInt() when the characters are not an int.
+	static final long NOT_AN_INT = Long.MIN_VALUE;
+
+	// Returned by anchorValue() and fillValue() for unknown keywords.
+	static final int NO_VALUE = KeywordTable.NO_MATCH;
+
+	private ConstraintScanner() {
+		// Static methods only.
+	}
+
+	/**
+	 * Scan a constraint string and apply the constraints it specifies
+	 * directly to a GridBagConstraints object.
+	 * @param constraints A string of "constraintName value" pairs.
+	 * @param gbc The GBC to update. Its insets must be non-null.
+	 * @throws RuntimeException if the constraints cannot be interpreted.
+	 */
+	static void scan(CharSequence constraints,GridBagConstraints gbc) {
+		scan(constraints,gbc,null);
+	}
+
+	/**
+	 * Scan a constraint string and record the constraints it specifies
+	 * in a ConstraintSpec.Builder.
+	 * @param constraints A string of "constraintName value" pairs.
+	 * @param builder The builder to update.
+	 * @throws RuntimeException if the constraints cannot be interpreted.
+	 */
+	static void scan(CharSequence constraints,ConstraintSpec.Builder builder) {
+		scan(constraints,null,builder);
+	}
+
+	/**
+	 * Compile a constraint argument list as passed to Gridder.add().
+	 * Each argument is scanned in turn, and a constraint name at the
+	 * end of one argument takes its value from the start of the next,
+	 * so "anchor","nw" means the same as "anchor nw". Constraints objects
+	 * are merged in without any scanning, and a number that follows a
+	 * constraint name is used as its value directly. Other arguments are
+	 * scanned via their toString() form.
+	 * @param constraints The constraint arguments.
+	 * @return The compiled constraints.
+	 * @throws RuntimeException if the constraints cannot be interpreted.
+	 */
+	static ConstraintSpec compile(Object[] constraints) {
+		ConstraintSpec.Builder builder = new ConstraintSpec.Builder();
+		// The pending constraint name, if any, waiting for its value.
+		CharSequence name = null;
+		int nameStart = 0, nameEnd = 0;
+		for (Object obj: constraints) {
+			if (obj == null) continue;
+			if ((obj instanceof Constraints) && (name == null)) {
+				builder.setAll(((Constraints)obj).spec());
+				continue;
+			}
+			if ((obj instanceof Number) && (name != null)
+					&& interpret(name,nameStart,nameEnd,(Number)obj,builder)) {
+				name = null;
+				continue;
+			}
+			CharSequence cs = (obj instanceof CharSequence) ? (CharSequence)obj : obj.toString();
+			// Each argument is trimmed, as by String.trim().
+			int len = cs.length();
+			while ((len > 0) && (cs.charAt(len - 1) <= ' ')) {
+				--len;
+			}
+			int idx = 0;
+			while ((idx < len) && (cs.charAt(idx) <= ' ')) {
+				++idx;
+			}
+			while (idx < len) {
+				int end = tokenEnd(cs,idx,len);
+				if ((name == null) && (cs.charAt(idx) == ConstraintStyles.PREFIX)) {
+					builder.setAll(ConstraintStyles.resolve(cs,idx,end));
+				} else if (name == null) {
+					name = cs;
+					nameStart = idx;
+					nameEnd = end;
+				} else {
+					interpret(name,nameStart,nameEnd,cs,idx,end,null,builder);
+					name = null;
+				}
+				idx = skipWhitespace(cs,end,len);
+			}
+		}
+		if (name != null) {
+			throw oddTokenCount(ConstraintParser.buildConstraintString(constraints));
+		}
+		return builder.build();
+	}
+
+	/**
+	 * Compile the embedded constraints of a layout string component
+	 * identifier, such as the "wx1,wy2,i*5" in "c3:wx1,wy2,i*5". Each
+	 * comma-separated constraint is a constraint name immediately
+	 * followed by its value, or a "@style" reference. The characters
+	 * are interpreted in place, without splitting them into strings.
+	 * @param cs The characters containing the constraints.
+	 * @param start The index of the first constraint.
+	 * @param end The index just past the last constraint.
+	 * @return The compiled constraints.
+	 * @throws RuntimeException if the constraints cannot be interpreted.
+	 */
+	static ConstraintSpec compileEmbedded(CharSequence cs,int start,int end) {
+		ConstraintSpec.Builder builder = new ConstraintSpec.Builder();
+		int idx = start;
+		while (idx < end) {
+			int itemEnd = idx;
+			while ((itemEnd < end) && (cs.charAt(itemEnd) != ',')) {
+				++itemEnd;
+			}
+			if (itemEnd > idx) {
+				if (cs.charAt(idx) == ConstraintStyles.PREFIX) {
+					builder.setAll(ConstraintStyles.resolve(cs,idx,itemEnd));
+				} else {
+					int node = KeywordTable.longestPrefix(KeywordTable.NAME,cs,idx,itemEnd);
+					if (node == KeywordTable.NONE) {
+						throw badEmbeddedConstraint(cs.subSequence(idx,itemEnd).toString());
+					}
+					int nameEnd = idx + KeywordTable.lengthOf(node);
+					interpret(cs,idx,nameEnd,cs,nameEnd,itemEnd,null,builder);
+				}
+			}
+			idx = itemEnd + 1;
+		}
+		return builder.build();
+	}
+
+	/**
+	 * Scan a constraint string, updating either a GBC or a builder.
+	 */
+	private static void scan(CharSequence cs,GridBagConstraints gbc,ConstraintSpec.Builder builder) {
+		int len = cs.length();
+		int idx = skipWhitespace(cs,0,len);
+		while (idx < len) {
+			int nameEnd = tokenEnd(cs,idx,len);
+			if (cs.charAt(idx) == ConstraintStyles.PREFIX) {
+				ConstraintSpec style = ConstraintStyles.resolve(cs,idx,nameEnd);
+				if (gbc != null) {
+					style.applyTo(gbc);
+				} else {
+					builder.setAll(style);
+				}
+				idx = skipWhitespace(cs,nameEnd,len);
+				continue;
+			}
+			int valStart = skipWhitespace(cs,nameEnd,len);
+			if (valStart >= len) {
+				throw oddTokenCount(cs);
+			}
+			int valEnd = tokenEnd(cs,valStart,len);
+			interpret(cs,idx,nameEnd,cs,valStart,valEnd,gbc,builder);
+			idx = skipWhitespace(cs,valEnd,len);
+		}
+	}
+
+	/**
+	 * Interpret a single constraint name and value, each given as a
+	 * range of characters, and store the result in either a GBC or
+	 * a builder (whichever is non-null).
+	 * @throws RuntimeException if the constraint cannot be interpreted.
+	 */
+	static void interpret(CharSequence ncs,int nameStart,int nameEnd,
+			CharSequence vcs,int valStart,int valEnd,
+			GridBagConstraints gbc,ConstraintSpec.Builder builder) {
+		int fields = constraintFields(ncs,nameStart,nameEnd);
+		if (fields == 0) {
+			throw unknownConstraint(lowerCase(ncs,nameStart,nameEnd));
+		}
+		double value;
+		if ((fields & WEIGHT_FIELDS) != 0) {
+			value = parseDouble(vcs,valStart,valEnd);
+			if (Double.isNaN(value)) {
+				throw badFloatValue(lowerCase(ncs,nameStart,nameEnd),lowerCase(vcs,valStart,valEnd));
+			}
+		} else if (fields == ANCHOR_FIELD) {
+			int ival = anchorValue(vcs,valStart,valEnd);
+			if (ival == NO_VALUE) {
+				throw unknownAnchorValue(lowerCase(vcs,valStart,valEnd));
+			}
+			value = ival;
+		} else if (fields == FILL_FIELD) {
+			int ival = fillValue(vcs,valStart,valEnd);
+			if (ival == NO_VALUE) {
+				throw unknownFillValue(lowerCase(vcs,valStart,valEnd));
+			}
+			value = ival;
+		} else {
+			long lval = parseInt(vcs,valStart,valEnd);
+			if (lval == NOT_AN_INT) {
+				throw badIntValue(lowerCase(ncs,nameStart,nameEnd),lowerCase(vcs,valStart,valEnd));
+			}
+			value = lval;
+		}
+		for (int field=0; field<ConstraintSpec.FIELD_COUNT; ++field) {
+			if ((fields & (1 << field)) != 0) {
+				if (gbc != null) {
+					ConstraintSpec.assign(gbc,field,value);
+				} else {
+					builder.set(field,value);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Interpret a constraint name, given as a range of characters, with
+	 * a numeric value. Weights accept any finite number; other constraints
+	 * accept integral Number types only. A Float weight is read from its
+	 * string form, so 0.1f gives 0.1 just as the text "0.1" does.
+	 * @return true if the value was used, or false if the caller should
+	 * fall back to interpreting the value's string form.
+	 * @throws RuntimeException if the constraint name is unknown, or
+	 * a weight is not finite.
+	 */
+	private static boolean interpret(CharSequence ncs,int nameStart,int nameEnd,
+			Number number,ConstraintSpec.Builder builder) {
+		int fields = constraintFields(ncs,nameStart,nameEnd);
+		if (fields == 0) {
+			throw unknownConstraint(lowerCase(ncs,nameStart,nameEnd));
+		}
+		double value;
+		if ((fields & WEIGHT_FIELDS) != 0) {
+			value = (number instanceof Float) ? Double.parseDouble(number.toString()) : number.doubleValue();
+			if (Double.isNaN(value) || Double.isInfinite(value)) {
+				throw badFloatValue(lowerCase(ncs,nameStart,nameEnd),number.toString().toLowerCase());
+			}
+		} else if ((number instanceof Integer) || (number instanceof Short) || (number instanceof Byte)) {
+			value = number.intValue();
+		} else {
+			return false;
+		}
+		for (int field=0; field<ConstraintSpec.FIELD_COUNT; ++field) {
+			if ((fields & (1 << field)) != 0) {
+				builder.set(field,value);
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Look up a constraint name.
+	 * @return A bit mask with bit N set for each ConstraintSpec field
+	 * number N that the named constraint assigns, or 0 if the name is
+	 * not a known constraint.
+	 */
+	static int constraintFields(CharSequence cs,int start,int end) {
+		int fields = KeywordTable.lookup(KeywordTable.NAME,cs,start,end);
+		return (fields == KeywordTable.NO_MATCH) ? 0 : fields;
+	}
+
+	/**
+	 * Interpret a range of characters as a GridBagConstraints.anchor value.
+	 * Integers are returned unchanged.
+	 * @return The anchor value, or NO_VALUE if it is not recognized.
+	 */
+	static int anchorValue(CharSequence cs,int start,int end) {
+		long lval = parseInt(cs,start,end);
+		if (lval != NOT_AN_INT) {
+			return (int)lval;
+		}
+		return KeywordTable.lookup(KeywordTable.ANCHOR,cs,start,end);
+	}
+
+	/**
+	 * Interpret a range of characters as a GridBagConstraints.fill value.
+	 * Integers are returned unchanged.
+	 * @return The fill value, or NO_VALUE if it is not recognized.
+	 */
+	static int fillValue(CharSequence cs,int start,int end) {
+		long lval = parseInt(cs,start,end);
+		if (lval != NOT_AN_INT) {
+			return (int)lval;
+		}
+		return KeywordTable.lookup(KeywordTable.FILL,cs,start,end);
+	}
+
+	/**
+	 * Convert a range of characters to an int, accepting the same
+	 * syntax as Integer.parseInt().
+	 * @return The value, or NOT_AN_INT if the characters do not
+	 * represent an int.
+	 */
+	static long parseInt(CharSequence cs,int start,int end) {
+		if (start >= end) return NOT_AN_INT;
+		boolean negative = false;
+		char c = cs.charAt(start);
+		if ((c == '-') || (c == '+')) {
+			negative = (c == '-');
+			if (++start >= end) return NOT_AN_INT;
+		}
+		long result = 0;
+		for (int idx=start; idx<end; ++idx) {
+			int digit = Character.digit(cs.charAt(idx),10);
+			if (digit < 0) return NOT_AN_INT;
+			result = result * 10 + digit;
+			if (result > (long)Integer.MAX_VALUE + 1) return NOT_AN_INT;
+		}
+		if (negative) return -result;
+		return (result > Integer.MAX_VALUE) ? NOT_AN_INT : result;
+	}
+
+	/**
+	 * Convert a range of characters to a double. Plain decimal numbers
+	 * such as "1", "-0.25" or ".5" are converted directly from the
+	 * characters; anything else is handed to Double.parseDouble().
+	 * @return The value, or NaN if the characters do not represent
+	 * a number.
+	 */
+	static double parseDouble(CharSequence cs,int start,int end) {
+		int idx = start;
+		boolean negative = false;
+		if ((idx < end) && ((cs.charAt(idx) == '-') || (cs.charAt(idx) == '+'))) {
+			negative = (cs.charAt(idx) == '-');
+			++idx;
+		}
+		long mantissa = 0;
+		int digits = 0;
+		int fractionDigits = 0;
+		boolean seenPoint = false;
+		for (; idx<end; ++idx) {
+			char c = cs.charAt(idx);
+			if ((c >= '0') && (c <= '9')) {
+				mantissa = mantissa * 10 + (c - '0');
+				++digits;
+				if (seenPoint) ++fractionDigits;
+			} else if ((c == '.') && !seenPoint) {
+				seenPoint = true;
+			} else {
+				break;
+			}
+		}
+		if ((idx == end) && (digits > 0) && (digits <= MAX_EXACT_DIGITS)
+				&& (fractionDigits < POWERS_OF_TEN.length)) {
+			// Both operands are exact, so the quotient is correctly rounded.
+			double result = mantissa / POWERS_OF_TEN[fractionDigits];
+			return negative ? -result : result;
+		}
+		return parseDoubleSlowly(cs,start,end);
+	}
+
+	/**
+	 * Handle exponents, very long numbers, and the other forms accepted
+	 * by Double.parseDouble(). Only text that starts like a number is
+	 * handed over, so words such as "heavy" never cost an exception,
+	 * and "NaN" and "Infinity" are rejected as they always have been.
+	 */
+	private static double parseDoubleSlowly(CharSequence cs,int start,int end) {
+		int idx = start;
+		if ((idx < end) && ((cs.charAt(idx) == '-') || (cs.charAt(idx) == '+'))) {
+			++idx;
+		}
+		if (idx >= end) return Double.NaN;
+		char c = cs.charAt(idx);
+		if (!(((c >= '0') && (c <= '9')) || (c == '.'))) {
+			return Double.NaN;
+		}
+		try {
+			return Double.parseDouble(cs.subSequence(start,end).toString());
+		} catch (NumberFormatException ex) {
+			return Double.NaN;
+		}
+	}
+
+	/**
+	 * @return The index of the first non-whitespace character at or
+	 * after idx, or end if there is none.
+	 */
+	static int skipWhitespace(CharSequence cs,int idx,int end) {
+		while ((idx < end) && isSeparator(cs.charAt(idx))) {
+			++idx;
+		}
+		return idx;
+	}
+
+	/**
+	 * @return The index just past the token that starts at idx.
+	 */
+	static int tokenEnd(CharSequence cs,int idx,int end) {
+		while ((idx < end) && !isSeparator(cs.charAt(idx))) {
+			++idx;
+		}
+		return idx;
+	}
+
+	// The whitespace that separates tokens, as matched by \s in a
+	// regular expression. Other control characters are part of a token.
+	private static boolean isSeparator(char c) {
+		return (c == ' ') || (c == '\t') || (c == '\n') || (c == '\u000B') || (c == '\f') || (c == '\r');
+	}
+
+	/**
+	 * @return A lowercase copy of a range of characters, for error messages.
+	 */
+	static String lowerCase(CharSequence cs,int start,int end) {
+		StringBuilder sb = new StringBuilder(end - start);
+		for (int idx=start; idx<end; ++idx) {
+			sb.append(Character.toLowerCase(cs.charAt(idx)));
+		}
+		return sb.toString();
+	}
+
+	// Error reporting. Values are only ever converted by the non-throwing
+	// recognisers above, so the only exceptions built are these, and only
+	// when a constraint really is bad.
+
+	/**
+	 * @return The exception to throw for an unknown constraint name.
+	 */
+	static RuntimeException unknownConstraint(String cname) {
+		return new RuntimeException("Unknown constraint: "+cname);
+	}
+
+	/**
+	 * @return The exception to throw for a bad int constraint value.
+	 */
+	static RuntimeException badIntValue(String cname,String value) {
+		return new RuntimeException("Bad int constraint value {"+value+"} for constraint "+cname);
+	}
+
+	/**
+	 * @return The exception to throw for a bad float constraint value.
+	 */
+	static RuntimeException badFloatValue(String cname,String value) {
+		return new RuntimeException("Bad float constraint value {"+value+"} for constraint "+cname);
+	}
+
+	/**
+	 * @return The exception to throw for an unknown anchor value.
+	 */
+	static RuntimeException unknownAnchorValue(String value) {
+		return new RuntimeException("Unknown anchor value {"+value+"}");
+	}
+
+	/**
+	 * @return The exception to throw for an unknown fill value.
+	 */
+	static RuntimeException unknownFillValue(String value) {
+		return new RuntimeException("Unknown fill value {"+value+"}");
+	}
+
+	/**
+	 * @return An exception reporting an embedded constraint with no
+	 * recognizable constraint name.
+	 */
+	static RuntimeException badEmbeddedConstraint(String constraint) {
+		return new RuntimeException("Could not intepret embedded constraint "+constraint);
+	}
+
+	/**
+	 * @return The exception to throw when a constraint name has no value.
+	 */
+	private static RuntimeException oddTokenCount(CharSequence constraints) {
+		return new RuntimeException("Odd number of constraint tokens in {"+constraints.toString().trim()+"}");
+	}
+
+	// Field masks for the constraints whose values are not plain ints.
+	private static final int WEIGHT_FIELDS = (1 << ConstraintSpec.WEIGHTX) | (1 << ConstraintSpec.WEIGHTY);
+	private static final int ANCHOR_FIELD = 1 << ConstraintSpec.ANCHOR;
+	private static final int FILL_FIELD = 1 << ConstraintSpec.FILL;
+
+	// Decimal numbers with at most this many digits fit exactly in a double.
+	private static final int MAX_EXACT_DIGITS = 15;
+
+	// Powers of ten that are exactly representable as doubles.
+	private static final double[] POWERS_OF_TEN = {
+			1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10,
+			1e11, 1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20,
+			1e21, 1e22
+	};
+}
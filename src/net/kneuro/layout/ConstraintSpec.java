@@ -0,0 +1,283 @@
+/**
+ * Copyright (c) 2018 Joseph A Knapka
+ *
+ * This code is released under the terms of the MIT License.
+ */
+package net.kneuro.layout;
+
+import java.awt.GridBagConstraints;
+import java.awt.Insets;
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * A compiled, immutable set of constraints. A ConstraintSpec is a
+ * small program of field assignments: each entry names one
+ * GridBagConstraints field and the value to store in it. Applying
+ * a spec to a GridBagConstraints object simply runs the assignments
+ * in order, so constraints that have been compiled once never need
+ * to be parsed again.
+ * <p>
+ * Wildcard constraints such as "i*" are expanded into one assignment
+ * per field when the spec is compiled, and when the same field is
+ * assigned more than once only the last assignment is kept, so
+ * "i* 5 it 3" compiles to four assignments.
+ *
+ * @author jk
+ */
+final class ConstraintSpec {
+
+	// Field numbers. These are the "opcodes" of a compiled spec.
+	static final int GRIDWIDTH = 0;
+	static final int GRIDHEIGHT = 1;
+	static final int WEIGHTX = 2;
+	static final int WEIGHTY = 3;
+	static final int ANCHOR = 4;
+	static final int FILL = 5;
+	static final int IPADX = 6;
+	static final int IPADY = 7;
+	static final int INSET_TOP = 8;
+	static final int INSET_LEFT = 9;
+	static final int INSET_BOTTOM = 10;
+	static final int INSET_RIGHT = 11;
+	static final int FIELD_COUNT = 12;
+
+	// A spec that assigns nothing.
+	static final ConstraintSpec EMPTY = new ConstraintSpec(new int[0],new double[0]);
+
+	/**
+	 * Construct a spec from parallel field and value arrays. The arrays
+	 * are not copied; callers must not modify them afterward.
+	 */
+	private ConstraintSpec(int[] fields,double[] values) {
+		super();
+		this.fields = fields;
+		this.values = values;
+		this.hash = 31 * Arrays.hashCode(fields) + Arrays.hashCode(values);
+	}
+
+	/**
+	 * Apply this spec's field assignments to a GridBagConstraints object.
+	 * @param gbc The GBC to update. Its insets must be non-null if this
+	 * spec assigns any inset.
+	 */
+	void applyTo(GridBagConstraints gbc) {
+		for (int ii=0; ii<fields.length; ++ii) {
+			assign(gbc,fields[ii],values[ii]);
+		}
+	}
+
+	/**
+	 * Store a single value into a GridBagConstraints field.
+	 * @param gbc The GBC to update.
+	 * @param field One of the field numbers defined by this class.
+	 * @param value The value to store. Integer fields receive the
+	 * value truncated to an int.
+	 */
+	static void assign(GridBagConstraints gbc,int field,double value) {
+		switch (field) {
+		case GRIDWIDTH: gbc.gridwidth = (int)value; break;
+		case GRIDHEIGHT: gbc.gridheight = (int)value; break;
+		case WEIGHTX: gbc.weightx = value; break;
+		case WEIGHTY: gbc.weighty = value; break;
+		case ANCHOR: gbc.anchor = (int)value; break;
+		case FILL: gbc.fill = (int)value; break;
+		case IPADX: gbc.ipadx = (int)value; break;
+		case IPADY: gbc.ipady = (int)value; break;
+		case INSET_TOP: gbc.insets.top = (int)value; break;
+		case INSET_LEFT: gbc.insets.left = (int)value; break;
+		case INSET_BOTTOM: gbc.insets.bottom = (int)value; break;
+		case INSET_RIGHT: gbc.insets.right = (int)value; break;
+		default:
+			throw new IllegalArgumentException("Bad constraint field number "+field);
+		}
+	}
+
+	/**
+	 * Compile a spec that assigns every field its value in the
+	 * given GridBagConstraints object.
+	 * @param gbc The GBC to snapshot.
+	 * @return A spec that assigns all FIELD_COUNT fields.
+	 */
+	static ConstraintSpec snapshot(GridBagConstraints gbc) {
+		Insets ins = (gbc.insets != null) ? gbc.insets : new Insets(0,0,0,0);
+		return new Builder()
+				.set(GRIDWIDTH,gbc.gridwidth)
+				.set(GRIDHEIGHT,gbc.gridheight)
+				.set(WEIGHTX,gbc.weightx)
+				.set(WEIGHTY,gbc.weighty)
+				.set(ANCHOR,gbc.anchor)
+				.set(FILL,gbc.fill)
+				.set(IPADX,gbc.ipadx)
+				.set(IPADY,gbc.ipady)
+				.set(INSET_TOP,ins.top)
+				.set(INSET_LEFT,ins.left)
+				.set(INSET_BOTTOM,ins.bottom)
+				.set(INSET_RIGHT,ins.right)
+				.build();
+	}
+
+	/**
+	 * @return A spec that applies this spec's assignments followed
+	 * by those of the given spec.
+	 * @param overrides The spec whose assignments take precedence.
+	 */
+	ConstraintSpec overriddenBy(ConstraintSpec overrides) {
+		if (overrides.isEmpty()) return this;
+		if (this.isEmpty()) return overrides;
+		return new Builder().setAll(this).setAll(overrides).build();
+	}
+
+	/**
+	 * Get the canonical instance of this spec. Equal specs that have
+	 * been interned are the same object, so snapshots that recur, such
+	 * as a Gridder's defaults or a commonly used set of overrides, are
+	 * shared rather than duplicated. The pool is bounded; once it is
+	 * full, specs that are not already in it are returned unchanged.
+	 * @return The canonical spec equal to this one.
+	 */
+	ConstraintSpec intern() {
+		ConstraintSpec canonical = INTERNED.get(this);
+		if (canonical != null) return canonical;
+		if (INTERNED.size() >= MAX_INTERNED) return this;
+		canonical = INTERNED.putIfAbsent(this,this);
+		return (canonical != null) ? canonical : this;
+	}
+
+	/**
+	 * @return true if this spec assigns no fields.
+	 */
+	boolean isEmpty() {
+		return fields.length == 0;
+	}
+
+	/**
+	 * @return The number of field assignments in this spec.
+	 */
+	int size() {
+		return fields.length;
+	}
+
+	/**
+	 * @param ii An assignment index, 0 &lt;= ii &lt; size().
+	 * @return The field number of the ii'th assignment.
+	 */
+	int fieldAt(int ii) {
+		return fields[ii];
+	}
+
+	/**
+	 * @param ii An assignment index, 0 &lt;= ii &lt; size().
+	 * @return The value of the ii'th assignment.
+	 */
+	double valueAt(int ii) {
+		return values[ii];
+	}
+
+	@Override
+	public boolean equals(Object obj) {
+		if (obj == this) return true;
+		if (!(obj instanceof ConstraintSpec)) return false;
+		ConstraintSpec other = (ConstraintSpec)obj;
+		return (hash == other.hash) &&
+				Arrays.equals(fields,other.fields) &&
+				Arrays.equals(values,other.values);
+	}
+
+	@Override
+	public int hashCode() {
+		return hash;
+	}
+
+	@Override
+	public String toString() {
+		StringBuilder sb = new StringBuilder();
+		for (int ii=0; ii<fields.length; ++ii) {
+			if (ii > 0) sb.append(' ');
+			sb.append(FIELD_NAMES[fields[ii]]).append(' ');
+			if ((fields[ii] == WEIGHTX) || (fields[ii] == WEIGHTY)) {
+				sb.append(values[ii]);
+			} else {
+				sb.append((int)values[ii]);
+			}
+		}
+		return sb.toString();
+	}
+
+	/**
+	 * Accumulates field assignments and compiles them into a spec.
+	 * Later assignments to a field replace earlier ones.
+	 */
+	static final class Builder {
+
+		/**
+		 * Record an assignment.
+		 * @param field One of the ConstraintSpec field numbers.
+		 * @param value The value to assign.
+		 * @return this Builder.
+		 */
+		Builder set(int field,double value) {
+			values[field] = value;
+			mask |= (1 << field);
+			return this;
+		}
+
+		/**
+		 * Record all of the assignments in a spec.
+		 * @param spec The spec to copy.
+		 * @return this Builder.
+		 */
+		Builder setAll(ConstraintSpec spec) {
+			for (int ii=0; ii<spec.fields.length; ++ii) {
+				set(spec.fields[ii],spec.values[ii]);
+			}
+			return this;
+		}
+
+		/**
+		 * @return A spec containing the recorded assignments, in field order.
+		 */
+		ConstraintSpec build() {
+			if (mask == 0) return EMPTY;
+			int n = Integer.bitCount(mask);
+			int[] f = new int[n];
+			double[] v = new double[n];
+			int jj = 0;
+			for (int ii=0; ii<FIELD_COUNT; ++ii) {
+				if ((mask & (1 << ii)) != 0) {
+					f[jj] = ii;
+					v[jj] = values[ii];
+					++jj;
+				}
+			}
+			return new ConstraintSpec(f,v);
+		}
+
+		// Bit N is set if field N has been assigned.
+		private int mask;
+
+		// Assigned values, indexed by field number.
+		private final double[] values = new double[FIELD_COUNT];
+	}
+
+	// The maximum number of interned specs.
+	private static final int MAX_INTERNED = 4096;
+
+	// Canonical specs, each mapped to itself.
+	private static final ConcurrentHashMap<ConstraintSpec,ConstraintSpec> INTERNED = new ConcurrentHashMap<>();
+
+	// Constraint names used by toString(), indexed by field number.
+	private static final String[] FIELD_NAMES = {
+			"gridwidth","gridheight","weightx","weighty","anchor","fill",
+			"ipadx","ipady","inset_top","inset_left","inset_bottom","inset_right"
+	};
+
+	// The field assigned by each step of the program.
+	private final int[] fields;
+
+	// The value assigned by each step of the program.
+	private final double[] values;
+
+	// Cached hash code.
+	private final int hash;
+}
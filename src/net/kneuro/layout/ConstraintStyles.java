@@ -0,0 +1,143 @@
+/**
+ * Copyright (c) 2018 Joseph A Knapka
+ *
+ * This code is released under the terms of the MIT License.
+ */
+package net.kneuro.layout;
+
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * A global registry of named constraint styles. A style is a set of
+ * constraints that is compiled once, when it is defined, and can then
+ * be referred to by name anywhere constraints are accepted:
+ * <br><br>
+ * <pre>
+ *    ConstraintStyles.define("label","anchor e i* 5 wx 0");
+ *    ConstraintStyles.define("field","fill x wx 1 i* 5");
+ *    ...
+ *    gr.add(nameLbl,0,0,"@label");
+ *    gr.add(nameFld,0,1,"@field gridwidth 2");
+ *    gr.add(okBtn,1,1,ConstraintStyles.get("field").fill(GridBagConstraints.NONE));
+ *    gr.parseLayout("{lbl:@label fld:@field,wx2}");
+ * </pre>
+ *
+ * In constraint strings, "@name" applies the named style at that
+ * point, so constraints that follow it override the style's, and
+ * constraints before it are overridden. In a layout string, "@name"
+ * may appear in a component's comma-separated embedded constraints.
+ * Referring to a style never parses its constraints again: the
+ * style's compiled constraints are looked up by name and copied.
+ * <p>
+ * Style names are case sensitive, and may not contain whitespace or
+ * any of the characters {@code {}|+^<-:,@}.
+ * Since compiled constraints are cached, redefining a style that is
+ * already in use clears Gridder's constraint and layout caches.
+ * Layouts already compiled keep the old definition.
+ *
+ * @author jk
+ */
+public final class ConstraintStyles {
+
+	// Marks a style reference in a constraint string.
+	public static final char PREFIX = '@';
+
+	private ConstraintStyles() {
+		// Static methods only.
+	}
+
+	/**
+	 * Define or redefine a style.
+	 * @param name The style name.
+	 * @param constraints The style's constraints, given any way
+	 * Gridder.add() accepts them. They may refer to other styles.
+	 * @return The compiled style.
+	 * @throws IllegalArgumentException if the name is not a valid style name.
+	 * @throws RuntimeException if the constraints cannot be interpreted.
+	 */
+	public static Constraints define(String name,Object... constraints) {
+		return define(name,new Constraints(ConstraintParser.compile(constraints).intern()));
+	}
+
+	/**
+	 * Define or redefine a style.
+	 * @param name The style name.
+	 * @param constraints The style's constraints.
+	 * @return The style, which is the constraints given.
+	 * @throws IllegalArgumentException if the name is not a valid style name.
+	 */
+	public static Constraints define(String name,Constraints constraints) {
+		checkName(name);
+		Constraints old = STYLES.put(name,constraints);
+		if ((old != null) && !old.equals(constraints)) {
+			// Cached specs and layouts may include the old definition.
+			ConstraintCache.SHARED.clear();
+			CompiledLayout.clearCache();
+		}
+		return constraints;
+	}
+
+	/**
+	 * Get a style, for use with the typed Constraints API.
+	 * @param name The style name.
+	 * @return The style's constraints.
+	 * @throws RuntimeException if no such style is defined.
+	 */
+	public static Constraints get(String name) {
+		Constraints style = STYLES.get(name);
+		if (style == null) {
+			throw unknownStyle(name);
+		}
+		return style;
+	}
+
+	/**
+	 * @param name A style name.
+	 * @return true if the style is defined.
+	 */
+	public static boolean isDefined(String name) {
+		return STYLES.containsKey(name);
+	}
+
+	/**
+	 * Resolve a style reference in a constraint string.
+	 * @param cs The characters containing the reference.
+	 * @param start The index of the PREFIX character.
+	 * @param end The index just past the end of the style name.
+	 * @return The style's compiled constraints.
+	 * @throws RuntimeException if no such style is defined.
+	 */
+	static ConstraintSpec resolve(CharSequence cs,int start,int end) {
+		return get(cs.subSequence(start + 1,end).toString()).spec();
+	}
+
+	/**
+	 * @param obj A constraint argument.
+	 * @return true if obj is a string that refers to a style.
+	 */
+	static boolean refersToStyle(Object obj) {
+		return (obj instanceof String) && (((String)obj).indexOf(PREFIX) >= 0);
+	}
+
+	private static void checkName(String name) {
+		if ((name == null) || name.isEmpty()) {
+			throw new IllegalArgumentException("Style name cannot be empty");
+		}
+		for (int idx=0; idx<name.length(); ++idx) {
+			char c = name.charAt(idx);
+			if (Character.isWhitespace(c) || (RESERVED.indexOf(c) >= 0)) {
+				throw new IllegalArgumentException("Bad character '"+c+"' in style name "+name);
+			}
+		}
+	}
+
+	private static RuntimeException unknownStyle(String name) {
+		return new RuntimeException("Unknown constraint style: "+name);
+	}
+
+	// Characters that would confuse the constraint or layout syntax.
+	private static final String RESERVED = "{}[]|+^<-:,@#";
+
+	// Styles by name.
+	private static final ConcurrentHashMap<String,Constraints> STYLES = new ConcurrentHashMap<>();
+}
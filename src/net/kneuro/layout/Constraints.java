@@ -0,0 +1,228 @@
+/**
+ * Copyright (c) 2018 Joseph A Knapka
+ *
+ * This code is released under the terms of the MIT License.
+ */
+package net.kneuro.layout;
+
+/**
+ * An immutable set of typed constraints that can be passed to
+ * Gridder.add(), the Gridder constructor, or
+ * Gridder.updateConstraints() in place of constraint strings.
+ * Since no string handling is involved, constraints given this way
+ * are never parsed.
+ * <p>
+ * Each method returns a new Constraints object with one more
+ * constraint set, leaving the original unchanged, so a Constraints
+ * object can be reused freely and shared as a static constant.
+ * The easiest way to start a chain is with the static methods of
+ * the Cons class:
+ * <br><br>
+ * <pre>
+ *    static final Constraints FIELD =
+ *          Cons.anchor(GridBagConstraints.WEST).weightx(1)
+ *              .fill(GridBagConstraints.HORIZONTAL).insets(5);
+ *    ...
+ *    gr.add(nameFld,0,1,FIELD);
+ * </pre>
+ *
+ * Integer values are used exactly as given. As with the string
+ * constraints, gridwidth and gridheight are ignored when a component
+ * is added by its layout string ID.
+ *
+ * @author jk
+ */
+public final class Constraints {
+
+	// A Constraints object that sets nothing.
+	public static final Constraints NONE = new Constraints(ConstraintSpec.EMPTY);
+
+	/**
+	 * @param gridwidth The number of grid columns to span.
+	 * @return A copy of these constraints with gridwidth set.
+	 */
+	public Constraints gridwidth(int gridwidth) {
+		return with(ConstraintSpec.GRIDWIDTH,gridwidth);
+	}
+
+	/**
+	 * @param gridheight The number of grid rows to span.
+	 * @return A copy of these constraints with gridheight set.
+	 */
+	public Constraints gridheight(int gridheight) {
+		return with(ConstraintSpec.GRIDHEIGHT,gridheight);
+	}
+
+	/**
+	 * @param weightx The horizontal weight.
+	 * @return A copy of these constraints with weightx set.
+	 */
+	public Constraints weightx(double weightx) {
+		return with(ConstraintSpec.WEIGHTX,weightx);
+	}
+
+	/**
+	 * @param weighty The vertical weight.
+	 * @return A copy of these constraints with weighty set.
+	 */
+	public Constraints weighty(double weighty) {
+		return with(ConstraintSpec.WEIGHTY,weighty);
+	}
+
+	/**
+	 * @param weight The weight to use in both directions.
+	 * @return A copy of these constraints with weightx and weighty set.
+	 */
+	public Constraints weight(double weight) {
+		return with(ConstraintSpec.WEIGHTX,weight,ConstraintSpec.WEIGHTY,weight);
+	}
+
+	/**
+	 * @param anchor One of the GridBagConstraints anchor constants.
+	 * @return A copy of these constraints with anchor set.
+	 */
+	public Constraints anchor(int anchor) {
+		return with(ConstraintSpec.ANCHOR,anchor);
+	}
+
+	/**
+	 * @param fill One of the GridBagConstraints fill constants.
+	 * @return A copy of these constraints with fill set.
+	 */
+	public Constraints fill(int fill) {
+		return with(ConstraintSpec.FILL,fill);
+	}
+
+	/**
+	 * @param ipadx The internal horizontal padding.
+	 * @return A copy of these constraints with ipadx set.
+	 */
+	public Constraints ipadx(int ipadx) {
+		return with(ConstraintSpec.IPADX,ipadx);
+	}
+
+	/**
+	 * @param ipady The internal vertical padding.
+	 * @return A copy of these constraints with ipady set.
+	 */
+	public Constraints ipady(int ipady) {
+		return with(ConstraintSpec.IPADY,ipady);
+	}
+
+	/**
+	 * @param ipad The internal padding to use in both directions.
+	 * @return A copy of these constraints with ipadx and ipady set.
+	 */
+	public Constraints ipad(int ipad) {
+		return with(ConstraintSpec.IPADX,ipad,ConstraintSpec.IPADY,ipad);
+	}
+
+	/**
+	 * @param top The top inset.
+	 * @return A copy of these constraints with insets.top set.
+	 */
+	public Constraints insetTop(int top) {
+		return with(ConstraintSpec.INSET_TOP,top);
+	}
+
+	/**
+	 * @param left The left inset.
+	 * @return A copy of these constraints with insets.left set.
+	 */
+	public Constraints insetLeft(int left) {
+		return with(ConstraintSpec.INSET_LEFT,left);
+	}
+
+	/**
+	 * @param bottom The bottom inset.
+	 * @return A copy of these constraints with insets.bottom set.
+	 */
+	public Constraints insetBottom(int bottom) {
+		return with(ConstraintSpec.INSET_BOTTOM,bottom);
+	}
+
+	/**
+	 * @param right The right inset.
+	 * @return A copy of these constraints with insets.right set.
+	 */
+	public Constraints insetRight(int right) {
+		return with(ConstraintSpec.INSET_RIGHT,right);
+	}
+
+	/**
+	 * @param inset The value to use for all four insets.
+	 * @return A copy of these constraints with all insets set.
+	 */
+	public Constraints insets(int inset) {
+		return insets(inset,inset,inset,inset);
+	}
+
+	/**
+	 * @return A copy of these constraints with all insets set.
+	 */
+	public Constraints insets(int top,int left,int bottom,int right) {
+		return new Constraints(new ConstraintSpec.Builder()
+				.setAll(spec)
+				.set(ConstraintSpec.INSET_TOP,top)
+				.set(ConstraintSpec.INSET_LEFT,left)
+				.set(ConstraintSpec.INSET_BOTTOM,bottom)
+				.set(ConstraintSpec.INSET_RIGHT,right)
+				.build());
+	}
+
+	/**
+	 * @param overrides More constraints.
+	 * @return A Constraints object with all of these constraints, plus
+	 * all of the given ones, which take precedence.
+	 */
+	public Constraints and(Constraints overrides) {
+		return new Constraints(spec.overriddenBy(overrides.spec));
+	}
+
+	@Override
+	public boolean equals(Object obj) {
+		return (obj instanceof Constraints) && spec.equals(((Constraints)obj).spec);
+	}
+
+	@Override
+	public int hashCode() {
+		return spec.hashCode();
+	}
+
+	/**
+	 * @return These constraints as a "constraintName value ..." string.
+	 */
+	@Override
+	public String toString() {
+		return spec.toString();
+	}
+
+	/**
+	 * Wrap a compiled spec.
+	 */
+	Constraints(ConstraintSpec spec) {
+		super();
+		this.spec = spec;
+	}
+
+	/**
+	 * @return The compiled form of these constraints.
+	 */
+	ConstraintSpec spec() {
+		return spec;
+	}
+
+	// Return a copy of these constraints with one field set.
+	private Constraints with(int field,double value) {
+		return new Constraints(new ConstraintSpec.Builder().setAll(spec).set(field,value).build());
+	}
+
+	// Return a copy of these constraints with two fields set.
+	private Constraints with(int field1,double value1,int field2,double value2) {
+		return new Constraints(new ConstraintSpec.Builder().setAll(spec)
+				.set(field1,value1).set(field2,value2).build());
+	}
+
+	// The compiled constraints.
+	private final ConstraintSpec spec;
+}
@@ -10,8 +10,19 @@ import java.awt.Container;
 import java.awt.GridBagConstraints;
 import java.awt.GridBagLayout;
 import java.awt.Insets;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Consumer;
 
 import javax.swing.JComponent;
+import javax.swing.JPanel;
 
 /**
  * <h1>Gridder: Never Deal With GridBagConstraints Again</h1>
@@ -156,6 +167,22 @@ import javax.swing.JComponent;
  * Constraint names and values are <em>case insensitive</em>, so "ANCHOR NW" is
  * a valid constraint.
  * 
+ * <h2>Typed Constraints</h2>
+ * 
+ * Constraints can also be given as immutable Constraints objects,
+ * which are built with typed methods and are never parsed. The Cons
+ * class provides convenient starting points:
+ * <br><br>
+ * <pre>
+ *    static final Constraints FIELD = Cons.fill(GridBagConstraints.HORIZONTAL).weightx(1);
+ *    ...
+ *    gr.add(nameFld,0,3,FIELD);
+ *    gr.add(new JButton("OK"),1,3,Cons.anchor(GridBagConstraints.EAST).insets(5));
+ * </pre>
+ * 
+ * Constraints objects can be passed anywhere constraint strings can,
+ * including mixed in with strings in a varargs list.
+ * 
  * <h2>2D Text-Based Layouts</h2>
  * 
  * The other, and sometimes more convenient way to use Gridder is
@@ -221,9 +248,9 @@ import javax.swing.JComponent;
  *   of this code
  * <li> Whitespace within a layout string is ignored except that
  *   component identifiers such as "c1" are delimited by either
- *   whitespace or one of the other layout characters {}|-^&lt;+
+ *   whitespace or one of the other layout characters {}[]|-^&lt;+
  * <li> Component identifiers are any string that contains
- *   no whitespace and none of the characters {}|-^&lt;+
+ *   no whitespace and none of the characters {}[]|-^&lt;+
  * <li> If a component identifier contains a colon, the
  *   characters following the colon are interpreted as a
  *   comma-separated list of constraints in the format
@@ -236,6 +263,23 @@ import javax.swing.JComponent;
  *   maximally-compact 2D layouts, do not use embedded
  *   constraints; instead, specify override constraints in
  *   the add() method as described below.
+ * <li> A row written as *N{...}, such as *100{lbl_# fld_# +},
+ *   stands for N copies of the row, one below the other. Each '#'
+ *   in a component identifier in the row is replaced by the copy's
+ *   index, from 0 to N-1, so this row defines lbl_0 and fld_0 in
+ *   its first copy and lbl_99 and fld_99 in its last. A | in a
+ *   repeated row extends the component above through every copy,
+ *   but components in a repeated row cannot themselves be extended
+ *   downward. The copies are never expanded in memory; add("lbl_42",...)
+ *   works out the position of lbl_42 when it is called. A * only
+ *   starts a repeat count between rows; within a row, as in {a *b},
+ *   it is part of an identifier.
+ * <li> A component identifier followed by [...] holds a sub-layout:
+ *   its cell is laid out by the rows between the brackets, as in
+ *   form[{nameLbl name}{addrLbl addr}]. Sub-layouts are compiled
+ *   along with the layout that holds them, and can be nested. Each
+ *   has its own component identifiers. addSubLayouts() creates a
+ *   panel and a Gridder for every sub-layout in one call.
  * </ul>
  * <p>
  * The layout string above is a completely valid example, even
@@ -277,6 +321,12 @@ import javax.swing.JComponent;
  * both the default constraints supplied to the Gridder constructor
  * and any embedded constraints from the layout string.
  * <p>
+ * To move components that have already been added, call
+ * relayout() with a changed layout string. Only the components whose
+ * position, extent or embedded constraints changed are given new
+ * constraints. watchLayout() does this whenever a layout file is
+ * saved.
+ * <p>
  * When using text-based layouts, keep in mind that any gridwidth
  *    or gridheight constraints you supply will
  *    be ignored, since those constraints will be derived from
@@ -284,9 +334,22 @@ import javax.swing.JComponent;
  * </p>
  * <p>
  * It is, of course, possible to write a nonsensical layout
- * using the simple layout language described above. In the
- * interest of keeping it simple, the code does not defend
- * against this possibility. So don't do that.
+ * using the simple layout language described above. The
+ * mistakes that are caught, which make parseLayout() throw a
+ * RuntimeException, are:
+ * </p>
+ * <ul>
+ * <li> Using the same component identifier twice.
+ * <li> Overlapping components, such as a component written inside
+ *   the extent of a component above it, in a cell that should be -.
+ * <li> Spans that extend nothing, such as a + at the start of a row
+ *   or a | below an empty cell.
+ * <li> Components that are not rectangles, such as a + after a gap
+ *   in a row, or a | with a gap above it.
+ * </ul>
+ * <p>
+ * These checks cost a constant amount per cell, so they are always
+ * made, even for very large layouts.
  * </p>
  * 
  * @author jk
@@ -310,9 +373,19 @@ public class Gridder {
 		super();
 		this.container = container;
 		this.layout = null;
-		container.setLayout(new GridBagLayout());
-		this.defaultConstraints = this.getDefaultConstraints();
-		ConstraintParser.parseConstraints(this.defaultConstraints,constraints);
+		this.gridBag = new DeferringGridBagLayout();
+		container.setLayout(this.gridBag);
+		this.defaults = ConstraintSpec.snapshot(getDefaultConstraints())
+				.overriddenBy(ConstraintCache.SHARED.get(constraints)).intern();
+	}
+
+	/**
+	 * Construct a Gridder instance with typed default constraints.
+	 * @param container The container the Gridder will manage.
+	 * @param constraints Default constraints to apply to added components.
+	 */
+	public Gridder(Container container,Constraints constraints) {
+		this(container,(Object)constraints);
 	}
 
 	/**
@@ -331,20 +404,248 @@ public class Gridder {
 	 * </pre>
 	 */
 	public void add(Component comp, int row, int col, Object...constraints) {
-		GridBagConstraints gbc = ConstraintParser.copyGBC(defaultConstraints);
-		ConstraintParser.parseConstraints(gbc, constraints);
-		gbc.gridx = col;
-		gbc.gridy = row;
-		this.container.add(comp,gbc);
+		place(comp,row,col,ConstraintCache.SHARED.get(constraints));
+	}
+
+	/**
+	 * Add a component to the Gridder's managed container, using
+	 * typed constraints.
+	 * @param comp The component to add.
+	 * @param row The first grid row the component occupies.
+	 * @param col The first grid column the component occupies.
+	 * @param constraints Additional constraints to apply to the component.
+	 */
+	public void add(Component comp, int row, int col, Constraints constraints) {
+		place(comp,row,col,constraints.spec());
 	}
 
 	/**
 	 * Parse a layout string as described in the class comment. This allows
 	 * components to be added using the add(String,Component) method.
+	 * Recently parsed layout strings are cached, so parsing the same
+	 * string for many containers is cheap; see CompiledLayout.
 	 * @param layoutStr The layout string to parse.
+	 * @throws RuntimeException if the layout string cannot be parsed,
+	 * or uses a component identifier more than once.
 	 */
 	public void parseLayout(String layoutStr) {
-		layout = new LayoutParser(layoutStr);
+		layout = CompiledLayout.of(layoutStr);
+	}
+
+	/**
+	 * Parse a layout held in any CharSequence, such as a layout file
+	 * mapped into memory by LayoutFiles.map(). A mapped file is read in
+	 * place, without copying it into a String. Other kinds of text,
+	 * such as a StringBuilder, are copied first, since the parsed
+	 * layout refers to its text for component names.
+	 * @param layoutText The layout to parse.
+	 * @throws RuntimeException if the layout cannot be parsed, or
+	 * uses a component identifier more than once.
+	 */
+	public void parseLayout(CharSequence layoutText) {
+		layout = CompiledLayout.compile(layoutText);
+	}
+
+	/**
+	 * Use a layout that has already been compiled, possibly shared with
+	 * other Gridder instances, as if it had just been parsed.
+	 * @param layout The layout to use.
+	 */
+	public void useLayout(CompiledLayout layout) {
+		if (layout == null) {
+			throw new IllegalArgumentException("layout cannot be null");
+		}
+		this.layout = layout;
+	}
+
+	/**
+	 * Build the containers for the sub-layouts in the last parsed
+	 * layout, and in their sub-layouts, all the way down. Each
+	 * component whose cell holds a sub-layout is added as a new JPanel,
+	 * managed by a new Gridder that uses the sub-layout as if it had
+	 * been parsed. The sub-layouts were compiled along with the
+	 * layout, so nothing is parsed here.
+	 * @param constraints Default constraints for the new Gridders,
+	 * specified as for the Gridder constructor.
+	 * @return The new Gridders for the whole tree, by the identifier of
+	 * the component whose cell holds each one's sub-layout.
+	 * @throws RuntimeException if no layout has been parsed, or two
+	 * sub-layouts anywhere in the tree belong to components with the
+	 * same identifier. Nothing is added in that case.
+	 */
+	public Map<String,Gridder> addSubLayouts(Object... constraints) {
+		if (layout == null) {
+			throw new RuntimeException("No layout string has been parsed");
+		}
+		checkSubLayoutNames(layout,new HashSet<>());
+		Map<String,Gridder> result = new LinkedHashMap<>();
+		addSubLayouts(ConstraintCache.SHARED.get(constraints),result);
+		return result;
+	}
+
+	// Build this Gridder's sub-layouts and theirs, adding their
+	// Gridders to result.
+	private void addSubLayouts(ConstraintSpec subDefaults,Map<String,Gridder> result) {
+		for (LayoutComponent cp: layout.subLayoutComponents()) {
+			Gridder sub = new Gridder(new JPanel());
+			sub.defaults = sub.defaults.overriddenBy(subDefaults).intern();
+			sub.useLayout(cp.getSubLayout());
+			String name = cp.getName();
+			place(name,sub.container,ConstraintSpec.EMPTY);
+			subGridders.put(name,sub);
+			result.put(name,sub);
+			sub.addSubLayouts(subDefaults,result);
+		}
+	}
+
+	// Check that the sub-layouts in a layout's tree have distinct names.
+	private static void checkSubLayoutNames(CompiledLayout compiled,Set<String> names) {
+		for (LayoutComponent cp: compiled.subLayoutComponents()) {
+			if (!names.add(cp.getName())) {
+				throw new RuntimeException("Duplicate sub-layout name "+cp.getName()+" in layout string.");
+			}
+			checkSubLayoutNames(cp.getSubLayout(),names);
+		}
+	}
+
+	/**
+	 * Reparse a changed layout and move the components already added
+	 * by name to their places in it. The new layout is compared with
+	 * the current one by component name, and only components whose
+	 * position, extent or embedded constraints differ are given new
+	 * constraints, using the defaults and overrides they were added
+	 * with. The container is revalidated once at the end, if anything
+	 * changed. Components added by position, and components that have
+	 * since been removed from the container, are left alone.
+	 * The sub-layouts in the new layout are applied to the Gridders
+	 * that addSubLayouts() made for them in the same way, all the way
+	 * down; a panel whose cell no longer holds a sub-layout keeps its
+	 * old one.
+	 * @param layoutStr The changed layout.
+	 * @return The number of components whose constraints changed,
+	 * including those in sub-layouts.
+	 * @throws RuntimeException if the layout cannot be parsed, or it or
+	 * one of its sub-layouts has no component named as one of the
+	 * added components. Nothing is changed in that case.
+	 */
+	public int relayout(String layoutStr) {
+		return relayout(CompiledLayout.of(layoutStr));
+	}
+
+	/**
+	 * Reparse a changed layout held in any CharSequence, as
+	 * relayout(String) does.
+	 * @param layoutText The changed layout.
+	 * @return The number of components whose constraints changed.
+	 * @throws RuntimeException if the layout cannot be parsed, or has
+	 * no component named as one of the added components.
+	 */
+	public int relayout(CharSequence layoutText) {
+		return relayout(CompiledLayout.compile(layoutText));
+	}
+
+	/**
+	 * Switch to a changed, already compiled layout, as
+	 * relayout(String) does.
+	 * @param newLayout The changed layout.
+	 * @return The number of components whose constraints changed.
+	 * @throws RuntimeException if the layout has no component named as
+	 * one of the added components.
+	 */
+	public int relayout(CompiledLayout newLayout) {
+		if (newLayout == null) {
+			throw new IllegalArgumentException("layout cannot be null");
+		}
+		// Check the whole tree before changing anything.
+		checkRelayout(newLayout);
+		return applyRelayout(newLayout);
+	}
+
+	// Check that a layout, and the sub-layouts in it, name every
+	// component added by name to this Gridder and its sub-layout
+	// Gridders.
+	private void checkRelayout(CompiledLayout newLayout) {
+		for (Placement placement: placed.values()) {
+			if (placement.comp.getParent() != container) continue;
+			LayoutComponent cp = newLayout.getComponent(placement.name);
+			if (cp == null) {
+				throw new RuntimeException("No component named "+placement.name+" in layout string.");
+			}
+			Gridder sub = subGridderOf(placement);
+			if ((sub != null) && (cp.getSubLayout() != null)) {
+				sub.checkRelayout(cp.getSubLayout());
+			}
+		}
+	}
+
+	// Switch to a checked layout, giving new constraints to the
+	// components that moved here and in the sub-layouts.
+	private int applyRelayout(CompiledLayout newLayout) {
+		int moved = 0;
+		int movedInSubLayouts = 0;
+		// Drop the components removed from the container by other means.
+		for (Placement placement: new ArrayList<>(placed.values())) {
+			if (placement.comp.getParent() != container) {
+				forget(placement);
+			}
+		}
+		for (Placement placement: placed.values()) {
+			LayoutComponent cp = newLayout.getComponent(placement.name);
+			if (!samePlace(placement.position,cp)) {
+				placement.position = cp;
+				gridBag.setConstraints(placement.comp,constraintsFor(placement));
+				++moved;
+			}
+			Gridder sub = subGridderOf(placement);
+			if ((sub != null) && (cp.getSubLayout() != null)) {
+				movedInSubLayouts += sub.applyRelayout(cp.getSubLayout());
+			}
+		}
+		this.layout = newLayout;
+		if (moved > 0) {
+			changed();
+		}
+		return moved + movedInSubLayouts;
+	}
+
+	// The Gridder made by addSubLayouts() for a placed component's
+	// panel, or null.
+	private Gridder subGridderOf(Placement placement) {
+		Gridder sub = subGridders.get(placement.name);
+		return ((sub != null) && (sub.container == placement.comp)) ? sub : null;
+	}
+
+	/**
+	 * Parse a layout file, and reparse it whenever it changes, applying
+	 * each change with relayout(). The file is read as UTF-8. Changes
+	 * are parsed on a background thread and applied on the Swing event
+	 * thread. A change that cannot be parsed or applied is reported to
+	 * System.err and otherwise ignored, so the layout can be fixed and
+	 * saved again.
+	 * @param file The layout file.
+	 * @return The watcher, which must be closed to stop watching.
+	 * @throws IOException if the file cannot be read or watched.
+	 * @throws RuntimeException if the layout cannot be parsed, or has
+	 * no component named as one of the added components.
+	 */
+	public LayoutWatcher watchLayout(Path file) throws IOException {
+		return watchLayout(file,ex -> System.err.println(file+": "+ex.getMessage()));
+	}
+
+	/**
+	 * Parse a layout file and reparse it whenever it changes, as
+	 * watchLayout(Path) does, reporting errors in changed layouts to a
+	 * handler on the Swing event thread.
+	 * @param file The layout file.
+	 * @param onError Called with the exception when a change cannot be
+	 * parsed or applied.
+	 * @return The watcher, which must be closed to stop watching.
+	 * @throws IOException if the file cannot be read or watched.
+	 * @throws RuntimeException if the layout cannot be parsed, or has
+	 * no component named as one of the added components.
+	 */
+	public LayoutWatcher watchLayout(Path file,Consumer<Exception> onError) throws IOException {
+		return new LayoutWatcher(this,file,onError);
 	}
 
 	/**
@@ -365,19 +666,229 @@ public class Gridder {
 	 * they are derived from the layout string.
 	 */
 	public void add(String layoutName,Component comp,Object...constraints) {
+		place(layoutName,comp,ConstraintCache.SHARED.get(constraints));
+	}
+
+	/**
+	 * Add a component whose position and extent will be determined based
+	 * on the last parsed layout string, using typed constraints.
+	 * @param layoutName The layout ID of the component within the layout string.
+	 * @param comp The component to add.
+	 * @param constraints Additional constraints to apply to the component.
+	 * Note that gridwidth and gridheight constraints will be ignored since
+	 * they are derived from the layout string.
+	 */
+	public void add(String layoutName,Component comp,Constraints constraints) {
+		place(layoutName,comp,constraints.spec());
+	}
+
+	/**
+	 * Add a component at the position and extent of a component read
+	 * by a StreamingLayoutParser. This is normally called from
+	 * LayoutListener.componentFinished(), so that components can be
+	 * added while a layout is still being read; the layout need not
+	 * have been parsed by this Gridder.
+	 * @param position The component's position in the layout.
+	 * @param comp The component to add.
+	 * @param constraints Any additional constraints to apply to the
+	 * component, as for add(String,Component,Object...).
+	 */
+	public void add(LayoutComponent position,Component comp,Object...constraints) {
+		place(position,comp,ConstraintCache.SHARED.get(constraints));
+	}
+
+	/**
+	 * Add a component at the position and extent of a component read
+	 * by a StreamingLayoutParser, using typed constraints.
+	 * @param position The component's position in the layout.
+	 * @param comp The component to add.
+	 * @param constraints Additional constraints to apply to the component.
+	 */
+	public void add(LayoutComponent position,Component comp,Constraints constraints) {
+		place(position,comp,constraints.spec());
+	}
+
+	/**
+	 * Add many components by layout ID in one batch. Every ID is looked
+	 * up before any component is added, so a bad ID leaves the
+	 * container unchanged. The components are added in the map's
+	 * iteration order, and the container is revalidated once at the
+	 * end rather than by the caller after each add.
+	 * @param components The components to add, by layout ID.
+	 * @param constraints Any additional constraints to apply to every
+	 * component, as for add(String,Component,Object...).
+	 * @throws RuntimeException if no layout has been parsed, or it has
+	 * no component with one of the IDs.
+	 */
+	public void addAll(Map<String,? extends Component> components,Object... constraints) {
+		LayoutComponent[] positions = new LayoutComponent[components.size()];
+		Component[] comps = new Component[positions.length];
+		int idx = 0;
+		for (Map.Entry<String,? extends Component> entry: components.entrySet()) {
+			if (entry.getValue() == null) {
+				throw new IllegalArgumentException("component "+entry.getKey()+" cannot be null");
+			}
+			positions[idx] = positionOf(entry.getKey());
+			comps[idx++] = entry.getValue();
+		}
+		placeAll(positions,comps,ConstraintCache.SHARED.get(constraints));
+	}
+
+	/**
+	 * Add a component for every component identifier in the last
+	 * parsed layout, in one batch as addAll(Map,Object...) does. The
+	 * components are given in row-major order: by the row of each
+	 * identifier's top-left cell, and then by its column, with each
+	 * copy of a repeated row in turn. A null element leaves that
+	 * identifier's cell empty.
+	 * @param components One component, or null, per identifier.
+	 * @param constraints Any additional constraints to apply to every
+	 * component, as for add(String,Component,Object...).
+	 * @throws RuntimeException if no layout has been parsed.
+	 * @throws IllegalArgumentException if the number of components is
+	 * not the number of identifiers in the layout. Nothing is added in
+	 * that case.
+	 */
+	public void addAll(Component[] components,Object... constraints) {
 		if (layout == null) {
 			throw new RuntimeException("No layout string has been parsed");
 		}
-		LayoutParser.ComponentPosition cp = layout.getComponentByName(layoutName);
-		if (cp != null) {
-			String embeddedConstraints = cp.constraints;
-			Object[] augmentedConstraints = new Object[constraints.length + 1];
-			augmentedConstraints[0] = embeddedConstraints;
-			System.arraycopy(constraints,0,augmentedConstraints,1,constraints.length);
-			constraints = addGridSizeConstraints(cp.width,cp.height,augmentedConstraints);
-			add(comp,cp.row,cp.col,constraints);
-		} else {
-			throw new RuntimeException("No component named "+layoutName+" in layout string.");
+		long count = layout.componentCount();
+		if (components.length != count) {
+			throw new IllegalArgumentException("Expected "+count+" components for the layout, got "+components.length);
+		}
+		placeAll(layout.componentsInRowOrder().toArray(new LayoutComponent[0]),components,
+				ConstraintCache.SHARED.get(constraints));
+	}
+
+	/**
+	 * Get the component added by a layout ID.
+	 * @param layoutName The layout ID the component was added by.
+	 * @return The component, or null if none has been added by that ID
+	 * or it has since been removed from the container.
+	 */
+	public Component get(String layoutName) {
+		Placement placement = placement(layoutName);
+		return (placement != null) ? placement.comp : null;
+	}
+
+	/**
+	 * Replace the component added by a layout ID with another, which
+	 * takes its place: the same position in the container's component
+	 * order, and the same constraints, built from the layout position,
+	 * defaults and overrides the old component was added with. Nothing
+	 * is parsed, and no other component's constraints are touched. The
+	 * new component is given the old one's bounds, and the container
+	 * is revalidated and repainted, or is when the open update closes.
+	 * @param layoutName The layout ID the old component was added by.
+	 * @param comp The new component, which must not already be in the
+	 * container.
+	 * @return The old component, which is no longer in the container.
+	 * @throws RuntimeException if no component in the container was
+	 * added by that ID.
+	 */
+	public Component replace(String layoutName,Component comp) {
+		if (comp == null) {
+			throw new IllegalArgumentException("component cannot be null");
+		}
+		Placement placement = placement(layoutName);
+		if (placement == null) {
+			throw new RuntimeException("No component has been added as "+layoutName+".");
+		}
+		if (comp.getParent() == container) {
+			throw new IllegalArgumentException("component is already in the container");
+		}
+		Component old = placement.comp;
+		int index = container.getComponentZOrder(old);
+		forget(placement);
+		container.remove(index);
+		comp.setBounds(old.getBounds());
+		container.add(comp,constraintsFor(placement),index);
+		placement.comp = comp;
+		record(placement);
+		changed();
+		return old;
+	}
+
+	/**
+	 * Remove the component added by a layout ID from the container.
+	 * Its cell is left empty until another component is added by that
+	 * ID. The container is revalidated and repainted, or is when the
+	 * open update closes.
+	 * @param layoutName The layout ID the component was added by.
+	 * @return The removed component, or null if no component in the
+	 * container was added by that ID.
+	 */
+	public Component remove(String layoutName) {
+		Placement placement = placement(layoutName);
+		if (placement == null) {
+			return null;
+		}
+		forget(placement);
+		container.remove(placement.comp);
+		changed();
+		return placement.comp;
+	}
+
+	// Index a component added by name. A component added earlier by
+	// the same name, or this component's entry under another name, is
+	// no longer indexed.
+	private void record(Placement placement) {
+		Placement old = placed.put(placement.name,placement);
+		if ((old != null) && (old.comp != placement.comp)) {
+			byComponent.remove(old.comp,old);
+		}
+		old = byComponent.put(placement.comp,placement);
+		if ((old != null) && (old != placement)) {
+			placed.remove(old.name,old);
+		}
+	}
+
+	// The placement of the component added by a layout ID, or null if
+	// there is none still in the container. Placements of components
+	// removed from the container by other means are dropped.
+	private Placement placement(String layoutName) {
+		Placement placement = placed.get(layoutName);
+		if ((placement != null) && (placement.comp.getParent() != container)) {
+			forget(placement);
+			placement = null;
+		}
+		return placement;
+	}
+
+	// Drop a placement, and the sub-layout Gridder made for its panel.
+	private void forget(Placement placement) {
+		placed.remove(placement.name,placement);
+		byComponent.remove(placement.comp,placement);
+		if (subGridderOf(placement) != null) {
+			subGridders.remove(placement.name);
+		}
+	}
+
+	/**
+	 * Begin a batch of changes to the container. Until the returned
+	 * update is closed, the container is not laid out, and the
+	 * revalidation and repainting that add(), addAll() and relayout()
+	 * would do are put off. When the outermost open update is closed,
+	 * the container is revalidated and repainted once if anything was
+	 * added or moved, or a layout was skipped. Updates can be nested,
+	 * and should be closed on the Swing event thread in a
+	 * try-with-resources statement, so that an exception still ends
+	 * them.
+	 * @return The update, to be closed when the changes are done.
+	 */
+	public GridderUpdate beginUpdate() {
+		++gridBag.updates;
+		return new GridderUpdate(this);
+	}
+
+	// End an update begun by beginUpdate(). Called by GridderUpdate.close().
+	void endUpdate() {
+		if (--gridBag.updates == 0 && gridBag.pending) {
+			gridBag.pending = false;
+			container.invalidate();
+			container.revalidate();
+			container.repaint();
 		}
 	}
 
@@ -408,24 +919,158 @@ public class Gridder {
 	 * @param constraints A list of constraint names and values.
 	 */
 	public void updateConstraints(Object...constraints) {
-		ConstraintParser.parseConstraints(this.defaultConstraints,constraints);
+		this.defaults = this.defaults.overriddenBy(ConstraintCache.SHARED.get(constraints)).intern();
+	}
+
+	/**
+	 * Update this Gridder's default constraints with typed constraints.
+	 * @param constraints The constraints to change.
+	 */
+	public void updateConstraints(Constraints constraints) {
+		this.defaults = this.defaults.overriddenBy(constraints.spec()).intern();
+	}
+
+	/**
+	 * Add a component at a grid position, applying compiled constraints
+	 * on top of the defaults.
+	 */
+	private void place(Component comp,int row,int col,ConstraintSpec spec) {
+		GridBagConstraints gbc = scratchConstraints();
+		defaults.applyTo(gbc);
+		spec.applyTo(gbc);
+		gbc.gridx = col;
+		gbc.gridy = row;
+		insert(comp,gbc);
+	}
+
+	/**
+	 * Add a component at the position of its ID in the parsed layout.
+	 * The component's embedded layout constraints are applied on top of
+	 * the defaults, then the given overrides, and finally the grid size
+	 * from the layout.
+	 */
+	private void place(String layoutName,Component comp,ConstraintSpec overrides) {
+		LayoutComponent cp = positionOf(layoutName);
+		place(cp,comp,overrides);
+		record(new Placement(layoutName,comp,cp,defaults,overrides));
+	}
+
+	/**
+	 * Look up a layout ID in the parsed layout.
+	 */
+	private LayoutComponent positionOf(String layoutName) {
+		if (layout == null) {
+			throw new RuntimeException("No layout string has been parsed");
+		}
+		LayoutComponent cp = layout.getComponent(layoutName);
+		if (cp == null) {
+			throw new RuntimeException("No component named "+layoutName+" in layout string.");
+		}
+		return cp;
+	}
+
+	/**
+	 * Add components at already looked up layout positions, skipping
+	 * null components, and revalidate the container once. AWT only
+	 * invalidates a container, and the ancestors above it, if it is
+	 * still valid, so only the first component added walks up the
+	 * tree.
+	 */
+	private void placeAll(LayoutComponent[] positions,Component[] comps,ConstraintSpec overrides) {
+		boolean added = false;
+		for (int ii=0; ii<positions.length; ++ii) {
+			if (comps[ii] != null) {
+				place(positions[ii],comps[ii],overrides);
+				record(new Placement(positions[ii].getName(),comps[ii],positions[ii],defaults,overrides));
+				added = true;
+			}
+		}
+		if (added) {
+			changed();
+		}
+	}
+
+	/**
+	 * Build the constraints for a component added by name, at its
+	 * current position.
+	 */
+	private GridBagConstraints constraintsFor(Placement placement) {
+		GridBagConstraints gbc = scratchConstraints();
+		placement.defaults.applyTo(gbc);
+		placement.position.constraints.applyTo(gbc);
+		placement.overrides.applyTo(gbc);
+		gbc.gridwidth = placement.position.width;
+		gbc.gridheight = placement.position.height;
+		gbc.gridx = placement.position.col;
+		gbc.gridy = placement.position.row;
+		return gbc;
+	}
+
+	// True if two layout components have the same position, extent
+	// and embedded constraints.
+	private static boolean samePlace(LayoutComponent cp1,LayoutComponent cp2) {
+		return (cp1.row == cp2.row) && (cp1.col == cp2.col) &&
+				(cp1.width == cp2.width) && (cp1.height == cp2.height) &&
+				cp1.constraints.equals(cp2.constraints);
+	}
+
+	/**
+	 * Add a component at the position of a parsed layout component.
+	 */
+	private void place(LayoutComponent cp,Component comp,ConstraintSpec overrides) {
+		GridBagConstraints gbc = scratchConstraints();
+		defaults.applyTo(gbc);
+		cp.constraints.applyTo(gbc);
+		overrides.applyTo(gbc);
+		gbc.gridwidth = cp.width;
+		gbc.gridheight = cp.height;
+		gbc.gridx = cp.col;
+		gbc.gridy = cp.row;
+		insert(comp,gbc);
+	}
+
+	/**
+	 * Add a component to the container, noting the change if an update
+	 * is open.
+	 */
+	private void insert(Component comp,GridBagConstraints gbc) {
+		this.container.add(comp,gbc);
+		if (gridBag.updates > 0) {
+			gridBag.pending = true;
+		}
 	}
 
 	/**
-	 * When adding a component based on a layout string, add the necessary
-	 * grid size to the constraints.
-	 * @param gridwidth The gridwidth of the component being added.
-	 * @param gridheight The gridheight of the component being added.
-	 * @param constraints A list of constraints.
-	 * @return A new constraint list with the gridwidth, gridheight, and any
-	 * unspecified weight parameters added.
+	 * Revalidate and repaint the container after a change, or leave
+	 * that until the outermost open update is closed.
 	 */
-	private Object[] addGridSizeConstraints(int gridwidth,int gridheight,Object[] constraints) {
-		final String constraintString = ConstraintParser.buildConstraintString(constraints);
-		final StringBuilder sb = new StringBuilder(constraintString);
-		sb.append(" gridwidth ").append(gridwidth);
-		sb.append(" gridheight ").append(gridheight);
-		return new Object[] {sb.toString()};
+	private void changed() {
+		if (gridBag.updates > 0) {
+			gridBag.pending = true;
+		} else {
+			container.revalidate();
+			container.repaint();
+		}
+	}
+
+	/**
+	 * Get a GridBagConstraints object to fill in for a single add.
+	 * GridBagLayout copies the constraints it is given, so while it is
+	 * still the container's layout manager one scratch object can be
+	 * reused for every add. If the caller has installed some other
+	 * layout manager, which might keep the object, a new one is
+	 * returned instead. Every field that place() does not set is
+	 * assigned by the defaults snapshot, so no stale values survive
+	 * from a previous add.
+	 */
+	private GridBagConstraints scratchConstraints() {
+		if (container.getLayout() != gridBag) {
+			return getDefaultConstraints();
+		}
+		if (scratch == null) {
+			scratch = getDefaultConstraints();
+		}
+		return scratch;
 	}
 
 	/**
@@ -441,17 +1086,81 @@ public class Gridder {
 				0, 0);
 	}
 
+	/**
+	 * A component added by name, with what it was added with, so that
+	 * relayout() and replace() can rebuild its constraints.
+	 */
+	private static final class Placement {
+
+		Placement(String name,Component comp,LayoutComponent position,ConstraintSpec defaults,ConstraintSpec overrides) {
+			super();
+			this.name = name;
+			this.comp = comp;
+			this.position = position;
+			this.defaults = defaults;
+			this.overrides = overrides;
+		}
+
+		final String name;
+		Component comp;
+		LayoutComponent position;
+		final ConstraintSpec defaults;
+		final ConstraintSpec overrides;
+	}
+
+	/**
+	 * A GridBagLayout that skips laying out the container while an
+	 * update is open, so that layouts made between changes are not
+	 * thrown away. The container still becomes valid, so endUpdate()
+	 * invalidates it again before revalidating.
+	 */
+	private static final class DeferringGridBagLayout extends GridBagLayout {
+
+		private static final long serialVersionUID = 1L;
+
+		@Override
+		public void layoutContainer(Container parent) {
+			if (updates > 0) {
+				pending = true;
+				return;
+			}
+			super.layoutContainer(parent);
+		}
+
+		// The number of open updates, and whether the container must be
+		// revalidated when the last one is closed; see beginUpdate().
+		int updates;
+		boolean pending;
+	}
+
 	// Return the LayoutParser instance. For test and internal use only.
-	LayoutParser getLayoutParser() { return layout; }
+	LayoutParser getLayoutParser() { return (layout != null) ? layout.parser() : null; }
 	
 	// The container being managed.
 	private Container container;
 
-	// The default constraints.
-	private GridBagConstraints defaultConstraints;
+	// The GridBagLayout installed in the container.
+	private final DeferringGridBagLayout gridBag;
+
+	// The default constraints, as an interned snapshot that assigns
+	// every field.
+	private ConstraintSpec defaults;
 
-	// The LayoutParser for the last parsed layout string,
+	// Reusable constraints object for add(); see scratchConstraints().
+	private GridBagConstraints scratch;
+
+	// The compiled layout for the last parsed layout string,
 	// if any. If null, the add(String,Component,Object...) method
 	// will fail with a RuntimeException.
-	private LayoutParser layout;	
+	private CompiledLayout layout;	
+
+	// The components added by name, by layout ID and by component, for
+	// relayout(), get(), replace() and remove(). Components removed from
+	// the container by other means are dropped when next looked up.
+	private final HashMap<String,Placement> placed = new HashMap<>();
+	private final IdentityHashMap<Component,Placement> byComponent = new IdentityHashMap<>();
+
+	// The Gridders made by addSubLayouts() for panels still in the
+	// container, by layout ID, so that relayout() reaches them.
+	private final HashMap<String,Gridder> subGridders = new HashMap<>();
 }
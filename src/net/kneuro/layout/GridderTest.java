@@ -35,8 +35,8 @@ public class GridderTest {
 		
 		String[] cnames = {"c1","c2","c3","c4","c5","c6"};
 		for (String cname: cnames) {
-			LayoutParser.ComponentPosition comp = gr.getLayoutParser().getComponentByName(cname);
-			System.out.println(comp.name+" @ "+comp.row+","+comp.col+" w="+comp.width+" h="+comp.height+" cons="+comp.constraints);
+			LayoutComponent comp = gr.getLayoutParser().getComponentByName(cname);
+			System.out.println(comp);
 		}
 		
 		gr.add("c1", new JLabel("c1: Top left"),"anchor w");
@@ -0,0 +1,49 @@
+/**
+ * Copyright (c) 2018 Joseph A Knapka
+ *
+ * This code is released under the terms of the MIT License.
+ */
+package net.kneuro.layout;
+
+/**
+ * A batch of changes to a Gridder's container, during which the
+ * container is not laid out, revalidated or repainted. Created by
+ * Gridder.beginUpdate(), and meant for a try-with-resources statement:
+ * <pre>
+ *    try (GridderUpdate update = gr.beginUpdate()) {
+ *       gr.add("name",nameFld);
+ *       gr.relayout(newLayout);
+ *    }
+ * </pre>
+ * Updates can be nested. The container is revalidated and repainted
+ * once, when the outermost update is closed, including when it is
+ * closed by an exception.
+ *
+ * @author jk
+ */
+public final class GridderUpdate implements AutoCloseable {
+
+	GridderUpdate(Gridder gridder) {
+		super();
+		this.gridder = gridder;
+	}
+
+	/**
+	 * End this update. If it is the outermost one, lay out and repaint
+	 * the container if anything changed. Closing an update more than
+	 * once has no further effect.
+	 */
+	@Override
+	public void close() {
+		if (!closed) {
+			closed = true;
+			gridder.endUpdate();
+		}
+	}
+
+	// The Gridder being updated.
+	private final Gridder gridder;
+
+	// True once this update has been closed.
+	private boolean closed;
+}
@@ -0,0 +1,276 @@
+/**
+ * Copyright (c) 2018 Joseph A Knapka
+ *
+ * This code is released under the terms of the MIT License.
+ */
+package net.kneuro.layout;
+
+import java.awt.GridBagConstraints;
+import java.util.Arrays;
+
+/**
+ * A precomputed, case-folding trie of all the keywords in the
+ * constraint language: constraint names, anchor values, and fill
+ * values. Each keyword resolves to an integer code in a single pass
+ * over its characters, without building any strings. A keyword may
+ * have a different code for each kind of keyword (for instance "n"
+ * is both an anchor value and a fill value).
+ * <p>
+ * Codes for constraint names are bit masks of the ConstraintSpec
+ * fields the constraint assigns. Codes for anchor and fill values are
+ * the corresponding GridBagConstraints constants.
+ *
+ * @author jk
+ */
+final class KeywordTable {
+
+	// Keyword kinds.
+	static final int NAME = 0;
+	static final int ANCHOR = 1;
+	static final int FILL = 2;
+
+	// Returned when a keyword is not found.
+	static final int NO_MATCH = Integer.MIN_VALUE;
+
+	// Returned by longestPrefix() when nothing matches.
+	static final int NONE = -1;
+
+	/**
+	 * Look up a keyword of the given kind, ignoring case.
+	 * @param kind NAME, ANCHOR, or FILL.
+	 * @param cs The characters to look up.
+	 * @param start The index of the first character of the keyword.
+	 * @param end The index just past the last character of the keyword.
+	 * @return The keyword's code, or NO_MATCH.
+	 */
+	static int lookup(int kind,CharSequence cs,int start,int end) {
+		int node = ROOT;
+		for (int idx=start; idx<end; ++idx) {
+			node = child(node,cs.charAt(idx));
+			if (node == NONE) return NO_MATCH;
+		}
+		return CODES[kind][node];
+	}
+
+	/**
+	 * Find the longest keyword of the given kind that is a prefix of
+	 * a range of characters, ignoring case.
+	 * @param kind NAME, ANCHOR, or FILL.
+	 * @param cs The characters to search.
+	 * @param start The index at which the keyword must begin.
+	 * @param end The index just past the last character to consider.
+	 * @return A trie node to pass to codeOf() and lengthOf(), or NONE
+	 * if no keyword matches.
+	 */
+	static int longestPrefix(int kind,CharSequence cs,int start,int end) {
+		int node = ROOT;
+		int best = NONE;
+		for (int idx=start; idx<end; ++idx) {
+			node = child(node,cs.charAt(idx));
+			if (node == NONE) break;
+			if (CODES[kind][node] != NO_MATCH) {
+				best = node;
+			}
+		}
+		return best;
+	}
+
+	/**
+	 * @return The code of a keyword found by longestPrefix().
+	 */
+	static int codeOf(int kind,int node) {
+		return CODES[kind][node];
+	}
+
+	/**
+	 * @return The length of a keyword found by longestPrefix().
+	 */
+	static int lengthOf(int node) {
+		return DEPTHS[node];
+	}
+
+	/**
+	 * Follow the edge for character c out of a trie node.
+	 * @return The child node, or NONE.
+	 */
+	private static int child(int node,char c) {
+		if (c >= SYMBOLS.length) return NONE;
+		int sym = SYMBOLS[c];
+		if (sym < 0) return NONE;
+		return NEXT[node * ALPHABET_SIZE + sym];
+	}
+
+	// Field masks for the wildcard constraints.
+	private static final int WEIGHTS = (1 << ConstraintSpec.WEIGHTX) | (1 << ConstraintSpec.WEIGHTY);
+	private static final int PADS = (1 << ConstraintSpec.IPADX) | (1 << ConstraintSpec.IPADY);
+	private static final int INSETS = (1 << ConstraintSpec.INSET_TOP) | (1 << ConstraintSpec.INSET_LEFT)
+			| (1 << ConstraintSpec.INSET_BOTTOM) | (1 << ConstraintSpec.INSET_RIGHT);
+
+	// The fields assigned by each of ConstraintParser.CONSTRAINT_NAMES.
+	private static final int[] CONSTRAINT_FIELDS = {
+			1 << ConstraintSpec.GRIDWIDTH,		// gridwidth
+			1 << ConstraintSpec.GRIDWIDTH,		// width
+			1 << ConstraintSpec.GRIDWIDTH,		// wd
+			1 << ConstraintSpec.GRIDHEIGHT,		// gridheight
+			1 << ConstraintSpec.GRIDHEIGHT,		// height
+			1 << ConstraintSpec.GRIDHEIGHT,		// ht
+			1 << ConstraintSpec.WEIGHTX,		// weightx
+			1 << ConstraintSpec.WEIGHTX,		// wx
+			1 << ConstraintSpec.WEIGHTY,		// weighty
+			1 << ConstraintSpec.WEIGHTY,		// wy
+			WEIGHTS,							// w*
+			WEIGHTS,							// weight*
+			1 << ConstraintSpec.ANCHOR,			// anchor
+			1 << ConstraintSpec.ANCHOR,			// a
+			1 << ConstraintSpec.FILL,			// fill
+			1 << ConstraintSpec.FILL,			// f
+			1 << ConstraintSpec.IPADX,			// ipadx
+			1 << ConstraintSpec.IPADX,			// px
+			1 << ConstraintSpec.IPADY,			// ipady
+			1 << ConstraintSpec.IPADY,			// py
+			PADS,								// ipad*
+			PADS,								// p*
+			1 << ConstraintSpec.INSET_TOP,		// inset_top
+			1 << ConstraintSpec.INSET_TOP,		// insets_top
+			1 << ConstraintSpec.INSET_TOP,		// it
+			1 << ConstraintSpec.INSET_BOTTOM,	// inset_bottom
+			1 << ConstraintSpec.INSET_BOTTOM,	// insets_bottom
+			1 << ConstraintSpec.INSET_BOTTOM,	// ib
+			1 << ConstraintSpec.INSET_LEFT,		// inset_left
+			1 << ConstraintSpec.INSET_LEFT,		// insets_left
+			1 << ConstraintSpec.INSET_LEFT,		// il
+			1 << ConstraintSpec.INSET_RIGHT,	// inset_right
+			1 << ConstraintSpec.INSET_RIGHT,	// insets_right
+			1 << ConstraintSpec.INSET_RIGHT,	// ir
+			INSETS,								// insets*
+			INSETS,								// inset*
+			INSETS								// i*
+	};
+
+	// Anchor value keywords.
+	private static final String[] ANCHOR_NAMES = {
+			"center","ctr","c",
+			"north","n","top",
+			"south","s","bottom","bot",
+			"east","e","right","r",
+			"west","w","left","l",
+			"northeast","ne","topright","tr",
+			"northwest","nw","topleft","tl",
+			"southeast","se","bottomright","br",
+			"southwest","sw","bottomleft","bl"
+	};
+
+	// The GridBagConstraints value of each anchor keyword.
+	private static final int[] ANCHOR_VALUES = {
+			GridBagConstraints.CENTER,GridBagConstraints.CENTER,GridBagConstraints.CENTER,
+			GridBagConstraints.NORTH,GridBagConstraints.NORTH,GridBagConstraints.NORTH,
+			GridBagConstraints.SOUTH,GridBagConstraints.SOUTH,GridBagConstraints.SOUTH,GridBagConstraints.SOUTH,
+			GridBagConstraints.EAST,GridBagConstraints.EAST,GridBagConstraints.EAST,GridBagConstraints.EAST,
+			GridBagConstraints.WEST,GridBagConstraints.WEST,GridBagConstraints.WEST,GridBagConstraints.WEST,
+			GridBagConstraints.NORTHEAST,GridBagConstraints.NORTHEAST,GridBagConstraints.NORTHEAST,GridBagConstraints.NORTHEAST,
+			GridBagConstraints.NORTHWEST,GridBagConstraints.NORTHWEST,GridBagConstraints.NORTHWEST,GridBagConstraints.NORTHWEST,
+			GridBagConstraints.SOUTHEAST,GridBagConstraints.SOUTHEAST,GridBagConstraints.SOUTHEAST,GridBagConstraints.SOUTHEAST,
+			GridBagConstraints.SOUTHWEST,GridBagConstraints.SOUTHWEST,GridBagConstraints.SOUTHWEST,GridBagConstraints.SOUTHWEST
+	};
+
+	// Fill value keywords.
+	private static final String[] FILL_NAMES = {
+			"none","neither","n",
+			"horizontal","h","x",
+			"vertical","v","y",
+			"both","all","xy","yx","hv","vh"
+	};
+
+	// The GridBagConstraints value of each fill keyword.
+	private static final int[] FILL_VALUES = {
+			GridBagConstraints.NONE,GridBagConstraints.NONE,GridBagConstraints.NONE,
+			GridBagConstraints.HORIZONTAL,GridBagConstraints.HORIZONTAL,GridBagConstraints.HORIZONTAL,
+			GridBagConstraints.VERTICAL,GridBagConstraints.VERTICAL,GridBagConstraints.VERTICAL,
+			GridBagConstraints.BOTH,GridBagConstraints.BOTH,GridBagConstraints.BOTH,
+			GridBagConstraints.BOTH,GridBagConstraints.BOTH,GridBagConstraints.BOTH
+	};
+
+	// The root node of the trie.
+	private static final int ROOT = 0;
+
+	// Maps each ASCII character to its edge index, or -1. Upper and
+	// lower case letters share an edge.
+	private static final int[] SYMBOLS = new int[128];
+
+	// The number of distinct edge labels.
+	private static final int ALPHABET_SIZE;
+
+	// NEXT[node * ALPHABET_SIZE + symbol] is the child node, or NONE.
+	private static final int[] NEXT;
+
+	// CODES[kind][node] is the code of the keyword ending at node, or NO_MATCH.
+	private static final int[][] CODES;
+
+	// DEPTHS[node] is the length of the keyword ending at node.
+	private static final int[] DEPTHS;
+
+	static {
+		String[][] keywords = {
+				ConstraintParser.CONSTRAINT_NAMES,ANCHOR_NAMES,FILL_NAMES
+		};
+		int[][] codes = {
+				CONSTRAINT_FIELDS,ANCHOR_VALUES,FILL_VALUES
+		};
+
+		// Number the characters that appear in keywords.
+		Arrays.fill(SYMBOLS,-1);
+		int nsyms = 0;
+		int nchars = 0;
+		for (String[] words: keywords) {
+			for (String word: words) {
+				nchars += word.length();
+				for (char c: word.toCharArray()) {
+					if (SYMBOLS[c] < 0) {
+						SYMBOLS[c] = nsyms;
+						SYMBOLS[Character.toUpperCase(c)] = nsyms;
+						++nsyms;
+					}
+				}
+			}
+		}
+		ALPHABET_SIZE = nsyms;
+
+		// Build the trie. There can be at most one node per keyword
+		// character, plus the root.
+		int maxNodes = nchars + 1;
+		int[] next = new int[maxNodes * nsyms];
+		Arrays.fill(next,NONE);
+		int[] depths = new int[maxNodes];
+		int[][] nodeCodes = new int[keywords.length][maxNodes];
+		for (int[] kc: nodeCodes) {
+			Arrays.fill(kc,NO_MATCH);
+		}
+		int nnodes = 1;
+		for (int kind=0; kind<keywords.length; ++kind) {
+			for (int ii=0; ii<keywords[kind].length; ++ii) {
+				String word = keywords[kind][ii];
+				int node = ROOT;
+				for (int depth=0; depth<word.length(); ++depth) {
+					int slot = node * nsyms + SYMBOLS[word.charAt(depth)];
+					if (next[slot] == NONE) {
+						next[slot] = nnodes;
+						depths[nnodes] = depth + 1;
+						++nnodes;
+					}
+					node = next[slot];
+				}
+				nodeCodes[kind][node] = codes[kind][ii];
+			}
+		}
+		NEXT = Arrays.copyOf(next,nnodes * nsyms);
+		DEPTHS = Arrays.copyOf(depths,nnodes);
+		CODES = new int[keywords.length][];
+		for (int kind=0; kind<keywords.length; ++kind) {
+			CODES[kind] = Arrays.copyOf(nodeCodes[kind],nnodes);
+		}
+	}
+
+	private KeywordTable() {
+		// Static methods only.
+	}
+}
@@ -0,0 +1,312 @@
+/**
+ * Copyright (c) 2018 Joseph A Knapka
+ *
+ * This code is released under the terms of the MIT License.
+ */
+package net.kneuro.layout;
+
+/**
+ * The position, extent, and embedded constraints of a component
+ * identifier in a layout string.
+ * <p>
+ * While a layout is being parsed, a component's width and height grow
+ * as span tokens extending it are read. They are final once the
+ * parser has reported the component finished to its LayoutListener.
+ *
+ * @author jk
+ */
+public final class LayoutComponent {
+
+	/**
+	 * Create a component occupying a single cell.
+	 */
+	LayoutComponent(String name,int row,int col,ConstraintSpec constraints) {
+		this(name,0,name.length(),row,col,constraints);
+		this.name = name;
+	}
+
+	/**
+	 * Create a component occupying a single cell, whose name is a range
+	 * of characters in the layout text. The name is not copied out of
+	 * the text until it is needed as a String.
+	 */
+	LayoutComponent(CharSequence text,int nameStart,int nameEnd,int row,int col,ConstraintSpec constraints) {
+		super();
+		this.text = text;
+		this.nameStart = nameStart;
+		this.nameEnd = nameEnd;
+		this.row = row;
+		this.col = col;
+		this.width = 1;
+		this.height = 1;
+		this.constraints = constraints;
+	}
+
+	/**
+	 * @return The component identifier, without any embedded constraints.
+	 */
+	public String getName() {
+		String result = name;
+		if (result == null) {
+			// Interned, since names are compared and looked up often.
+			result = text.subSequence(nameStart,nameEnd).toString().intern();
+			name = result;
+		}
+		return result;
+	}
+
+	/**
+	 * @return The hash code of the name, as String.hashCode() would
+	 * compute it, without creating the String.
+	 */
+	int nameHash() {
+		if (name != null) return name.hashCode();
+		int hash = 0;
+		for (int idx=nameStart; idx<nameEnd; ++idx) {
+			hash = 31 * hash + text.charAt(idx);
+		}
+		return hash;
+	}
+
+	/**
+	 * @return The number of characters in the name.
+	 */
+	int nameLength() {
+		return nameEnd - nameStart;
+	}
+
+	/**
+	 * @param ii A character index, 0 &lt;= ii &lt; nameLength().
+	 * @return The ii'th character of the name.
+	 */
+	char nameCharAt(int ii) {
+		return text.charAt(nameStart + ii);
+	}
+
+	/**
+	 * @param other A name, or another component's name characters.
+	 * @return true if this component's name has the same characters.
+	 */
+	boolean nameEquals(CharSequence other) {
+		if (other.length() != nameEnd - nameStart) return false;
+		for (int idx=0; idx<other.length(); ++idx) {
+			if (other.charAt(idx) != text.charAt(nameStart + idx)) return false;
+		}
+		return true;
+	}
+
+	/**
+	 * @param other Another component.
+	 * @return true if both components have the same name.
+	 */
+	boolean nameEquals(LayoutComponent other) {
+		if (other.nameEnd - other.nameStart != nameEnd - nameStart) return false;
+		for (int ii=0; ii<nameEnd-nameStart; ++ii) {
+			if (other.text.charAt(other.nameStart + ii) != text.charAt(nameStart + ii)) return false;
+		}
+		return true;
+	}
+
+	/**
+	 * @return The grid row of the component's top-left cell.
+	 */
+	public int getRow() {
+		return row;
+	}
+
+	/**
+	 * @return The grid column of the component's top-left cell.
+	 */
+	public int getColumn() {
+		return col;
+	}
+
+	/**
+	 * @return The number of grid columns the component spans.
+	 */
+	public int getWidth() {
+		return width;
+	}
+
+	/**
+	 * @return The number of grid rows the component spans.
+	 */
+	public int getHeight() {
+		return height;
+	}
+
+	/**
+	 * @return The constraints embedded in the component identifier.
+	 */
+	public Constraints getConstraints() {
+		return new Constraints(constraints);
+	}
+
+	/**
+	 * @return The layout written inside the component's cell, as in
+	 * panel[{a b}{c d}], or null if it has none.
+	 */
+	public CompiledLayout getSubLayout() {
+		return subLayout;
+	}
+
+	/**
+	 * @return The number of copies of the component's row, if it is
+	 * in a row written as *count{...}; otherwise 0.
+	 */
+	public int getRepeatCount() {
+		return repeat;
+	}
+
+	/**
+	 * Get the component in one copy of a repeated row. Its name has
+	 * each '#' in this component's name replaced by the copy's index,
+	 * and it is in row getRow()+index.
+	 * @param index The copy, 0 &lt;= index &lt; getRepeatCount().
+	 * @return The component in that copy of the row.
+	 */
+	public LayoutComponent getRepetition(int index) {
+		if ((index < 0) || (index >= repeat)) {
+			throw new IndexOutOfBoundsException("repetition "+index+", repeat count "+repeat);
+		}
+		StringBuilder sb = new StringBuilder(nameLength() + 8);
+		appendRepetitionName(sb,index);
+		LayoutComponent comp = new LayoutComponent(sb.toString().intern(),row + index,col,constraints);
+		comp.width = width;
+		comp.height = height;
+		return comp;
+	}
+
+	/**
+	 * @return true if the name contains the repeat index character.
+	 */
+	boolean hasRepeatIndex() {
+		for (int ii=0; ii<nameLength(); ++ii) {
+			if (nameCharAt(ii) == REPEAT_INDEX) return true;
+		}
+		return false;
+	}
+
+	/**
+	 * @param other A component name.
+	 * @return The index of the repetition of this component with that
+	 * name, or -1 if there is none.
+	 */
+	int repetitionIndex(CharSequence other) {
+		return repetitionIndex(other,0,other.length());
+	}
+
+	/**
+	 * @param other Another component.
+	 * @return The index of the repetition of this component with the
+	 * other component's name, or -1 if there is none.
+	 */
+	int repetitionIndex(LayoutComponent other) {
+		return repetitionIndex(other.text,other.nameStart,other.nameEnd);
+	}
+
+	// Match a name against this component's name, reading the same
+	// decimal index, without leading zeros, at every '#'.
+	int repetitionIndex(CharSequence cs,int start,int end) {
+		if (repeat == 0) return -1;
+		int marks = 0;
+		for (int ii=0; ii<nameLength(); ++ii) {
+			if (nameCharAt(ii) == REPEAT_INDEX) ++marks;
+		}
+		if (marks == 0) {
+			return nameEquals(cs.subSequence(start,end)) ? 0 : -1;
+		}
+		int digits = (end - start) - (nameLength() - marks);
+		if ((digits <= 0) || (digits % marks != 0)) return -1;
+		digits /= marks;
+		if (digits > 10) return -1;
+		long index = -1;
+		int pos = start;
+		for (int ii=0; ii<nameLength(); ++ii) {
+			char c = nameCharAt(ii);
+			if (c != REPEAT_INDEX) {
+				if (cs.charAt(pos++) != c) return -1;
+				continue;
+			}
+			if ((digits > 1) && (cs.charAt(pos) == '0')) return -1;
+			long value = 0;
+			for (int dd=0; dd<digits; ++dd) {
+				char digit = cs.charAt(pos++);
+				if ((digit < '0') || (digit > '9')) return -1;
+				value = value * 10 + (digit - '0');
+			}
+			if ((index >= 0) && (value != index)) return -1;
+			index = value;
+		}
+		return (index < repeat) ? (int)index : -1;
+	}
+
+	/**
+	 * Find a name shared by a copy of this component and a copy of
+	 * another, both in repeated rows, by trying each of this
+	 * component's copies in turn.
+	 * @param other Another component in a repeated row.
+	 * @return The index of this component's copy whose name is also
+	 * the name of one of the other's copies, or -1 if there is none.
+	 */
+	int sharedRepetition(LayoutComponent other) {
+		// Every copy keeps the characters before the first '#' and after
+		// the last, so those must agree for any copies to share a name.
+		for (int ii=0; (nameCharAt(ii) != REPEAT_INDEX) && (other.nameCharAt(ii) != REPEAT_INDEX); ++ii) {
+			if (nameCharAt(ii) != other.nameCharAt(ii)) return -1;
+		}
+		for (int ii=nameLength()-1, jj=other.nameLength()-1;
+				(nameCharAt(ii) != REPEAT_INDEX) && (other.nameCharAt(jj) != REPEAT_INDEX); --ii, --jj) {
+			if (nameCharAt(ii) != other.nameCharAt(jj)) return -1;
+		}
+		StringBuilder sb = new StringBuilder(nameLength() + 8);
+		for (int index=0; index<repeat; ++index) {
+			sb.setLength(0);
+			appendRepetitionName(sb,index);
+			if (other.repetitionIndex(sb,0,sb.length()) >= 0) return index;
+		}
+		return -1;
+	}
+
+	// Append the name of a copy, with each '#' replaced by its index.
+	private void appendRepetitionName(StringBuilder sb,int index) {
+		for (int ii=0; ii<nameLength(); ++ii) {
+			char c = nameCharAt(ii);
+			if (c == REPEAT_INDEX) {
+				sb.append(index);
+			} else {
+				sb.append(c);
+			}
+		}
+	}
+
+	@Override
+	public String toString() {
+		return getName()+" @ "+row+","+col+" w="+width+" h="+height+" cons="+constraints;
+	}
+
+	// The layout text containing the name, and the name's range there.
+	private final CharSequence text;
+	private final int nameStart;
+	private final int nameEnd;
+
+	// The name as a String, once it has been needed.
+	private volatile String name;
+
+	// Stands for the copy's index in the names of components in a
+	// repeated row.
+	static final char REPEAT_INDEX = '#';
+
+	// Fields are package-visible for the parsers and Gridder.
+	final int row;
+	final int col;
+	int width;
+	int height;
+	// The number of copies of the component's row, or 0 if the row
+	// is not repeated.
+	int repeat;
+	// The compiled embedded constraints, if any.
+	final ConstraintSpec constraints;
+	// The sub-layout written inside the component's cell, if any.
+	CompiledLayout subLayout;
+}
@@ -0,0 +1,131 @@
+/**
+ * Copyright (c) 2018 Joseph A Knapka
+ *
+ * This code is released under the terms of the MIT License.
+ */
+package net.kneuro.layout;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Access to layout files without reading them into Strings.
+ *
+ * @author jk
+ */
+public final class LayoutFiles {
+
+	private LayoutFiles() {
+		// Static methods only.
+	}
+
+	/**
+	 * Memory-map a layout file as a CharSequence, for use with
+	 * Gridder.parseLayout(CharSequence) or StreamingLayoutParser.
+	 * If the file is entirely ASCII, as layouts almost always are, and
+	 * the charset is one that encodes ASCII as single bytes, the
+	 * characters are read straight from the mapped bytes and nothing
+	 * is copied. Otherwise the file is decoded into a String.
+	 * <p>
+	 * Components parsed from the returned text refer to it, and so
+	 * keep the mapping alive, until their names have been requested.
+	 * @param file The layout file.
+	 * @param charset The file's encoding.
+	 * @return The file's characters.
+	 * @throws IOException if the file cannot be mapped.
+	 */
+	public static CharSequence map(Path file,Charset charset) throws IOException {
+		MappedByteBuffer bytes;
+		try (FileChannel channel = FileChannel.open(file,StandardOpenOption.READ)) {
+			bytes = channel.map(FileChannel.MapMode.READ_ONLY,0,channel.size());
+		}
+		if (isAsciiCompatible(charset) && isAscii(bytes)) {
+			return new AsciiSequence(bytes,0,bytes.limit());
+		}
+		return charset.decode(bytes).toString();
+	}
+
+	/**
+	 * Get layout text that cannot change while a parsed layout refers
+	 * to it. Strings and mapped layout files are returned as they are;
+	 * anything else, such as a StringBuilder the caller may go on to
+	 * change, is copied into a String.
+	 * @param text The layout text.
+	 * @return The text, or a copy of it.
+	 */
+	static CharSequence unchanging(CharSequence text) {
+		if ((text instanceof String) || (text instanceof AsciiSequence)) {
+			return text;
+		}
+		return text.toString();
+	}
+
+	// True if the charset encodes every ASCII character as that byte.
+	private static boolean isAsciiCompatible(Charset charset) {
+		return charset.equals(StandardCharsets.US_ASCII) ||
+				charset.equals(StandardCharsets.ISO_8859_1) ||
+				charset.equals(StandardCharsets.UTF_8);
+	}
+
+	private static boolean isAscii(ByteBuffer bytes) {
+		for (int idx=0; idx<bytes.limit(); ++idx) {
+			if (bytes.get(idx) < 0) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * A CharSequence view of ASCII bytes.
+	 */
+	static final class AsciiSequence implements CharSequence {
+
+		AsciiSequence(ByteBuffer bytes,int start,int end) {
+			super();
+			this.bytes = bytes;
+			this.start = start;
+			this.end = end;
+		}
+
+		@Override
+		public int length() {
+			return end - start;
+		}
+
+		@Override
+		public char charAt(int index) {
+			if ((index < 0) || (index >= end - start)) {
+				throw new IndexOutOfBoundsException("index "+index+", length "+(end - start));
+			}
+			return (char)bytes.get(start + index);
+		}
+
+		@Override
+		public CharSequence subSequence(int from,int to) {
+			if ((from < 0) || (to > end - start) || (from > to)) {
+				throw new IndexOutOfBoundsException("from "+from+", to "+to+", length "+(end - start));
+			}
+			return new AsciiSequence(bytes,start + from,start + to);
+		}
+
+		@Override
+		public String toString() {
+			byte[] chars = new byte[end - start];
+			for (int idx=0; idx<chars.length; ++idx) {
+				chars[idx] = bytes.get(start + idx);
+			}
+			return new String(chars,StandardCharsets.US_ASCII);
+		}
+
+		private final ByteBuffer bytes;
+		private final int start;
+		private final int end;
+	}
+}
@@ -0,0 +1,103 @@
+/**
+ * Copyright (c) 2018 Joseph A Knapka
+ *
+ * This code is released under the terms of the MIT License.
+ */
+package net.kneuro.layout;
+
+/**
+ * Receives the structure of a layout string from a
+ * StreamingLayoutParser as it is read. Every method does nothing by
+ * default, so a listener need only implement the events it cares
+ * about; most only need componentFinished().
+ *
+ * @author jk
+ */
+public interface LayoutListener {
+
+	/**
+	 * Called at the '{' that starts a row.
+	 * @param row The row number.
+	 */
+	default void rowStarted(int row) {
+	}
+
+	/**
+	 * Called just after rowStarted() for a row written as *count{...},
+	 * which stands for count copies of the row. The row is reported
+	 * once, and occupies rows row to row+count-1. Each component
+	 * defined in it stands for count components; see
+	 * LayoutComponent.getRepetition().
+	 * @param row The number of the row's first copy.
+	 * @param count The number of copies.
+	 */
+	default void rowRepeated(int row,int count) {
+	}
+
+	/**
+	 * Called at the '}' that ends a row.
+	 * @param row The row number.
+	 */
+	default void rowFinished(int row) {
+	}
+
+	/**
+	 * Called for each '-' cell, which occupies space but extends nothing.
+	 * @param row The cell's row.
+	 * @param col The cell's column.
+	 */
+	default void cell(int row,int col) {
+	}
+
+	/**
+	 * Called for each '+', '&lt;', '|' or '^' cell.
+	 * @param row The cell's row.
+	 * @param col The cell's column.
+	 * @param vertical true for '|' and '^', false for '+' and '&lt;'.
+	 * @param comp The component the cell extends, with its extent
+	 * already updated, or null if there is no component to extend.
+	 */
+	default void span(int row,int col,boolean vertical,LayoutComponent comp) {
+	}
+
+	/**
+	 * Called when a component identifier is read. The component's
+	 * extent is not yet known.
+	 * @param comp The new component.
+	 */
+	default void componentDefined(LayoutComponent comp) {
+	}
+
+	/**
+	 * Called once nothing later in the layout can extend a component,
+	 * so its extent is final. The component can be added to its
+	 * container at this point, while parsing continues. Components
+	 * whose column has no later component are finished at the end of
+	 * the layout.
+	 * @param comp The finished component.
+	 */
+	default void componentFinished(LayoutComponent comp) {
+	}
+
+	/**
+	 * Called at the '[' that starts a sub-layout, a layout written
+	 * inside a component's cell, as in panel[{a b}{c d}]. The
+	 * sub-layout's events, with rows and columns numbered from 0 within
+	 * it, are reported to the listener returned, up to the matching
+	 * ']'.
+	 * @param comp The component whose cell holds the sub-layout.
+	 * @return The listener for the sub-layout. By default, a listener
+	 * that ignores it.
+	 */
+	default LayoutListener subLayoutStarted(LayoutComponent comp) {
+		return new LayoutListener() {};
+	}
+
+	/**
+	 * Called at the ']' that ends a sub-layout, after every component
+	 * in it has been finished.
+	 * @param comp The component whose cell holds the sub-layout.
+	 */
+	default void subLayoutFinished(LayoutComponent comp) {
+	}
+}
@@ -5,7 +5,13 @@
  */
 package net.kneuro.layout;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
 import java.util.LinkedList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
 
 /**
  * Parses a layout string as documented in the Gridder class comment.
@@ -19,205 +25,461 @@ class LayoutParser {
 	/**
 	 * Parse a layout string.
 	 * @param layout The layout string to parse.
+	 * @throws RuntimeException if the layout uses a component ID
+	 * more than once.
 	 */
-	LayoutParser(String layout) {
+	LayoutParser(CharSequence layout) {
 		super();
 		components = new LinkedList<>();
+		componentsByName = new NameIndex();
 		parseLayout(layout);
 	}
 
+	/**
+	 * Parse a layout string, tokenizing blocks of rows in parallel. The
+	 * result is identical to that of LayoutParser(CharSequence),
+	 * including which error is reported for a bad layout. The layout
+	 * text is read from several threads at once, so it must be safe to
+	 * read concurrently, as Strings and mapped layout files are.
+	 * @param layout The layout string to parse.
+	 * @param pool The pool to tokenize the rows on.
+	 * @throws RuntimeException if the layout uses a component ID
+	 * more than once.
+	 */
+	LayoutParser(CharSequence layout,ForkJoinPool pool) {
+		super();
+		components = new LinkedList<>();
+		componentsByName = new NameIndex();
+		parseLayout(layout,pool);
+	}
+
+	/**
+	 * Create an empty parser, to collect the components of a
+	 * sub-layout as they are read.
+	 */
+	private LayoutParser() {
+		super();
+		components = new LinkedList<>();
+		componentsByName = new NameIndex();
+	}
+
+	/**
+	 * @return The number of components, counting each copy of a
+	 * component in a repeated row.
+	 */
+	long getComponentCount() {
+		long count = components.size();
+		for (LayoutComponent template: templates) {
+			count += template.repeat;
+		}
+		return count;
+	}
+
+	/**
+	 * @return Every component, with each copy of a component in a
+	 * repeated row, ordered by row and then by column.
+	 */
+	List<LayoutComponent> getComponentsInRowOrder() {
+		ArrayList<LayoutComponent> result = new ArrayList<>(components);
+		for (LayoutComponent template: templates) {
+			for (int ii=0; ii<template.repeat; ++ii) {
+				result.add(template.getRepetition(ii));
+			}
+		}
+		result.sort(ROW_ORDER);
+		return result;
+	}
+
+	// Orders components by the top-left cell.
+	static final Comparator<LayoutComponent> ROW_ORDER = (comp1,comp2) ->
+			(comp1.row != comp2.row) ? Integer.compare(comp1.row,comp2.row) : Integer.compare(comp1.col,comp2.col);
+
+	/**
+	 * @return The components whose cells hold sub-layouts, in layout
+	 * order.
+	 */
+	List<LayoutComponent> getSubLayoutComponents() {
+		return subLayouts;
+	}
+
 	/**
 	 * Get the positioning information associated with a component ID.
 	 * @param cname The component ID from the layout string.
-	 * @return a ComponentPosition containing the row, column,
+	 * @return a LayoutComponent containing the row, column,
 	 * grid width, and grid height of the component, or null
 	 * if the component was not found.
 	 */
-	ComponentPosition getComponentByName(String cname) {
+	LayoutComponent getComponentByName(String cname) {
 		if (cname == null) {
 			throw new IllegalArgumentException("cname cannot be null");
 		}
-		for (ComponentPosition cp: components) {
-			if (cname.equals(cp.name)) {
-				return cp;
+		LayoutComponent comp = componentsByName.get(cname);
+		if ((comp == null) && (shapes != null)) {
+			// Repeated rows are only expanded for the copy asked for.
+			LayoutComponent template = shapes.find(cname,0,cname.length());
+			if (template != null) {
+				return template.getRepetition(template.repetitionIndex(cname));
 			}
 		}
-		return null;
+		return comp;
 	}
 
 	/**
 	 * Parse a layout string and update this.components with the
 	 * positions and extents of the component IDs in the layout.
+	 * Component names are not created as Strings until they are looked up.
 	 * @param layout The string to parse.
 	 */
-	private void parseLayout(String layout) {
-		int row=0, col=0;
-		int[] idxHolder = new int[] {0};
-		ComponentPosition cp = null;
-		while (idxHolder[0] < layout.length()) {
-			String tok = parseToken(layout,idxHolder);
-			switch (tok) {
-			case "":
-				// End of layout string.
-				break;
-			case "{":
-				// Reset the column number to 0.
-				col = 0;
-				break;
-			case "}":
-				// Increment the row number and forget any current
-				// component.
-				cp = null;
-				++row;
-				break;
-			case "-":
-				// Just increment the column number.
-				++col;
-				break;
-			case "<":
-			case "+":
-				// Extend component rightward.
-				if (cp != null) {
-					++cp.width;
-				}
-				++col;
-				break;
-			case "^":
-			case "|":
-				// Extend component downward.
-				ComponentPosition above = findComponentAbove(row,col);
-				if (above != null) {
-					++above.height;
+	private void parseLayout(CharSequence layout) {
+		StreamingLayoutParser.parse(layout,new Collector());
+	}
+
+	/**
+	 * Start collecting a sub-layout, which is compiled as its own
+	 * layout with its own component names.
+	 * @param comp The component whose cell holds the sub-layout.
+	 * @return The listener to collect it.
+	 */
+	private static LayoutListener startSubLayout(LayoutComponent comp) {
+		LayoutParser sub = new LayoutParser();
+		comp.subLayout = new CompiledLayout(sub,null);
+		return sub.new Collector();
+	}
+
+	/**
+	 * Defines each component as it is read.
+	 */
+	private final class Collector implements LayoutListener {
+
+		@Override
+		public void componentDefined(LayoutComponent comp) {
+			define(comp);
+		}
+
+		@Override
+		public LayoutListener subLayoutStarted(LayoutComponent comp) {
+			subLayouts.add(comp);
+			return startSubLayout(comp);
+		}
+	}
+
+	/**
+	 * Parse a layout string in parallel. Rows only depend on earlier
+	 * rows through vertical spans, so the layout is split into blocks
+	 * of whole rows, which are tokenized on the pool. Each block
+	 * resolves the spans it can by itself; a single sequential pass
+	 * then resolves the spans that extend components in earlier
+	 * blocks, and indexes the components in layout order.
+	 * @param layout The string to parse.
+	 * @param pool The pool to tokenize the rows on.
+	 */
+	private void parseLayout(CharSequence layout,ForkJoinPool pool) {
+		List<RowBlock> blocks = split(layout);
+		if (blocks.size() == 1) {
+			blocks.get(0).tokenize(layout);
+		} else {
+			pool.invoke(new TokenizeTask(layout,blocks,0,blocks.size()));
+		}
+		ArrayList<LayoutComponent> columnOrigins = new ArrayList<>();
+		for (RowBlock block: blocks) {
+			int span = 0;
+			for (int ii=0; ii<=block.components.size(); ++ii) {
+				// The spans read before the ii'th component. They come
+				// before any component in their column in this block,
+				// so they extend the last component there in an
+				// earlier block.
+				for (; (span < block.spanCount) && (block.spanPositions[span] == ii); ++span) {
+					int row = block.spanRowNumbers[span];
+					int col = block.spanColumns[span];
+					LayoutComponent above = (col < columnOrigins.size()) ? columnOrigins.get(col) : null;
+					if (above == null) {
+						throw StreamingLayoutParser.orphanSpan(row,col);
+					}
+					if (above.repeat > 0) {
+						throw StreamingLayoutParser.spanBelowRepeatedRow(above);
+					}
+					if (row != above.row + above.height) {
+						throw StreamingLayoutParser.notRectangular(above,row,col);
+					}
+					int next = block.spanNextClaimed[span];
+					if ((next >= 0) && (next < col + above.width)) {
+						throw StreamingLayoutParser.overlap(above,row,next);
+					}
+					above.height += block.spanRows[span];
 				}
-				++col;
-				break;
-			default:
-				// It's an identifier. Create a new component.
-				cp = new ComponentPosition();
-				if (tok.contains(":")) {
-					String constraintStr = ConstraintParser.parseConstraintsFromIdentifier(tok);
-					cp.constraints = constraintStr;
-					tok = tok.split(":")[0];
-				} else {
-					cp.constraints = "";
+				if (ii < block.components.size()) {
+					LayoutComponent comp = block.components.get(ii);
+					define(comp);
+					if (comp.subLayout != null) {
+						subLayouts.add(comp);
+					}
+					while (columnOrigins.size() <= comp.col) {
+						columnOrigins.add(null);
+					}
+					columnOrigins.set(comp.col,comp);
 				}
-				cp.name = tok;
-				cp.col = col;
-				cp.row = row;
-				cp.width = 1;
-				cp.height = 1;
-				components.add(cp);
-				++col;
+			}
+			if (block.failure != null) {
+				throw block.failure;
 			}
 		}
 	}
 
 	/**
-	 * Parse a layout token from a layout string at a given position.
+	 * Split a layout into blocks of about BLOCK_SIZE characters. Each
+	 * block after the first starts at a '{' preceded only by whitespace
+	 * since the previous '}', where a sequential parse would be at
+	 * column 0 with no current component, so the only parser state a
+	 * block needs is its first row number. A block may also start at
+	 * the repeat count, *count, of such a row.
 	 * @param layout The layout string.
-	 * @param idxHolder A one-element int[] array containing the index
-	 * 		at which to parse a token. The single element is updated
-	 * 		to indicate the next un-parsed position in the layout string.
-	 * @return The parsed token, if any, or an empty string if we
-	 * 		reach the end of the layout string without finding a
-	 * 		valid token.
+	 * @return The blocks, in layout order.
 	 */
-	private String parseToken(String layout,int[] idxHolder) {
-		String result = "";
-		int idx = idxHolder[0];
-		while ((idx < layout.length()) && Character.isWhitespace(layout.charAt(idx))) {
-			++idx;
-		}
-		if (idx < layout.length()) {
-			switch (layout.charAt(idx)) {
-			case '{':
-				result = "{";
-				++idx;
-				break;
-			case '}':
-				result = "}";
-				++idx;
-				break;
-			case '^':
-			case '|':
-				result = "|";
-				++idx;
-				break;
-			case '<':
-			case '+':
-				result = "+";
-				++idx;
-				break;
-			case '-':
-				result = "-";
-				++idx;
-				break;
-			default:
-				// It's the first character of an identifier.
-				char c = layout.charAt(idx);
-				StringBuilder sb = new StringBuilder();
-				sb.append(c);
-				++idx;
-				while (idx < layout.length()) {
-					c = layout.charAt(idx);
-					if (isTerminatingChar(c)) {
-						break;
+	private static List<RowBlock> split(CharSequence layout) {
+		ArrayList<RowBlock> blocks = new ArrayList<>();
+		int len = layout.length();
+		int start = 0;
+		int firstRow = 0;
+		int row = 0;
+		// The number of copies of the current row and the next one.
+		int rowRepeat = 1;
+		int nextRepeat = 1;
+		boolean afterRow = false;
+		boolean inRow = false;
+		// The sub-layout nesting depth. Sub-layouts are kept whole in
+		// the block that holds them.
+		int depth = 0;
+		for (int idx=0; idx<len; ++idx) {
+			char c = layout.charAt(idx);
+			if (depth > 0) {
+				if (c == '[') {
+					++depth;
+				} else if (c == ']') {
+					--depth;
+				}
+			} else if (c == '[') {
+				depth = 1;
+				afterRow = false;
+			} else if (c == '}') {
+				row += rowRepeat;
+				rowRepeat = 1;
+				afterRow = true;
+				inRow = false;
+			} else if (c == '{') {
+				if (afterRow && (idx - start >= BLOCK_SIZE)) {
+					blocks.add(new RowBlock(start,idx,firstRow));
+					start = idx;
+					firstRow = row;
+				}
+				rowRepeat = nextRepeat;
+				nextRepeat = 1;
+				afterRow = false;
+				inRow = true;
+			} else if ((c == '*') && !inRow && ((idx == 0) || StreamingLayoutParser.isTerminatingChar(layout.charAt(idx - 1)))) {
+				// A repeat count, if it is well formed. If not, the
+				// block containing it fails to parse.
+				int end = idx + 1;
+				long count = 0;
+				while ((end < len) && (end - idx <= 10) &&
+						(layout.charAt(end) >= '0') && (layout.charAt(end) <= '9')) {
+					count = count * 10 + (layout.charAt(end++) - '0');
+				}
+				if ((end < len) && (layout.charAt(end) == '{') && (count > 0) && (count <= Integer.MAX_VALUE)) {
+					if (afterRow && (idx - start >= BLOCK_SIZE)) {
+						blocks.add(new RowBlock(start,idx,firstRow));
+						start = idx;
+						firstRow = row;
 					}
-					sb.append(c);
-					++idx;
+					nextRepeat = (int)count;
+					idx = end - 1;
 				}
-				result = sb.toString();
+				afterRow = false;
+			} else if (!Character.isWhitespace(c)) {
+				afterRow = false;
 			}
 		}
-		idxHolder[0] = idx;
-		return result;
+		blocks.add(new RowBlock(start,len,firstRow));
+		return blocks;
 	}
 
 	/**
-	 * Check whether a character terminates an identifier.
-	 * @param c The character to check
-	 * @return true if the given character is whitespace or
-	 * 		one of the layout structural characters.
+	 * Add a newly defined component. A component in a repeated row
+	 * whose name contains '#' is kept as a template for all its copies.
+	 * @param comp The component.
+	 * @throws RuntimeException if its name, or the name of one of its
+	 * copies, has already been used.
 	 */
-	private boolean isTerminatingChar(char c) {
-		return Character.isWhitespace(c) ||
-				(c == '{') ||
-				(c == '}') ||
-				(c == '^') ||
-				(c == '<') ||
-				(c == '|') ||
-				(c == '-') ||
-				(c == '+');
+	private void define(LayoutComponent comp) {
+		if ((comp.repeat > 0) && comp.hasRepeatIndex()) {
+			if (shapes == null) {
+				// Now there are copies to check the earlier names against.
+				shapes = new ShapeIndex();
+				for (LayoutComponent earlier: components) {
+					shapes.add(earlier);
+				}
+			}
+			templates.add(comp);
+		} else {
+			if ((comp.repeat > 1) || (componentsByName.add(comp) != null)) {
+				throw duplicateName(comp.getName());
+			}
+			components.add(comp);
+		}
+		if (shapes != null) {
+			String shared = shapes.add(comp);
+			if (shared != null) {
+				throw duplicateName(shared);
+			}
+		}
+	}
+
+	private static RuntimeException duplicateName(String name) {
+		return new RuntimeException("Duplicate component name "+name+" in layout string.");
 	}
 
 	/**
-	 * Find the component directly above the given row,col coordinate.
-	 * @param row The row above which to search.
-	 * @param col The column in which to search.
-	 * @return The component found above the given row,col, or null
-	 * if no component was found.
+	 * The results of tokenizing a block of rows by itself.
 	 */
-	private ComponentPosition findComponentAbove(int row,int col) {
-		for (--row; row >=0; --row) {
-			for (ComponentPosition cp: components) {
-				if ((cp.row == row) && (cp.col == col)) {
-					return cp;
+	private static final class RowBlock implements LayoutListener,StreamingLayoutParser.OutsideSpans {
+
+		RowBlock(int start,int end,int firstRow) {
+			super();
+			this.start = start;
+			this.end = end;
+			this.firstRow = firstRow;
+		}
+
+		void tokenize(CharSequence layout) {
+			try {
+				StreamingLayoutParser.parse(layout,start,end,firstRow,this,this);
+			} catch (RuntimeException ex) {
+				// Reported when the merge reaches this block, so that
+				// errors in earlier blocks are reported first.
+				failure = ex;
+			}
+		}
+
+		@Override
+		public void componentDefined(LayoutComponent comp) {
+			components.add(comp);
+		}
+
+		@Override
+		public LayoutListener subLayoutStarted(LayoutComponent comp) {
+			return startSubLayout(comp);
+		}
+
+		@Override
+		public void rowStarted(int row) {
+			rowRepeat = 1;
+		}
+
+		@Override
+		public void rowRepeated(int row,int count) {
+			rowRepeat = count;
+		}
+
+		@Override
+		public void span(int row,int col,boolean vertical,LayoutComponent comp) {
+			if (vertical && (comp == null)) {
+				if (spanCount == spanColumns.length) {
+					spanColumns = Arrays.copyOf(spanColumns,spanCount * 2);
+					spanRows = Arrays.copyOf(spanRows,spanCount * 2);
+					spanPositions = Arrays.copyOf(spanPositions,spanCount * 2);
+					spanRowNumbers = Arrays.copyOf(spanRowNumbers,spanCount * 2);
+					spanNextClaimed = Arrays.copyOf(spanNextClaimed,spanCount * 2);
 				}
+				spanColumns[spanCount] = col;
+				spanRowNumbers[spanCount] = row;
+				spanNextClaimed[spanCount] = -1;
+				spanRows[spanCount] = rowRepeat;
+				spanPositions[spanCount] = components.size();
+				++spanCount;
 			}
 		}
-		return null;
+
+		@Override
+		public void cellAfterSpan(int row,int col) {
+			// The merge checks it against the width of the component
+			// the last span extends.
+			spanNextClaimed[spanCount - 1] = col;
+		}
+
+		// The block's characters, and the number of its first row.
+		private final int start;
+		private final int end;
+		private final int firstRow;
+
+		// The components defined in the block, in order.
+		final ArrayList<LayoutComponent> components = new ArrayList<>();
+
+		// The vertical spans that extend components in earlier blocks:
+		// their rows and columns, the number of rows each adds, the
+		// number of components defined before each, and the first
+		// column after each in its row that is not '-', or -1.
+		int[] spanRowNumbers = new int[16];
+		int[] spanColumns = new int[16];
+		int[] spanRows = new int[16];
+		int[] spanPositions = new int[16];
+		int[] spanNextClaimed = new int[16];
+		int spanCount;
+
+		// The number of copies of the row being read.
+		private int rowRepeat = 1;
+
+		// The exception that stopped tokenizing, if any.
+		RuntimeException failure;
 	}
 
-	// A structure to hold component positioning information.
-	static class ComponentPosition {
-		String name;
-		int row;
-		int col;
-		int width;
-		int height;
-		String constraints;
+	/**
+	 * Tokenizes a range of blocks, dividing it between forked tasks.
+	 */
+	private static final class TokenizeTask extends RecursiveAction {
+
+		private static final long serialVersionUID = 1L;
+
+		TokenizeTask(CharSequence layout,List<RowBlock> blocks,int from,int to) {
+			super();
+			this.layout = layout;
+			this.blocks = blocks;
+			this.from = from;
+			this.to = to;
+		}
+
+		@Override
+		protected void compute() {
+			if (to - from == 1) {
+				blocks.get(from).tokenize(layout);
+			} else {
+				int mid = (from + to) >>> 1;
+				invokeAll(new TokenizeTask(layout,blocks,from,mid),new TokenizeTask(layout,blocks,mid,to));
+			}
+		}
+
+		private final transient CharSequence layout;
+		private final transient List<RowBlock> blocks;
+		private final int from;
+		private final int to;
 	}
 
+	// The approximate number of characters in a block of rows tokenized
+	// by one task in a parallel parse.
+	static final int BLOCK_SIZE = 16 * 1024;
+
 	// A list of component positions parsed from a layout string.
-	private LinkedList<ComponentPosition> components;
+	private final LinkedList<LayoutComponent> components;
+
+	// The same component positions, indexed by name.
+	private final NameIndex componentsByName;
+
+	// The components in repeated rows, each standing for one component
+	// per copy of its row.
+	private final ArrayList<LayoutComponent> templates = new ArrayList<>();
+
+	// Every component by the shape of its name, once there are
+	// templates, to check the templates' copies against.
+	private ShapeIndex shapes;
+
+	// The components whose cells hold sub-layouts.
+	private final ArrayList<LayoutComponent> subLayouts = new ArrayList<>();
 }
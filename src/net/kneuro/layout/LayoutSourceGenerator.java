@@ -0,0 +1,486 @@
+/**
+ * Copyright (c) 2018 Joseph A Knapka
+ *
+ * This code is released under the terms of the MIT License.
+ */
+package net.kneuro.layout;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Generates Java source that sets up the GridBagConstraints for every
+ * component of a layout directly, so that a program using it does no
+ * layout or constraint parsing at all. For a layout resource
+ * com/example/order-entry.layout, the generated class is
+ * com.example.OrderEntryLayout, with these methods:
+ * <br><br>
+ * <pre>
+ *    // Set the grid position, extent and embedded constraints of a
+ *    // component, leaving other fields as they are; false if there is
+ *    // no such component.
+ *    public static boolean apply(String name,GridBagConstraints gbc)
+ *
+ *    // New GridBagConstraints for a component.
+ *    public static GridBagConstraints constraints(String name)
+ *
+ *    // Add a component to a container that uses GridBagLayout.
+ *    public static void add(Container container,String name,Component comp)
+ * </pre>
+ *
+ * Each component's constraints are a few straight-line assignments,
+ * applied in the same order Gridder.add(String,Component) applies them.
+ * The components are divided among nested classes by the hash codes of
+ * their names, and found by a binary search over the ranges of hash
+ * codes, so that no method or class reaches the JVM's size limits
+ * however many components there are. A component in a repeated row is
+ * generated once, with code that reads the copy's index out of the
+ * name, so the source does not grow with the repeat count.
+ * <p>
+ * Run as a program, this class generates a source file for every
+ * layout resource in a source tree; see the generate-layout-sources
+ * macro in build/build.xml. As when precompiling, layouts that refer
+ * to constraint styles or hold sub-layouts are skipped.
+ *
+ * @author jk
+ */
+final class LayoutSourceGenerator {
+
+	// The number of components handled by each generated method, the
+	// number of those methods in each nested class, and the number of
+	// components in repeated rows handled by each nested class, which
+	// keep the methods and classes well under the JVM's size limits.
+	static final int COMPONENTS_PER_METHOD = 100;
+	static final int METHODS_PER_CLASS = 20;
+	static final int REPEATED_PER_CLASS = 100;
+
+	private LayoutSourceGenerator() {
+		// Static methods only.
+	}
+
+	/**
+	 * Generate the source for a layout.
+	 * @param packageName The generated class's package, or "" for none.
+	 * @param className The generated class's simple name.
+	 * @param sourceName The layout's name, for comments and messages.
+	 * @param layout The layout text.
+	 * @return The Java source.
+	 * @throws RuntimeException if the layout cannot be parsed, or uses
+	 * a component identifier more than once.
+	 */
+	static String generate(String packageName,String className,String sourceName,CharSequence layout) {
+		CompactLayout compiled = CompactLayout.compile(layout);
+		// The components in repeated rows, and the others ordered by the
+		// hash codes of their names, each as (hash << 32) | index.
+		ArrayList<Integer> repeated = new ArrayList<>();
+		long[] named = new long[compiled.size()];
+		int namedCount = 0;
+		for (int idx=0; idx<compiled.size(); ++idx) {
+			if (compiled.repeatAt(idx) > 0) {
+				repeated.add(idx);
+			} else {
+				named[namedCount++] = ((long)compiled.nameAt(idx).hashCode() << 32) | idx;
+			}
+		}
+		named = Arrays.copyOf(named,namedCount);
+		Arrays.sort(named);
+		// Where each method's components start in named. Components with
+		// the same hash code are kept in the same method, so each method
+		// covers a range of hash codes.
+		ArrayList<Integer> methodStarts = new ArrayList<>();
+		for (int ii=0; ii<named.length; ++ii) {
+			int start = methodStarts.isEmpty() ? 0 : methodStarts.get(methodStarts.size() - 1);
+			if (methodStarts.isEmpty() ||
+					((ii - start >= COMPONENTS_PER_METHOD) && (hashOf(named[ii]) != hashOf(named[ii-1])))) {
+				methodStarts.add(ii);
+			}
+		}
+		methodStarts.add(named.length);
+		int methods = methodStarts.size() - 1;
+		int classes = (methods + METHODS_PER_CLASS - 1) / METHODS_PER_CLASS;
+
+		StringBuilder sb = new StringBuilder();
+		sb.append("// Generated by Gridder from ").append(sourceName).append(". Do not edit.\n");
+		if (!packageName.isEmpty()) {
+			sb.append("package ").append(packageName).append(";\n");
+		}
+		sb.append("\n");
+		sb.append("import java.awt.Component;\n");
+		sb.append("import java.awt.Container;\n");
+		sb.append("import java.awt.GridBagConstraints;\n");
+		if (classes > 0) {
+			sb.append("import java.util.Arrays;\n");
+		}
+		sb.append("\n");
+		sb.append("/**\n");
+		sb.append(" * The grid constraints of the components in ").append(sourceName).append(".\n");
+		sb.append(" */\n");
+		sb.append("public final class ").append(className).append(" {\n");
+		sb.append("\n");
+		sb.append("\tprivate ").append(className).append("() {\n");
+		sb.append("\t}\n");
+		sb.append("\n");
+		sb.append("\t/**\n");
+		sb.append("\t * Set the grid position and extent of a component, and the\n");
+		sb.append("\t * constraints embedded in the layout, leaving other fields as\n");
+		sb.append("\t * they are.\n");
+		sb.append("\t * @param name The component identifier.\n");
+		sb.append("\t * @param gbc The constraints to update.\n");
+		sb.append("\t * @return false if the layout has no such component.\n");
+		sb.append("\t */\n");
+		sb.append("\tpublic static boolean apply(String name,GridBagConstraints gbc) {\n");
+		if ((classes > 0) && !repeated.isEmpty()) {
+			sb.append("\t\treturn applyNamed(name,gbc) || applyRepeated(name,gbc);\n");
+		} else if (classes > 0) {
+			sb.append("\t\treturn applyNamed(name,gbc);\n");
+		} else if (!repeated.isEmpty()) {
+			sb.append("\t\treturn applyRepeated(name,gbc);\n");
+		} else {
+			sb.append("\t\treturn false;\n");
+		}
+		sb.append("\t}\n");
+		sb.append("\n");
+		sb.append("\t/**\n");
+		sb.append("\t * @param name The component identifier.\n");
+		sb.append("\t * @return New constraints for the component.\n");
+		sb.append("\t * @throws IllegalArgumentException if the layout has no such component.\n");
+		sb.append("\t */\n");
+		sb.append("\tpublic static GridBagConstraints constraints(String name) {\n");
+		sb.append("\t\tGridBagConstraints gbc = new GridBagConstraints();\n");
+		sb.append("\t\tif (!apply(name,gbc)) {\n");
+		sb.append("\t\t\tthrow new IllegalArgumentException(\"No component named \"+name+\" in ")
+				.append(escape(sourceName)).append(".\");\n");
+		sb.append("\t\t}\n");
+		sb.append("\t\treturn gbc;\n");
+		sb.append("\t}\n");
+		sb.append("\n");
+		sb.append("\t/**\n");
+		sb.append("\t * Add a component to a container that uses GridBagLayout.\n");
+		sb.append("\t * @param container The container.\n");
+		sb.append("\t * @param name The component identifier.\n");
+		sb.append("\t * @param comp The component to add.\n");
+		sb.append("\t * @throws IllegalArgumentException if the layout has no such component.\n");
+		sb.append("\t */\n");
+		sb.append("\tpublic static void add(Container container,String name,Component comp) {\n");
+		sb.append("\t\tcontainer.add(comp,constraints(name));\n");
+		sb.append("\t}\n");
+		if (classes > 0) {
+			appendNamed(sb,compiled,named,methodStarts,classes);
+		}
+		if (!repeated.isEmpty()) {
+			appendRepeated(sb,compiled,repeated);
+		}
+		sb.append("}\n");
+		return sb.toString();
+	}
+
+	// Append the lookup of the components not in repeated rows: a
+	// binary search for the nested class covering the name's hash code,
+	// and the nested classes, each choosing the method whose switch
+	// statement covers the hash code.
+	private static void appendNamed(StringBuilder sb,CompactLayout compiled,long[] named,
+			List<Integer> methodStarts,int classes) {
+		int methods = methodStarts.size() - 1;
+		sb.append("\n");
+		sb.append("\tprivate static boolean applyNamed(String name,GridBagConstraints gbc) {\n");
+		sb.append("\t\tint hash = name.hashCode();\n");
+		sb.append("\t\tint part = Arrays.binarySearch(FIRST_HASHES,hash);\n");
+		sb.append("\t\tif (part < 0) {\n");
+		sb.append("\t\t\t// The part whose range of hash codes holds the name's.\n");
+		sb.append("\t\t\tpart = -part - 2;\n");
+		sb.append("\t\t}\n");
+		sb.append("\t\tswitch (part) {\n");
+		for (int cc=0; cc<classes; ++cc) {
+			sb.append("\t\tcase ").append(cc).append(":\n");
+			sb.append("\t\t\treturn Named").append(cc).append(".apply(name,hash,gbc);\n");
+		}
+		sb.append("\t\tdefault:\n");
+		sb.append("\t\t\treturn false;\n");
+		sb.append("\t\t}\n");
+		sb.append("\t}\n");
+		sb.append("\n");
+		sb.append("\t// The smallest hash code of a name in each part.\n");
+		sb.append("\tprivate static final int[] FIRST_HASHES = {");
+		for (int cc=0; cc<classes; ++cc) {
+			sb.append((cc % 8 == 0) ? "\n\t\t\t" : " ");
+			sb.append(hashOf(named[methodStarts.get(cc * METHODS_PER_CLASS)])).append(',');
+		}
+		sb.append("\n\t};\n");
+		for (int cc=0; cc<classes; ++cc) {
+			int first = cc * METHODS_PER_CLASS;
+			int last = Math.min(methods,first + METHODS_PER_CLASS) - 1;
+			sb.append("\n");
+			sb.append("\tprivate static final class Named").append(cc).append(" {\n");
+			sb.append("\n");
+			sb.append("\t\tstatic boolean apply(String name,int hash,GridBagConstraints gbc) {\n");
+			for (int mm=last; mm>first; --mm) {
+				sb.append("\t\t\tif (hash >= ").append(hashOf(named[methodStarts.get(mm)])).append(") {\n");
+				sb.append("\t\t\t\treturn apply").append(mm - first).append("(name,gbc);\n");
+				sb.append("\t\t\t}\n");
+			}
+			sb.append("\t\t\treturn apply0(name,gbc);\n");
+			sb.append("\t\t}\n");
+			for (int mm=first; mm<=last; ++mm) {
+				sb.append("\n");
+				sb.append("\t\tprivate static boolean apply").append(mm - first)
+						.append("(String name,GridBagConstraints gbc) {\n");
+				sb.append("\t\t\tswitch (name) {\n");
+				for (int ii=methodStarts.get(mm); ii<methodStarts.get(mm + 1); ++ii) {
+					int idx = (int)named[ii];
+					sb.append("\t\t\tcase \"").append(escape(compiled.nameAt(idx))).append("\":\n");
+					appendConstraints(sb,"\t\t\t\t",compiled,idx,null);
+					sb.append("\t\t\t\treturn true;\n");
+				}
+				sb.append("\t\t\tdefault:\n");
+				sb.append("\t\t\t\treturn false;\n");
+				sb.append("\t\t\t}\n");
+				sb.append("\t\t}\n");
+			}
+			sb.append("\t}\n");
+		}
+	}
+
+	// Append the lookup of the components in repeated rows, tried one
+	// after another, and the method that reads a copy's index out of a
+	// name.
+	private static void appendRepeated(StringBuilder sb,CompactLayout compiled,List<Integer> repeated) {
+		int classes = (repeated.size() + REPEATED_PER_CLASS - 1) / REPEATED_PER_CLASS;
+		sb.append("\n");
+		sb.append("\tprivate static boolean applyRepeated(String name,GridBagConstraints gbc) {\n");
+		for (int cc=0; cc<classes; ++cc) {
+			sb.append("\t\tif (Repeated").append(cc).append(".apply(name,gbc)) {\n");
+			sb.append("\t\t\treturn true;\n");
+			sb.append("\t\t}\n");
+		}
+		sb.append("\t\treturn false;\n");
+		sb.append("\t}\n");
+		sb.append("\n");
+		sb.append("\t// The index of the copy of a repeated row whose component has\n");
+		sb.append("\t// the given name, where the component's name is parts with '#'\n");
+		sb.append("\t// between each: the same decimal index at each '#', without\n");
+		sb.append("\t// leading zeros, less than repeat. -1 if there is none.\n");
+		sb.append("\tstatic int index(String name,String[] parts,int repeat) {\n");
+		sb.append("\t\tint marks = parts.length - 1;\n");
+		sb.append("\t\tint digits = name.length();\n");
+		sb.append("\t\tfor (String part: parts) {\n");
+		sb.append("\t\t\tdigits -= part.length();\n");
+		sb.append("\t\t}\n");
+		sb.append("\t\tif ((digits <= 0) || (digits % marks != 0)) return -1;\n");
+		sb.append("\t\tdigits /= marks;\n");
+		sb.append("\t\tif (digits > 10) return -1;\n");
+		sb.append("\t\tif (!name.startsWith(parts[0])) return -1;\n");
+		sb.append("\t\tint pos = parts[0].length();\n");
+		sb.append("\t\tlong index = -1;\n");
+		sb.append("\t\tfor (int ii=1; ii<parts.length; ++ii) {\n");
+		sb.append("\t\t\tif ((digits > 1) && (name.charAt(pos) == '0')) return -1;\n");
+		sb.append("\t\t\tlong value = 0;\n");
+		sb.append("\t\t\tfor (int dd=0; dd<digits; ++dd) {\n");
+		sb.append("\t\t\t\tchar digit = name.charAt(pos++);\n");
+		sb.append("\t\t\t\tif ((digit < '0') || (digit > '9')) return -1;\n");
+		sb.append("\t\t\t\tvalue = value * 10 + (digit - '0');\n");
+		sb.append("\t\t\t}\n");
+		sb.append("\t\t\tif ((index >= 0) && (value != index)) return -1;\n");
+		sb.append("\t\t\tindex = value;\n");
+		sb.append("\t\t\tif (!name.startsWith(parts[ii],pos)) return -1;\n");
+		sb.append("\t\t\tpos += parts[ii].length();\n");
+		sb.append("\t\t}\n");
+		sb.append("\t\treturn (index < repeat) ? (int)index : -1;\n");
+		sb.append("\t}\n");
+		for (int cc=0; cc<classes; ++cc) {
+			int end = Math.min(repeated.size(),(cc + 1) * REPEATED_PER_CLASS);
+			sb.append("\n");
+			sb.append("\tprivate static final class Repeated").append(cc).append(" {\n");
+			sb.append("\n");
+			sb.append("\t\tstatic boolean apply(String name,GridBagConstraints gbc) {\n");
+			sb.append("\t\t\tint copy;\n");
+			for (int ii=cc*REPEATED_PER_CLASS; ii<end; ++ii) {
+				int idx = repeated.get(ii);
+				sb.append("\t\t\tif ((copy = index(name,NAME").append(ii % REPEATED_PER_CLASS).append(",")
+						.append(compiled.repeatAt(idx)).append(")) >= 0) {\n");
+				appendConstraints(sb,"\t\t\t\t",compiled,idx,"copy");
+				sb.append("\t\t\t\treturn true;\n");
+				sb.append("\t\t\t}\n");
+			}
+			sb.append("\t\t\treturn false;\n");
+			sb.append("\t\t}\n");
+			sb.append("\n");
+			for (int ii=cc*REPEATED_PER_CLASS; ii<end; ++ii) {
+				String name = compiled.nameAt(repeated.get(ii));
+				sb.append("\t\tprivate static final String[] NAME").append(ii % REPEATED_PER_CLASS).append(" = {");
+				int start = 0;
+				for (int mark; (mark = name.indexOf(LayoutComponent.REPEAT_INDEX,start)) >= 0; start = mark + 1) {
+					sb.append(" \"").append(escape(name.substring(start,mark))).append("\",");
+				}
+				sb.append(" \"").append(escape(name.substring(start))).append("\" };\n");
+			}
+			sb.append("\t}\n");
+		}
+	}
+
+	// Append the assignments for one component. If index is not null,
+	// it names the variable holding the index of a repeated row's copy.
+	private static void appendConstraints(StringBuilder sb,String indent,CompactLayout compiled,int idx,
+			String index) {
+		ConstraintSpec spec = compiled.constraintsAt(idx);
+		for (int ii=0; ii<spec.size(); ++ii) {
+			sb.append(indent).append("gbc.").append(FIELD_NAMES[spec.fieldAt(ii)]).append(" = ");
+			double value = spec.valueAt(ii);
+			if (isDouble(spec.fieldAt(ii))) {
+				sb.append(Double.toString(value));
+			} else {
+				sb.append((int)value);
+			}
+			sb.append(";\n");
+		}
+		sb.append(indent).append("gbc.gridwidth = ").append(compiled.widthAt(idx)).append(";\n");
+		sb.append(indent).append("gbc.gridheight = ").append(compiled.heightAt(idx)).append(";\n");
+		sb.append(indent).append("gbc.gridx = ").append(compiled.columnAt(idx)).append(";\n");
+		sb.append(indent).append("gbc.gridy = ").append(compiled.rowAt(idx));
+		if (index != null) {
+			sb.append(" + ").append(index);
+		}
+		sb.append(";\n");
+	}
+
+	// The hash code in a (hash << 32) | index entry.
+	private static int hashOf(long entry) {
+		return (int)(entry >> 32);
+	}
+
+	private static boolean isDouble(int field) {
+		return (field == ConstraintSpec.WEIGHTX) || (field == ConstraintSpec.WEIGHTY);
+	}
+
+	// Quote a string for a Java string literal.
+	private static String escape(String s) {
+		StringBuilder sb = new StringBuilder();
+		for (int ii=0; ii<s.length(); ++ii) {
+			char c = s.charAt(ii);
+			if ((c == '"') || (c == '\\')) {
+				sb.append('\\').append(c);
+			} else if ((c < ' ') || (c > '~')) {
+				sb.append(String.format("\\u%04x",(int)c));
+			} else {
+				sb.append(c);
+			}
+		}
+		return sb.toString();
+	}
+
+	/**
+	 * @param fileName A layout file name, such as "order-entry.layout".
+	 * @return The generated class's name, such as "OrderEntryLayout".
+	 */
+	static String className(String fileName) {
+		String base = fileName.endsWith(PrecompiledLayout.LAYOUT_SUFFIX) ?
+				fileName.substring(0,fileName.length() - PrecompiledLayout.LAYOUT_SUFFIX.length()) : fileName;
+		StringBuilder sb = new StringBuilder();
+		boolean upper = true;
+		for (int ii=0; ii<base.length(); ++ii) {
+			char c = base.charAt(ii);
+			if (!Character.isJavaIdentifierPart(c) || (c == '_') || (c == '$')) {
+				upper = true;
+			} else {
+				sb.append(upper ? Character.toUpperCase(c) : c);
+				upper = false;
+			}
+		}
+		if ((sb.length() == 0) || !Character.isJavaIdentifierStart(sb.charAt(0))) {
+			sb.insert(0,'_');
+		}
+		return sb.append("Layout").toString();
+	}
+
+	/**
+	 * Generate a source file for every layout resource under a source
+	 * directory.
+	 * @param args The source directory, and the directory to write the
+	 * generated sources to. A layout resource dir/name.layout in the
+	 * source directory is written as a class in the package named by
+	 * dir, unless PrecompiledLayout.notPrecompilable() gives a reason
+	 * not to.
+	 * @throws IOException if a layout cannot be read or a source file
+	 * written.
+	 * @throws RuntimeException if a layout cannot be parsed, or is in a
+	 * directory that is not a valid package name.
+	 */
+	public static void main(String[] args) throws IOException {
+		if (args.length != 2) {
+			System.err.println("Usage: LayoutSourceGenerator sourceDir outputDir");
+			System.exit(1);
+		}
+		Path sourceDir = Paths.get(args[0]);
+		Path outputDir = Paths.get(args[1]);
+		List<Path> layouts;
+		try (Stream<Path> files = Files.walk(sourceDir)) {
+			layouts = files.filter(f -> f.getFileName().toString().endsWith(PrecompiledLayout.LAYOUT_SUFFIX) && Files.isRegularFile(f))
+					.collect(Collectors.toCollection(ArrayList::new));
+		}
+		Files.createDirectories(outputDir);
+		int count = 0;
+		for (Path layout: layouts) {
+			Path relative = sourceDir.relativize(layout);
+			StringBuilder packageName = new StringBuilder();
+			for (int ii=0; ii<relative.getNameCount()-1; ++ii) {
+				String part = relative.getName(ii).toString();
+				if (!isIdentifier(part)) {
+					throw new RuntimeException(layout+": "+part+" is not a valid package name");
+				}
+				packageName.append((ii > 0) ? "." : "").append(part);
+			}
+			String className = className(layout.getFileName().toString());
+			Path out = outputDir.resolve(packageName.toString().replace('.','/')).resolve(className + ".java");
+			String text = new String(Files.readAllBytes(layout),StandardCharsets.UTF_8);
+			String reason = PrecompiledLayout.notPrecompilable(text);
+			if (reason != null) {
+				// Remove any source generated earlier.
+				Files.deleteIfExists(out);
+				System.out.println("Not generating a class for "+layout+": "+reason);
+				continue;
+			}
+			String source;
+			try {
+				source = generate(packageName.toString(),className,relative.toString().replace('\\','/'),text);
+			} catch (RuntimeException ex) {
+				throw new RuntimeException(layout+": "+ex.getMessage(),ex);
+			}
+			Files.createDirectories(out.getParent());
+			Files.write(out,source.getBytes(StandardCharsets.UTF_8));
+			++count;
+		}
+		System.out.println("Generated "+count+" layout classes in "+outputDir);
+	}
+
+	private static boolean isIdentifier(String s) {
+		if (s.isEmpty() || !Character.isJavaIdentifierStart(s.charAt(0))) return false;
+		for (int ii=1; ii<s.length(); ++ii) {
+			if (!Character.isJavaIdentifierPart(s.charAt(ii))) return false;
+		}
+		return true;
+	}
+
+	// GridBagConstraints member names, by ConstraintSpec field number.
+	private static final String[] FIELD_NAMES = new String[ConstraintSpec.FIELD_COUNT];
+	static {
+		FIELD_NAMES[ConstraintSpec.GRIDWIDTH] = "gridwidth";
+		FIELD_NAMES[ConstraintSpec.GRIDHEIGHT] = "gridheight";
+		FIELD_NAMES[ConstraintSpec.WEIGHTX] = "weightx";
+		FIELD_NAMES[ConstraintSpec.WEIGHTY] = "weighty";
+		FIELD_NAMES[ConstraintSpec.ANCHOR] = "anchor";
+		FIELD_NAMES[ConstraintSpec.FILL] = "fill";
+		FIELD_NAMES[ConstraintSpec.IPADX] = "ipadx";
+		FIELD_NAMES[ConstraintSpec.IPADY] = "ipady";
+		FIELD_NAMES[ConstraintSpec.INSET_TOP] = "insets.top";
+		FIELD_NAMES[ConstraintSpec.INSET_LEFT] = "insets.left";
+		FIELD_NAMES[ConstraintSpec.INSET_BOTTOM] = "insets.bottom";
+		FIELD_NAMES[ConstraintSpec.INSET_RIGHT] = "insets.right";
+	}
+}
@@ -0,0 +1,142 @@
+/**
+ * Copyright (c) 2018 Joseph A Knapka
+ *
+ * This code is released under the terms of the MIT License.
+ */
+package net.kneuro.layout;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+import javax.swing.SwingUtilities;
+
+/**
+ * Reloads a Gridder's layout from a file whenever the file changes,
+ * for trying out layout changes in a running program. Each change is
+ * parsed on a background thread and applied on the Swing event thread
+ * with Gridder.relayout(), so only the components that moved are
+ * touched. Created by Gridder.watchLayout().
+ *
+ * @author jk
+ */
+public final class LayoutWatcher implements Closeable {
+
+	// How long to wait for more events after a change, so that an
+	// editor's several writes for one save cause one reload.
+	static final long SETTLE_MILLIS = 50;
+
+	LayoutWatcher(Gridder gridder,Path file,Consumer<Exception> onError) throws IOException {
+		super();
+		this.gridder = gridder;
+		this.file = file.toAbsolutePath();
+		this.onError = onError;
+		this.text = read();
+		gridder.relayout(CompiledLayout.compile(text));
+		this.watcher = this.file.getFileSystem().newWatchService();
+		try {
+			this.file.getParent().register(watcher,StandardWatchEventKinds.ENTRY_CREATE,
+					StandardWatchEventKinds.ENTRY_MODIFY);
+		} catch (IOException ex) {
+			watcher.close();
+			throw ex;
+		}
+		Thread thread = new Thread(this::watch,"Gridder layout watcher: "+this.file);
+		thread.setDaemon(true);
+		thread.start();
+	}
+
+	/**
+	 * @return The file being watched.
+	 */
+	public Path getFile() {
+		return file;
+	}
+
+	/**
+	 * Stop watching the file. Changes already read may still be applied.
+	 * @throws IOException if the underlying WatchService cannot be closed.
+	 */
+	@Override
+	public void close() throws IOException {
+		watcher.close();
+	}
+
+	// Wait for changes to the file until the watcher is closed.
+	private void watch() {
+		try {
+			while (true) {
+				WatchKey key = watcher.take();
+				boolean changed = isFileEvent(key);
+				// Gather the rest of this save's events.
+				while ((key = watcher.poll(SETTLE_MILLIS,TimeUnit.MILLISECONDS)) != null) {
+					changed |= isFileEvent(key);
+				}
+				if (changed) {
+					reload();
+				}
+			}
+		} catch (ClosedWatchServiceException | InterruptedException ex) {
+			// Closed.
+		}
+	}
+
+	// True if any of a key's events are for the file. The key is reset.
+	private boolean isFileEvent(WatchKey key) {
+		boolean result = false;
+		for (WatchEvent<?> event: key.pollEvents()) {
+			if (file.getFileName().equals(event.context())) {
+				result = true;
+			}
+		}
+		key.reset();
+		return result;
+	}
+
+	// Parse the file if its text has changed, and apply it on the event
+	// thread.
+	private void reload() {
+		try {
+			String newText = read();
+			if (newText.equals(text)) {
+				return;
+			}
+			text = newText;
+			CompiledLayout layout = CompiledLayout.compile(newText);
+			SwingUtilities.invokeLater(() -> {
+				try {
+					gridder.relayout(layout);
+				} catch (RuntimeException ex) {
+					onError.accept(ex);
+				}
+			});
+		} catch (IOException | RuntimeException ex) {
+			SwingUtilities.invokeLater(() -> onError.accept(ex));
+		}
+	}
+
+	private String read() throws IOException {
+		return new String(Files.readAllBytes(file),StandardCharsets.UTF_8);
+	}
+
+	// The Gridder whose layout is reloaded.
+	private final Gridder gridder;
+
+	// The layout file, and its text when last read.
+	private final Path file;
+	private String text;
+
+	// Told about changes that cannot be parsed or applied.
+	private final Consumer<Exception> onError;
+
+	private final WatchService watcher;
+}
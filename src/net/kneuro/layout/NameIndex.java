@@ -0,0 +1,110 @@
+/**
+ * Copyright (c) 2018 Joseph A Knapka
+ *
+ * This code is released under the terms of the MIT License.
+ */
+package net.kneuro.layout;
+
+/**
+ * A hash index of layout components by name. Unlike a HashMap keyed
+ * by String, it hashes and compares the name characters in place in
+ * the layout text, so indexing a layout never creates the names as
+ * Strings; a component's name only becomes a String when the caller
+ * asks for it.
+ * <p>
+ * The table uses open addressing with linear probing, and is kept at
+ * most half full.
+ *
+ * @author jk
+ */
+final class NameIndex {
+
+	/**
+	 * Create an empty index.
+	 */
+	NameIndex() {
+		super();
+		this.table = new LayoutComponent[16];
+		this.hashes = new int[16];
+	}
+
+	/**
+	 * Add a component to the index, unless a component with the same
+	 * name is already there.
+	 * @param comp The component to add.
+	 * @return null if the component was added, otherwise the existing
+	 * component with the same name.
+	 */
+	LayoutComponent add(LayoutComponent comp) {
+		int hash = comp.nameHash();
+		int mask = table.length - 1;
+		int idx = spread(hash) & mask;
+		while (table[idx] != null) {
+			if ((hashes[idx] == hash) && table[idx].nameEquals(comp)) {
+				return table[idx];
+			}
+			idx = (idx + 1) & mask;
+		}
+		table[idx] = comp;
+		hashes[idx] = hash;
+		if (++size > table.length / 2) {
+			grow();
+		}
+		return null;
+	}
+
+	/**
+	 * @param name A component name.
+	 * @return The component with that name, or null.
+	 */
+	LayoutComponent get(String name) {
+		int hash = name.hashCode();
+		int mask = table.length - 1;
+		int idx = spread(hash) & mask;
+		while (table[idx] != null) {
+			if ((hashes[idx] == hash) && table[idx].nameEquals(name)) {
+				return table[idx];
+			}
+			idx = (idx + 1) & mask;
+		}
+		return null;
+	}
+
+	/**
+	 * @return The number of indexed components.
+	 */
+	int size() {
+		return size;
+	}
+
+	// Double the table size, re-adding every component.
+	private void grow() {
+		LayoutComponent[] oldTable = table;
+		int[] oldHashes = hashes;
+		table = new LayoutComponent[oldTable.length * 2];
+		hashes = new int[oldTable.length * 2];
+		int mask = table.length - 1;
+		for (int ii=0; ii<oldTable.length; ++ii) {
+			if (oldTable[ii] != null) {
+				int idx = spread(oldHashes[ii]) & mask;
+				while (table[idx] != null) {
+					idx = (idx + 1) & mask;
+				}
+				table[idx] = oldTable[ii];
+				hashes[idx] = oldHashes[ii];
+			}
+		}
+	}
+
+	// Mix the high bits of a String hash into the low ones.
+	private static int spread(int hash) {
+		return hash ^ (hash >>> 16);
+	}
+
+	// The components, and their name hashes.
+	private LayoutComponent[] table;
+	private int[] hashes;
+
+	// The number of components in the table.
+	private int size;
+}
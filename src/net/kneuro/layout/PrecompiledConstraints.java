@@ -0,0 +1,204 @@
+/**
+ * Copyright (c) 2018 Joseph A Knapka
+ *
+ * This code is released under the terms of the MIT License.
+ */
+package net.kneuro.layout;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.URL;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Reads and writes the precompiled constraints resource produced by
+ * ConstraintCompilerPlugin. The resource maps constant constraint
+ * argument lists, exactly as they appear in Gridder calls, to their
+ * compiled ConstraintSpecs, so constraints that were checked at build
+ * time are never parsed at run time.
+ * <p>
+ * The format is a DataOutputStream stream: a magic number, a format
+ * version, and an entry count, followed by the entries. Each entry is
+ * its argument count, each argument as a type tag and value, then the
+ * spec's assignment count and its (field, value) pairs.
+ *
+ * @author jk
+ */
+final class PrecompiledConstraints {
+
+	// The class path location of the resource.
+	static final String RESOURCE = "META-INF/gridder/constraints.bin";
+
+	// Identifies the resource format.
+	static final int MAGIC = 0x47524443; // "GRDC"
+	static final int VERSION = 1;
+
+	// Argument type tags.
+	private static final byte NULL = 0;
+	private static final byte STRING = 1;
+	private static final byte INTEGER = 2;
+	private static final byte LONG = 3;
+	private static final byte DOUBLE = 4;
+	private static final byte FLOAT = 5;
+	private static final byte SHORT = 6;
+	private static final byte BYTE = 7;
+	private static final byte CHARACTER = 8;
+	private static final byte BOOLEAN = 9;
+
+	private PrecompiledConstraints() {
+		// Static methods only.
+	}
+
+	/**
+	 * Load every copy of the resource visible to a class loader.
+	 * Resources that cannot be read, or that were written in another
+	 * format version, are skipped; the constraints they contain are
+	 * then simply compiled at run time as usual.
+	 * @param loader The class loader to search, or null for the
+	 * system class loader.
+	 * @return The precompiled specs, keyed as ConstraintCache keys them.
+	 */
+	static Map<Object,ConstraintSpec> load(ClassLoader loader) {
+		Map<Object,ConstraintSpec> specs = new HashMap<>();
+		try {
+			Enumeration<URL> urls = (loader != null) ?
+					loader.getResources(RESOURCE) : ClassLoader.getSystemResources(RESOURCE);
+			while (urls.hasMoreElements()) {
+				try (InputStream in = urls.nextElement().openStream()) {
+					Map<Object[],ConstraintSpec> entries = read(in);
+					if (entries != null) {
+						for (Map.Entry<Object[],ConstraintSpec> entry: entries.entrySet()) {
+							specs.put(ConstraintCache.keyFor(entry.getKey()),entry.getValue());
+						}
+					}
+				} catch (IOException ex) {
+					// Skip this copy.
+				}
+			}
+		} catch (IOException ex) {
+			// No precompiled constraints.
+		}
+		return specs;
+	}
+
+	/**
+	 * Read a precompiled constraints stream.
+	 * @param in The stream to read.
+	 * @return The entries, each argument list mapped to its interned
+	 * spec, or null if the stream has the wrong magic number or version.
+	 * @throws IOException if the stream is truncated or malformed.
+	 */
+	static Map<Object[],ConstraintSpec> read(InputStream in) throws IOException {
+		DataInputStream data = new DataInputStream(new BufferedInputStream(in));
+		if ((data.readInt() != MAGIC) || (data.readInt() != VERSION)) {
+			return null;
+		}
+		int count = data.readInt();
+		Map<Object[],ConstraintSpec> entries = new HashMap<>();
+		for (int ii=0; ii<count; ++ii) {
+			Object[] args = new Object[data.readUnsignedShort()];
+			for (int jj=0; jj<args.length; ++jj) {
+				args[jj] = readArgument(data);
+			}
+			ConstraintSpec.Builder builder = new ConstraintSpec.Builder();
+			int size = data.readUnsignedByte();
+			for (int jj=0; jj<size; ++jj) {
+				int field = data.readUnsignedByte();
+				if (field >= ConstraintSpec.FIELD_COUNT) {
+					throw new IOException("Bad constraint field number "+field);
+				}
+				builder.set(field,data.readDouble());
+			}
+			entries.put(args,builder.build().intern());
+		}
+		return entries;
+	}
+
+	/**
+	 * Write a precompiled constraints stream.
+	 * @param out The stream to write. It is flushed but not closed.
+	 * @param entries Constraint argument lists and their compiled specs.
+	 * @throws IOException if writing fails.
+	 * @throws IllegalArgumentException if an argument is not of a
+	 * type that can be cached.
+	 */
+	static void write(OutputStream out,Map<Object[],ConstraintSpec> entries) throws IOException {
+		DataOutputStream data = new DataOutputStream(out);
+		data.writeInt(MAGIC);
+		data.writeInt(VERSION);
+		data.writeInt(entries.size());
+		for (Map.Entry<Object[],ConstraintSpec> entry: entries.entrySet()) {
+			Object[] args = entry.getKey();
+			data.writeShort(args.length);
+			for (Object arg: args) {
+				writeArgument(data,arg);
+			}
+			ConstraintSpec spec = entry.getValue();
+			data.writeByte(spec.size());
+			for (int ii=0; ii<spec.size(); ++ii) {
+				data.writeByte(spec.fieldAt(ii));
+				data.writeDouble(spec.valueAt(ii));
+			}
+		}
+		data.flush();
+	}
+
+	private static void writeArgument(DataOutputStream data,Object arg) throws IOException {
+		if (arg == null) {
+			data.writeByte(NULL);
+		} else if (arg instanceof String) {
+			data.writeByte(STRING);
+			data.writeUTF((String)arg);
+		} else if (arg instanceof Integer) {
+			data.writeByte(INTEGER);
+			data.writeInt((Integer)arg);
+		} else if (arg instanceof Long) {
+			data.writeByte(LONG);
+			data.writeLong((Long)arg);
+		} else if (arg instanceof Double) {
+			data.writeByte(DOUBLE);
+			data.writeDouble((Double)arg);
+		} else if (arg instanceof Float) {
+			data.writeByte(FLOAT);
+			data.writeFloat((Float)arg);
+		} else if (arg instanceof Short) {
+			data.writeByte(SHORT);
+			data.writeShort((Short)arg);
+		} else if (arg instanceof Byte) {
+			data.writeByte(BYTE);
+			data.writeByte((Byte)arg);
+		} else if (arg instanceof Character) {
+			data.writeByte(CHARACTER);
+			data.writeChar((Character)arg);
+		} else if (arg instanceof Boolean) {
+			data.writeByte(BOOLEAN);
+			data.writeBoolean((Boolean)arg);
+		} else {
+			throw new IllegalArgumentException("Cannot precompile a constraint argument of type "+arg.getClass().getName());
+		}
+	}
+
+	private static Object readArgument(DataInputStream data) throws IOException {
+		byte tag = data.readByte();
+		switch (tag) {
+		case NULL: return null;
+		case STRING: return data.readUTF();
+		case INTEGER: return data.readInt();
+		case LONG: return data.readLong();
+		case DOUBLE: return data.readDouble();
+		case FLOAT: return data.readFloat();
+		case SHORT: return data.readShort();
+		case BYTE: return data.readByte();
+		case CHARACTER: return data.readChar();
+		case BOOLEAN: return data.readBoolean();
+		default:
+			throw new IOException("Bad constraint argument tag "+tag);
+		}
+	}
+}
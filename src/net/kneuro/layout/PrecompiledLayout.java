@@ -0,0 +1,263 @@
+/**
+ * Copyright (c) 2018 Joseph A Knapka
+ *
+ * This code is released under the terms of the MIT License.
+ */
+package net.kneuro.layout;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Reads and writes precompiled layouts: a binary form of a fully
+ * parsed layout, with every component's position, extent and compiled
+ * constraints, which can be loaded without tokenizing the layout or
+ * parsing its constraints.
+ * <p>
+ * The format is a DataOutputStream stream: a magic number and a format
+ * version; the number of distinct constraint specs, then each spec's
+ * assignment count and (field, value) pairs; the number of
+ * components, then each component's row, column, width, height,
+ * repeat count, spec index, name length and name characters. A
+ * component in a repeated row is stored once, with its repeat count
+ * and the '#' in its name, for all its copies.
+ * <p>
+ * Run as a program, this class precompiles every layout resource,
+ * a file whose name ends in ".layout", in a source tree into a class
+ * output tree; see the precompile-layouts target in build/build.xml.
+ * Layouts that refer to constraint styles, which are defined by the
+ * program that uses them, or that hold sub-layouts, which a compact
+ * layout cannot store, are left to be compiled when they are loaded.
+ *
+ * @author jk
+ */
+final class PrecompiledLayout {
+
+	// The suffix of layout resources, and of their precompiled forms.
+	static final String LAYOUT_SUFFIX = ".layout";
+	static final String SUFFIX = ".bin";
+
+	// Identifies the format.
+	static final int MAGIC = 0x4752444C; // "GRDL"
+	static final int VERSION = 2;
+
+	private PrecompiledLayout() {
+		// Static methods only.
+	}
+
+	/**
+	 * Write a layout in precompiled form.
+	 * @param layout The layout.
+	 * @param out The stream to write. It is flushed but not closed.
+	 * @throws IOException if writing fails.
+	 */
+	static void write(CompactLayout layout,OutputStream out) throws IOException {
+		DataOutputStream data = new DataOutputStream(out);
+		data.writeInt(MAGIC);
+		data.writeInt(VERSION);
+		data.writeInt(layout.specCount());
+		for (int ii=0; ii<layout.specCount(); ++ii) {
+			ConstraintSpec spec = layout.specAt(ii);
+			data.writeByte(spec.size());
+			for (int jj=0; jj<spec.size(); ++jj) {
+				data.writeByte(spec.fieldAt(jj));
+				data.writeDouble(spec.valueAt(jj));
+			}
+		}
+		data.writeInt(layout.size());
+		for (int idx=0; idx<layout.size(); ++idx) {
+			data.writeInt(layout.rowAt(idx));
+			data.writeInt(layout.columnAt(idx));
+			data.writeInt(layout.widthAt(idx));
+			data.writeInt(layout.heightAt(idx));
+			data.writeInt(layout.repeatAt(idx));
+			data.writeInt(layout.specIndexAt(idx));
+			if (layout.nameLength(idx) > 0xffff) {
+				throw new IOException("Component name "+layout.nameAt(idx)+" is too long to precompile");
+			}
+			data.writeShort(layout.nameLength(idx));
+			for (int ii=0; ii<layout.nameLength(idx); ++ii) {
+				data.writeChar(layout.nameCharAt(idx,ii));
+			}
+		}
+		data.flush();
+	}
+
+	/**
+	 * Read a precompiled layout from a stream.
+	 * @param in The stream. It is read to the end but not closed.
+	 * @return The layout, or null if the stream has the wrong magic
+	 * number or version.
+	 * @throws IOException if reading fails, or the layout is truncated
+	 * or malformed.
+	 */
+	static CompactLayout read(InputStream in) throws IOException {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		byte[] buffer = new byte[8192];
+		int count;
+		while ((count = in.read(buffer)) >= 0) {
+			bytes.write(buffer,0,count);
+		}
+		return read(ByteBuffer.wrap(bytes.toByteArray()));
+	}
+
+	/**
+	 * Read a precompiled layout from a buffer, such as a mapped file.
+	 * The buffer's position is advanced past the layout.
+	 * @param bytes The buffer.
+	 * @return The layout, or null if the buffer has the wrong magic
+	 * number or version.
+	 * @throws IOException if the layout is truncated or malformed.
+	 */
+	static CompactLayout read(ByteBuffer bytes) throws IOException {
+		try {
+			if ((bytes.getInt() != MAGIC) || (bytes.getInt() != VERSION)) {
+				return null;
+			}
+			ConstraintSpec[] specs = new ConstraintSpec[count(bytes)];
+			for (int ii=0; ii<specs.length; ++ii) {
+				ConstraintSpec.Builder builder = new ConstraintSpec.Builder();
+				int size = bytes.get() & 0xff;
+				for (int jj=0; jj<size; ++jj) {
+					int field = bytes.get() & 0xff;
+					if (field >= ConstraintSpec.FIELD_COUNT) {
+						throw new IOException("Bad constraint field number "+field);
+					}
+					builder.set(field,bytes.getDouble());
+				}
+				specs[ii] = builder.build().intern();
+			}
+			int size = count(bytes);
+			int[] rows = new int[size];
+			int[] cols = new int[size];
+			int[] widths = new int[size];
+			int[] heights = new int[size];
+			int[] repeats = new int[size];
+			int[] specIndexes = new int[size];
+			int[] nameStarts = new int[size + 1];
+			char[] names = new char[Math.min(size * 8,bytes.remaining() / 2)];
+			int nameLength = 0;
+			for (int idx=0; idx<size; ++idx) {
+				rows[idx] = bytes.getInt();
+				cols[idx] = bytes.getInt();
+				widths[idx] = bytes.getInt();
+				heights[idx] = bytes.getInt();
+				repeats[idx] = bytes.getInt();
+				if (repeats[idx] < 0) {
+					throw new IOException("Bad repeat count "+repeats[idx]);
+				}
+				specIndexes[idx] = bytes.getInt();
+				if ((specIndexes[idx] < 0) || (specIndexes[idx] >= specs.length)) {
+					throw new IOException("Bad constraint spec index "+specIndexes[idx]);
+				}
+				int len = bytes.getShort() & 0xffff;
+				if (nameLength + len > names.length) {
+					names = Arrays.copyOf(names,Math.max(names.length * 2,nameLength + len));
+				}
+				for (int ii=0; ii<len; ++ii) {
+					names[nameLength++] = bytes.getChar();
+				}
+				nameStarts[idx + 1] = nameLength;
+			}
+			return new CompactLayout(size,rows,cols,widths,heights,repeats,specIndexes,specs,
+					Arrays.copyOf(names,nameLength),nameStarts);
+		} catch (BufferUnderflowException ex) {
+			throw new IOException("Truncated precompiled layout");
+		} catch (RuntimeException ex) {
+			throw new IOException("Bad precompiled layout: "+ex.getMessage(),ex);
+		}
+	}
+
+	// Read a count, checking that it is not negative.
+	private static int count(ByteBuffer bytes) throws IOException {
+		int count = bytes.getInt();
+		if (count < 0) {
+			throw new IOException("Bad count "+count);
+		}
+		return count;
+	}
+
+	/**
+	 * @param layout Layout text.
+	 * @return Why the layout should be compiled when it is loaded
+	 * rather than ahead of time, or null if it can be compiled ahead.
+	 */
+	static String notPrecompilable(CharSequence layout) {
+		for (int ii=0; ii<layout.length(); ++ii) {
+			if (layout.charAt(ii) == '[') {
+				return "it holds sub-layouts";
+			}
+		}
+		for (int ii=1; ii<layout.length(); ++ii) {
+			// A style reference starts an embedded constraint, after
+			// the ':' or a ','.
+			if ((layout.charAt(ii) == ConstraintStyles.PREFIX) &&
+					((layout.charAt(ii-1) == ':') || (layout.charAt(ii-1) == ','))) {
+				return "it refers to constraint styles";
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * Precompile every layout resource under a source directory.
+	 * @param args The source directory, and the class output directory
+	 * to write the precompiled layouts to. A layout resource
+	 * dir/name.layout in the source directory is written to
+	 * dir/name.layout.bin in the output directory, unless
+	 * notPrecompilable() gives a reason not to.
+	 * @throws IOException if a layout cannot be read or written.
+	 * @throws RuntimeException if a layout cannot be parsed.
+	 */
+	public static void main(String[] args) throws IOException {
+		if (args.length != 2) {
+			System.err.println("Usage: PrecompiledLayout sourceDir outputDir");
+			System.exit(1);
+		}
+		Path sourceDir = Paths.get(args[0]);
+		Path outputDir = Paths.get(args[1]);
+		List<Path> layouts;
+		try (Stream<Path> files = Files.walk(sourceDir)) {
+			layouts = files.filter(f -> f.getFileName().toString().endsWith(LAYOUT_SUFFIX) && Files.isRegularFile(f))
+					.collect(Collectors.toCollection(ArrayList::new));
+		}
+		int count = 0;
+		for (Path layout: layouts) {
+			Path out = outputDir.resolve(sourceDir.relativize(layout).toString() + SUFFIX);
+			String text = new String(Files.readAllBytes(layout),StandardCharsets.UTF_8);
+			String reason = notPrecompilable(text);
+			if (reason != null) {
+				// Remove any earlier precompiled form, so the text is read.
+				Files.deleteIfExists(out);
+				System.out.println("Not precompiling "+layout+": "+reason);
+				continue;
+			}
+			CompactLayout compiled;
+			try {
+				compiled = CompactLayout.compile(text);
+			} catch (RuntimeException ex) {
+				throw new RuntimeException(layout+": "+ex.getMessage(),ex);
+			}
+			Files.createDirectories(out.getParent());
+			try (OutputStream stream = Files.newOutputStream(out)) {
+				write(compiled,stream);
+			}
+			++count;
+		}
+		System.out.println("Precompiled "+count+" layouts into "+outputDir);
+	}
+}
@@ -0,0 +1,113 @@
+/**
+ * Copyright (c) 2018 Joseph A Knapka
+ *
+ * This code is released under the terms of the MIT License.
+ */
+package net.kneuro.layout;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+
+/**
+ * An index of layout components by the shape of their names, used to
+ * find the copies of components in repeated rows without expanding
+ * the rows. A name's shape is the name with each run of digits and
+ * '#' characters written as a single '#'. Replacing each '#' with a
+ * copy's index only changes digits, so every copy of a component has
+ * the component's shape, and two names can only be the same if their
+ * shapes are.
+ *
+ * @author jk
+ */
+final class ShapeIndex {
+
+	/**
+	 * Create an empty index.
+	 */
+	ShapeIndex() {
+		super();
+	}
+
+	/**
+	 * Add a component, checking its name, or its copies' names if it
+	 * is in a repeated row, against the components already added.
+	 * Components outside repeated rows are not checked against each
+	 * other, as a NameIndex does that.
+	 * @param comp The component to add.
+	 * @return null if the component was added, otherwise a name it
+	 * shares with a component already added.
+	 */
+	String add(LayoutComponent comp) {
+		StringBuilder sb = new StringBuilder(comp.nameLength());
+		for (int ii=0; ii<comp.nameLength(); ++ii) {
+			appendShape(sb,comp.nameCharAt(ii));
+		}
+		String shape = sb.toString();
+		ArrayList<LayoutComponent> group = groups.get(shape);
+		if (group == null) {
+			group = new ArrayList<>(1);
+			groups.put(shape,group);
+		}
+		for (LayoutComponent other: group) {
+			String name = sharedName(comp,other);
+			if (name != null) return name;
+		}
+		group.add(comp);
+		return null;
+	}
+
+	/**
+	 * @param cs Characters holding a component name.
+	 * @param start The start of the name.
+	 * @param end The end of the name.
+	 * @return The component in a repeated row that has a copy with
+	 * that name, or null.
+	 */
+	LayoutComponent find(CharSequence cs,int start,int end) {
+		StringBuilder sb = new StringBuilder(end - start);
+		for (int idx=start; idx<end; ++idx) {
+			appendShape(sb,cs.charAt(idx));
+		}
+		ArrayList<LayoutComponent> group = groups.get(sb.toString());
+		if (group != null) {
+			for (LayoutComponent comp: group) {
+				if (isTemplate(comp) && (comp.repetitionIndex(cs,start,end) >= 0)) {
+					return comp;
+				}
+			}
+		}
+		return null;
+	}
+
+	// A name shared by two components of the same shape, or their
+	// copies, or null.
+	private static String sharedName(LayoutComponent comp,LayoutComponent other) {
+		if (isTemplate(comp) && isTemplate(other)) {
+			// Try the copies of the one with fewer.
+			LayoutComponent fewer = (comp.repeat <= other.repeat) ? comp : other;
+			int index = fewer.sharedRepetition((fewer == comp) ? other : comp);
+			return (index >= 0) ? fewer.getRepetition(index).getName() : null;
+		} else if (isTemplate(comp)) {
+			return (comp.repetitionIndex(other) >= 0) ? other.getName() : null;
+		} else if (isTemplate(other)) {
+			return (other.repetitionIndex(comp) >= 0) ? comp.getName() : null;
+		}
+		return null;
+	}
+
+	// True if the component stands for one component per copy of its row.
+	private static boolean isTemplate(LayoutComponent comp) {
+		return (comp.repeat > 0) && comp.hasRepeatIndex();
+	}
+
+	private static void appendShape(StringBuilder sb,char c) {
+		if (((c < '0') || (c > '9')) && (c != LayoutComponent.REPEAT_INDEX)) {
+			sb.append(c);
+		} else if ((sb.length() == 0) || (sb.charAt(sb.length() - 1) != LayoutComponent.REPEAT_INDEX)) {
+			sb.append(LayoutComponent.REPEAT_INDEX);
+		}
+	}
+
+	// The components, grouped by the shape of their names.
+	private final HashMap<String,ArrayList<LayoutComponent>> groups = new HashMap<>();
+}
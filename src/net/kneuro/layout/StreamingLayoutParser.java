@@ -0,0 +1,648 @@
+/**
+ * Copyright (c) 2018 Joseph A Knapka
+ *
+ * This code is released under the terms of the MIT License.
+ */
+package net.kneuro.layout;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.Charset;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+
+/**
+ * Parses a layout string, as documented in the Gridder class comment,
+ * as a stream of events. The layout is read incrementally and each
+ * row start, cell, span and component is reported to a LayoutListener
+ * as soon as it is seen, so very large layouts never need to be held
+ * in memory. Apart from the text of the identifier being read, the
+ * parser keeps only one entry per grid column: the last component
+ * whose top-left cell is in that column, which is the component a
+ * vertical span in that column extends.
+ * <p>
+ * A component is finished, and can be added to its container, as soon
+ * as another component starts in the same column, since after that
+ * nothing can extend it. Remaining components are finished at the end
+ * of the layout.
+ * <p>
+ * A repeated row, *count{...}, is read and reported only once,
+ * however many copies it stands for; each of its components has a
+ * repeat count, and LayoutComponent.getRepetition() gives the
+ * component in each copy.
+ * <p>
+ * A sub-layout, name[{...}...], is read in the same pass: its events
+ * go to the listener returned by LayoutListener.subLayoutStarted()
+ * until the matching ']', and then reading continues in the enclosing
+ * grid where it left off.
+ * <p>
+ * The parser checks that every component occupies a rectangle of
+ * cells and that no two components overlap, at constant cost per
+ * cell: a '+' must adjoin the component it extends, a '|' must adjoin
+ * the component above it, and the rest of that component's width in
+ * the row must be '-' cells. A span with no component to extend is
+ * also an error.
+ * <p>
+ * Unlike Gridder.parseLayout(), this parser does not check for
+ * duplicate component identifiers, since that would mean remembering
+ * every identifier in the layout.
+ * <br><br>
+ * <pre>
+ *    try (Reader in = Files.newBufferedReader(path)) {
+ *       StreamingLayoutParser.parse(in,new LayoutListener() {
+ *          public void componentFinished(LayoutComponent comp) {
+ *             gr.add(comp,createComponent(comp.getName()));
+ *          }
+ *       });
+ *    }
+ * </pre>
+ *
+ * @author jk
+ */
+public final class StreamingLayoutParser {
+
+	/**
+	 * Parse a layout from a Reader.
+	 * @param in The layout text. It is read to the end but not closed.
+	 * @param listener Receives the layout events.
+	 * @throws IOException if reading fails.
+	 * @throws RuntimeException if the layout's embedded constraints
+	 * cannot be interpreted, a component overlaps another or is not
+	 * rectangular, a span extends nothing, or the listener throws.
+	 */
+	public static void parse(Reader in,LayoutListener listener) throws IOException {
+		new StreamingLayoutParser(listener,in,null).run();
+	}
+
+	/**
+	 * Parse a layout from a channel.
+	 * @param in The encoded layout text. It is read to the end but not closed.
+	 * @param charset The layout text's encoding.
+	 * @param listener Receives the layout events.
+	 * @throws IOException if reading fails.
+	 * @throws RuntimeException if the layout's embedded constraints
+	 * cannot be interpreted, a component overlaps another or is not
+	 * rectangular, a span extends nothing, or the listener throws.
+	 */
+	public static void parse(ReadableByteChannel in,Charset charset,LayoutListener listener) throws IOException {
+		parse(Channels.newReader(in,charset.newDecoder(),-1),listener);
+	}
+
+	/**
+	 * Parse a layout held in memory. The layout is read in place:
+	 * component names are kept as ranges of the layout text, and only
+	 * become Strings when LayoutComponent.getName() is called, so the
+	 * components refer to the text until then. The text must not
+	 * change while those components are in use. Use
+	 * LayoutFiles.map() to parse a layout file this way.
+	 * @param layout The layout text.
+	 * @param listener Receives the layout events.
+	 * @throws RuntimeException if the layout's embedded constraints
+	 * cannot be interpreted, a component overlaps another or is not
+	 * rectangular, a span extends nothing, or the listener throws.
+	 */
+	public static void parse(CharSequence layout,LayoutListener listener) {
+		try {
+			new StreamingLayoutParser(listener,null,layout).run();
+		} catch (IOException ex) {
+			// Cannot happen without a Reader.
+			throw new UncheckedIOException(ex);
+		}
+	}
+
+	/**
+	 * Parse part of a layout held in memory, in place, as if it were a
+	 * whole layout whose first row is numbered firstRow. Vertical spans
+	 * that extend components outside the range are reported with a null
+	 * component, and the cell that would be checked against each such
+	 * component's width is reported to outside.
+	 * @param layout The layout text.
+	 * @param start The index of the first character to parse.
+	 * @param end The index just past the last character to parse.
+	 * @param firstRow The row number of the first row in the range.
+	 * @param listener Receives the layout events.
+	 * @param outside Checks the spans that extend components outside
+	 * the range.
+	 */
+	static void parse(CharSequence layout,int start,int end,int firstRow,LayoutListener listener,
+			OutsideSpans outside) {
+		StreamingLayoutParser parser = new StreamingLayoutParser(listener,null,layout);
+		parser.pos = start;
+		parser.limit = end;
+		parser.row = firstRow;
+		parser.partial = true;
+		parser.outside = outside;
+		try {
+			parser.run();
+		} catch (IOException ex) {
+			// Cannot happen without a Reader.
+			throw new UncheckedIOException(ex);
+		}
+	}
+
+	private StreamingLayoutParser(LayoutListener listener,Reader reader,CharSequence text) {
+		super();
+		this.listener = listener;
+		this.reader = reader;
+		this.text = text;
+		this.buffer = (reader != null) ? new char[BUFFER_SIZE] : null;
+		this.limit = (text != null) ? text.length() : 0;
+	}
+
+	/**
+	 * Read the whole layout, reporting events as they occur.
+	 */
+	private void run() throws IOException {
+		int c;
+		while ((c = read()) >= 0) {
+			LayoutComponent defined = justDefined;
+			justDefined = null;
+			switch (c) {
+			case '[':
+				// A sub-layout in the cell of the component just read.
+				if (defined == null) {
+					throw new RuntimeException("A sub-layout must follow a component identifier in layout string.");
+				}
+				startSubLayout(defined);
+				break;
+			case ']':
+				finishSubLayout();
+				break;
+			case '{':
+				if (inRow) {
+					throw missingRowEnd(row);
+				}
+				// Reset the column number to 0.
+				inRow = true;
+				col = 0;
+				reservedEnd = 0;
+				reservedBy = null;
+				spanOutside = false;
+				rowRepeat = nextRepeat;
+				nextRepeat = 0;
+				listener.rowStarted(row);
+				if (rowRepeat > 0) {
+					listener.rowRepeated(row,rowRepeat);
+				}
+				break;
+			case '}':
+				if (!inRow) {
+					throw new RuntimeException("Unmatched '}' in layout string.");
+				}
+				// Move past the row, and all its copies, and forget any
+				// current component.
+				current = null;
+				inRow = false;
+				listener.rowFinished(row);
+				row += Math.max(rowRepeat,1);
+				rowRepeat = 0;
+				break;
+			case '-':
+				listener.cell(row,col);
+				++col;
+				break;
+			case '<':
+			case '+':
+				// Extend component rightward.
+				checkUnreserved();
+				if (current == null) {
+					throw orphanSpan(row,col);
+				}
+				if (col != current.col + current.width) {
+					throw notRectangular(current,row,col);
+				}
+				++current.width;
+				listener.span(row,col,false,current);
+				++col;
+				break;
+			case '^':
+			case '|':
+				// Extend component downward.
+				checkUnreserved();
+				LayoutComponent above = (col < columnOrigins.size()) ? columnOrigins.get(col) : null;
+				if (above != null) {
+					if (above.repeat > 0) {
+						throw spanBelowRepeatedRow(above);
+					}
+					if (row != above.row + above.height) {
+						throw notRectangular(above,row,col);
+					}
+					above.height += Math.max(rowRepeat,1);
+					// The rest of the component's width in this row
+					// must be empty cells.
+					reservedEnd = col + above.width;
+					reservedBy = above;
+				} else if (partial) {
+					// The component is outside the range, so the next
+					// cell is checked against its width later.
+					spanOutside = true;
+				} else {
+					throw orphanSpan(row,col);
+				}
+				listener.span(row,col,true,above);
+				++col;
+				break;
+			default:
+				if ((c == '*') && !inRow) {
+					// Between rows, a repeat count for the next row. Within
+					// a row, it starts an identifier.
+					readRepeatCount();
+				} else if (Character.isWhitespace(c)) {
+					justDefined = defined;
+				} else {
+					// It's an identifier. Create a new component.
+					if (text != null) {
+						// Use the identifier in place.
+						int start = pos - 1;
+						while ((pos < limit) && !isTerminatingChar(text.charAt(pos))) {
+							++pos;
+						}
+						defineComponent(text,start,pos,false);
+					} else {
+						readIdentifier((char)c);
+						defineComponent(identifier,0,identifier.length(),true);
+					}
+					++col;
+				}
+			}
+		}
+		if (inRow) {
+			throw missingRowEnd(row);
+		}
+		if (enclosing != null) {
+			throw new RuntimeException("Missing ']' after the sub-layout of "+enclosing.peek().comp.getName()+" in layout string.");
+		}
+		finishColumns();
+	}
+
+	/**
+	 * Finish the components that are still the origins of their
+	 * columns, since nothing else can extend them.
+	 */
+	private void finishColumns() {
+		for (LayoutComponent comp: columnOrigins) {
+			if (comp != null) {
+				listener.componentFinished(comp);
+			}
+		}
+		columnOrigins.clear();
+	}
+
+	/**
+	 * Save the state of the grid being read and start reading a
+	 * sub-layout in a component's cell.
+	 * @param comp The component.
+	 */
+	private void startSubLayout(LayoutComponent comp) {
+		if (comp.repeat > 0) {
+			throw new RuntimeException("Component "+comp.getName()+" is in a repeated row and cannot hold a sub-layout in layout string.");
+		}
+		if (enclosing == null) {
+			enclosing = new ArrayDeque<>();
+		}
+		enclosing.push(new Grid(comp,listener,row,col,inRow,rowRepeat,nextRepeat,current,columnOrigins,
+				reservedEnd,reservedBy,partial));
+		listener = listener.subLayoutStarted(comp);
+		row = 0;
+		col = 0;
+		inRow = false;
+		rowRepeat = 0;
+		nextRepeat = 0;
+		current = null;
+		columnOrigins = new ArrayList<>();
+		reservedEnd = 0;
+		reservedBy = null;
+		// A sub-layout is always read whole.
+		partial = false;
+	}
+
+	/**
+	 * Finish a sub-layout and resume reading the grid around it.
+	 */
+	private void finishSubLayout() {
+		if ((enclosing == null) || enclosing.isEmpty()) {
+			throw new RuntimeException("Unmatched ']' in layout string.");
+		}
+		if (inRow) {
+			throw missingRowEnd(row);
+		}
+		finishColumns();
+		Grid grid = enclosing.pop();
+		if (enclosing.isEmpty()) {
+			enclosing = null;
+		}
+		listener = grid.listener;
+		row = grid.row;
+		col = grid.col;
+		inRow = grid.inRow;
+		rowRepeat = grid.rowRepeat;
+		nextRepeat = grid.nextRepeat;
+		current = grid.current;
+		columnOrigins = grid.columnOrigins;
+		reservedEnd = grid.reservedEnd;
+		reservedBy = grid.reservedBy;
+		partial = grid.partial;
+		listener.subLayoutFinished(grid.comp);
+	}
+
+	/**
+	 * Read the rest of an identifier into this.identifier.
+	 * @param first The identifier's first character.
+	 */
+	private void readIdentifier(char first) throws IOException {
+		identifier.setLength(0);
+		identifier.append(first);
+		int c;
+		while ((c = read()) >= 0) {
+			if (isTerminatingChar((char)c)) {
+				pushback = c;
+				break;
+			}
+			identifier.append((char)c);
+		}
+	}
+
+	/**
+	 * Read the count following a '*', which must be followed directly
+	 * by the '{' of the row to repeat.
+	 */
+	private void readRepeatCount() throws IOException {
+		int count = 0;
+		int digits = 0;
+		int c;
+		while (((c = read()) >= '0') && (c <= '9')) {
+			if (count > (Integer.MAX_VALUE - 9) / 10) {
+				throw badRepeatCount();
+			}
+			count = count * 10 + (c - '0');
+			++digits;
+		}
+		if ((digits == 0) || (count == 0) || (c != '{')) {
+			throw badRepeatCount();
+		}
+		pushback = c;
+		nextRepeat = count;
+	}
+
+	private static RuntimeException badRepeatCount() {
+		return new RuntimeException("A row repeat count must be a positive number followed by '{' in layout string.");
+	}
+
+	/**
+	 * Check that the cell being read is not one that a vertical span
+	 * earlier in the row has claimed for a component above.
+	 */
+	private void checkUnreserved() {
+		if (spanOutside) {
+			spanOutside = false;
+			outside.cellAfterSpan(row,col);
+		}
+		if (col < reservedEnd) {
+			throw overlap(reservedBy,row,col);
+		}
+	}
+
+	/**
+	 * Receives the cells of a partial parse that must be checked against
+	 * components outside the part.
+	 */
+	interface OutsideSpans {
+
+		/**
+		 * The cell at row, col is the first cell that is not '-' after
+		 * a vertical span, in the same row, that extends a component
+		 * outside the part. It overlaps the component if the component
+		 * is wide enough to reach it. Called before the cell is checked
+		 * for any other error.
+		 */
+		void cellAfterSpan(int row,int col);
+	}
+
+	/**
+	 * @return The exception for a row that is not closed by '}'.
+	 */
+	static RuntimeException missingRowEnd(int row) {
+		return new RuntimeException("Row "+row+" is missing its '}' in layout string.");
+	}
+
+	/**
+	 * @return The exception for a span that has no component to extend.
+	 */
+	static RuntimeException orphanSpan(int row,int col) {
+		return new RuntimeException("Span at row "+row+", column "+col+" does not extend any component in layout string.");
+	}
+
+	/**
+	 * @param comp A component.
+	 * @return The exception for a span that does not adjoin the
+	 * component's cells.
+	 */
+	static RuntimeException notRectangular(LayoutComponent comp,int row,int col) {
+		return new RuntimeException("Component "+comp.getName()+" does not form a rectangle at row "+row+
+				", column "+col+" in layout string.");
+	}
+
+	/**
+	 * @param comp A component.
+	 * @return The exception for another component's cell inside the
+	 * component's extent.
+	 */
+	static RuntimeException overlap(LayoutComponent comp,int row,int col) {
+		return new RuntimeException("Component "+comp.getName()+" overlaps another component at row "+row+
+				", column "+col+" in layout string.");
+	}
+
+	/**
+	 * @param comp A component in a repeated row.
+	 * @return The exception for a vertical span extending it.
+	 */
+	static RuntimeException spanBelowRepeatedRow(LayoutComponent comp) {
+		return new RuntimeException("Component "+comp.getName()+" is in a repeated row and cannot span rows in layout string.");
+	}
+
+	/**
+	 * Create a component from an identifier, finishing the component
+	 * it replaces as the origin of its column.
+	 * @param cs The characters containing the identifier.
+	 * @param start The index of the identifier's first character.
+	 * @param end The index just past the identifier.
+	 * @param copyName true if cs is a buffer that will be reused, so
+	 * the name must be copied out now rather than when it is needed.
+	 */
+	private void defineComponent(CharSequence cs,int start,int end,boolean copyName) {
+		checkUnreserved();
+		int nameEnd = start;
+		while ((nameEnd < end) && (cs.charAt(nameEnd) != ':')) {
+			++nameEnd;
+		}
+		if (nameEnd == start) {
+			throw new RuntimeException("Empty component identifier at row "+row+", column "+col+" in layout string.");
+		}
+		ConstraintSpec constraints = (nameEnd < end) ?
+				ConstraintScanner.compileEmbedded(cs,nameEnd+1,end).intern() : ConstraintSpec.EMPTY;
+		LayoutComponent comp = copyName ?
+				new LayoutComponent(cs.subSequence(start,nameEnd).toString().intern(),row,col,constraints) :
+				new LayoutComponent(cs,start,nameEnd,row,col,constraints);
+		comp.repeat = rowRepeat;
+		while (columnOrigins.size() <= col) {
+			columnOrigins.add(null);
+		}
+		LayoutComponent replaced = columnOrigins.set(col,comp);
+		if (replaced != null) {
+			listener.componentFinished(replaced);
+		}
+		current = comp;
+		justDefined = comp;
+		listener.componentDefined(comp);
+	}
+
+	/**
+	 * @return The next character of the layout, or -1 at the end.
+	 */
+	private int read() throws IOException {
+		if (pushback >= 0) {
+			int c = pushback;
+			pushback = -1;
+			return c;
+		}
+		if (pos >= limit) {
+			if (reader == null) {
+				return -1;
+			}
+			do {
+				limit = reader.read(buffer);
+			} while (limit == 0);
+			pos = 0;
+			if (limit < 0) {
+				limit = 0;
+				return -1;
+			}
+		}
+		return (text != null) ? text.charAt(pos++) : buffer[pos++];
+	}
+
+	/**
+	 * Check whether a character terminates an identifier.
+	 * @param c The character to check
+	 * @return true if the given character is whitespace or
+	 * 		one of the layout structural characters.
+	 */
+	static boolean isTerminatingChar(char c) {
+		return Character.isWhitespace(c) ||
+				(c == '{') ||
+				(c == '}') ||
+				(c == '^') ||
+				(c == '<') ||
+				(c == '|') ||
+				(c == '-') ||
+				(c == '+') ||
+				(c == '[') ||
+				(c == ']');
+	}
+
+	// Characters read from a Reader at a time.
+	private static final int BUFFER_SIZE = 8192;
+
+	// Receives the events of the grid being read.
+	private LayoutListener listener;
+
+	// The layout source: either a reader and its buffer, or in-memory text.
+	private final Reader reader;
+	private final char[] buffer;
+	private final CharSequence text;
+
+	// The next position in the buffer or text, and the end of the
+	// characters available there.
+	private int pos;
+	private int limit;
+
+	// A character read past the end of an identifier, or -1.
+	private int pushback = -1;
+
+	// The identifier being read.
+	private final StringBuilder identifier = new StringBuilder();
+
+	// The current grid position, and whether it is between a row's
+	// '{' and '}'.
+	private int row;
+	private int col;
+	private boolean inRow;
+
+	// The number of copies of the current row, and of the next row to
+	// start, or 0 if it is not repeated.
+	private int rowRepeat;
+	private int nextRepeat;
+
+	// The component that '+' extends, if any.
+	private LayoutComponent current;
+
+	// For each column, the last component whose top-left cell was in
+	// that column, or null. This is the component '|' extends there.
+	private ArrayList<LayoutComponent> columnOrigins = new ArrayList<>();
+
+	// The columns of the current row, up to reservedEnd, that belong to
+	// reservedBy, the component above extended by the last '|' read;
+	// only '-' may appear there.
+	private int reservedEnd;
+	private LayoutComponent reservedBy;
+
+	// True if only part of a layout is being read, so a '|' with no
+	// component above may extend one outside the part.
+	private boolean partial;
+
+	// In a partial parse, whether the last '|' read in the current row
+	// extends a component outside the part, with no cell checked since,
+	// and what checks such cells.
+	private boolean spanOutside;
+	private OutsideSpans outside;
+
+	// The component just read, if nothing but whitespace has followed
+	// it; a '[' here starts its sub-layout.
+	private LayoutComponent justDefined;
+
+	// The grids enclosing the sub-layout being read, innermost first,
+	// or null outside any sub-layout.
+	private ArrayDeque<Grid> enclosing;
+
+	/**
+	 * The saved state of a grid while one of its sub-layouts is read.
+	 */
+	private static final class Grid {
+
+		Grid(LayoutComponent comp,LayoutListener listener,int row,int col,boolean inRow,int rowRepeat,int nextRepeat,
+				LayoutComponent current,ArrayList<LayoutComponent> columnOrigins,
+				int reservedEnd,LayoutComponent reservedBy,boolean partial) {
+			super();
+			this.comp = comp;
+			this.listener = listener;
+			this.row = row;
+			this.col = col;
+			this.inRow = inRow;
+			this.rowRepeat = rowRepeat;
+			this.nextRepeat = nextRepeat;
+			this.current = current;
+			this.columnOrigins = columnOrigins;
+			this.reservedEnd = reservedEnd;
+			this.reservedBy = reservedBy;
+			this.partial = partial;
+		}
+
+		// The component holding the sub-layout.
+		final LayoutComponent comp;
+
+		final LayoutListener listener;
+		final int row;
+		final int col;
+		final boolean inRow;
+		final int rowRepeat;
+		final int nextRepeat;
+		final LayoutComponent current;
+		final ArrayList<LayoutComponent> columnOrigins;
+		final int reservedEnd;
+		final LayoutComponent reservedBy;
+		final boolean partial;
+	}
+}
@@ -0,0 +1,239 @@
+/**
+ * Copyright (c) 2018 Joseph A Knapka
+ *
+ * This code is released under the terms of the MIT License.
+ */
+package net.kneuro.layout;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+import java.lang.reflect.Array;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.ArrayDeque;
+import java.util.Collection;
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+/**
+ * Tests for the CompactLayout class.
+ *
+ * @author jk
+ */
+public class TestCompactLayout {
+
+	@Test
+	public void testSameAsLayoutParser() {
+		String layout =
+				 "    {c1                 +   +     c2}    "+
+				 "    {c3:wx1,wy2,i*5,fxy +   c4    + }    "+
+				 "    {|                  -   -     c5:an}    "+
+				 "    {|                  -   c6:an + }    ";
+		LayoutParser lp = new LayoutParser(layout);
+		CompactLayout cl = CompactLayout.compile(layout);
+		assertEquals(6,cl.size());
+		for (String name: new String[] { "c1", "c2", "c3", "c4", "c5", "c6" }) {
+			LayoutComponent expected = lp.getComponentByName(name);
+			int idx = cl.indexOf(name);
+			assertTrue(idx >= 0);
+			assertEquals(name,cl.nameAt(idx));
+			assertEquals(expected.row,cl.rowAt(idx));
+			assertEquals(expected.col,cl.columnAt(idx));
+			assertEquals(expected.width,cl.widthAt(idx));
+			assertEquals(expected.height,cl.heightAt(idx));
+			assertEquals(expected.constraints,cl.constraintsAt(idx));
+		}
+		assertEquals(-1,cl.indexOf("nobody"));
+		assertEquals(-1,cl.indexOf("c"));
+		// Identical specs are stored once.
+		assertSame(cl.constraintsAt(cl.indexOf("c5")),cl.constraintsAt(cl.indexOf("c6")));
+	}
+
+	@Test
+	public void testCompiledLayout() {
+		CompiledLayout layout = CompiledLayout.compileCompact("{c1 + c2}{| - c3}");
+		LayoutComponent cp = layout.getComponent("c1");
+		assertEquals("c1",cp.getName());
+		assertEquals(2,cp.getWidth());
+		assertEquals(2,cp.getHeight());
+		assertNull(layout.getComponent("c4"));
+		assertNull(layout.parser());
+	}
+
+	@Test
+	public void testRepeatedRowsAreNotExpanded() {
+		CompactLayout cl = CompactLayout.compile("{side top}*3{| a_#:fx}{| bottom}");
+		assertEquals(4,cl.size());
+		assertEquals(6,cl.componentCount());
+		LayoutComponent cp = cl.getComponent("a_2");
+		assertEquals(3,cp.row);
+		assertEquals(1,cp.col);
+		assertEquals(ConstraintParser.compile("fill x"),cp.constraints);
+		assertNull(cl.getComponent("a_3"));
+		assertNull(cl.getComponent("a_#"));
+		assertEquals(5,cl.heightAt(cl.indexOf("side")));
+		assertEquals(4,cl.rowAt(cl.indexOf("bottom")));
+		assertEquals(-1,cl.indexOf("a_2"));
+		int repeats = 0;
+		for (int idx=0; idx<cl.size(); ++idx) {
+			repeats += cl.repeatAt(idx);
+		}
+		assertEquals(3,repeats);
+
+		cl = CompactLayout.compile("*1000000{lbl_# fld_#}");
+		assertEquals(2,cl.size());
+		assertEquals(999999,cl.getComponent("fld_999999").row);
+
+		for (String bad: new String[] { "{a_1}*3{a_#}", "*20{a_#}*10{a_1#}", "*2{a}" }) {
+			try {
+				CompactLayout.compile(bad);
+				fail("Duplicate name accepted in "+bad);
+			} catch (RuntimeException ex) {
+				assertTrue(ex.getMessage(),ex.getMessage().startsWith("Duplicate component name "));
+			}
+		}
+	}
+
+	@Test
+	public void testDuplicateNames() {
+		try {
+			CompactLayout.compile("{c1 c2}{c3 c1}");
+			fail("Duplicate name accepted");
+		} catch (RuntimeException ex) {
+			assertEquals("Duplicate component name c1 in layout string.",ex.getMessage());
+		}
+	}
+
+	@Test
+	public void testManyNames() {
+		CompactLayout cl = CompactLayout.compile(generate(100,50));
+		assertEquals(5000,cl.size());
+		for (int row=0; row<100; ++row) {
+			for (int col=0; col<50; ++col) {
+				int idx = cl.indexOf("r"+row+"c"+col);
+				assertEquals(row,cl.rowAt(idx));
+				assertEquals(col,cl.columnAt(idx));
+			}
+		}
+	}
+
+	@Test
+	public void testFootprint() {
+		// 50000 cells, with a few distinct constraints. Sizes are
+		// counted from the objects reached, not measured on the heap,
+		// and the layout text itself is left out of both.
+		String layout = generate(500,100);
+		LayoutParser lp = new LayoutParser(layout);
+		CompactLayout cl = CompactLayout.compile(layout);
+		assertEquals(50000,cl.size());
+		long graph = sizeOf(lp,layout);
+		long compact = sizeOf(cl,layout);
+		assertTrue(compact+" vs "+graph,compact < graph * 0.7);
+	}
+
+	// A rows x cols layout of distinct names, with constraints on every
+	// seventh cell.
+	private static String generate(int rows,int cols) {
+		StringBuilder sb = new StringBuilder();
+		for (int row=0; row<rows; ++row) {
+			sb.append('{');
+			for (int col=0; col<cols; ++col) {
+				sb.append(" r").append(row).append('c').append(col);
+				if ((row * cols + col) % 7 == 0) {
+					sb.append(":a").append("nsew".charAt(col % 4));
+				}
+			}
+			sb.append('}');
+		}
+		return sb.toString();
+	}
+
+	// The bytes taken by the objects reachable from root, apart from
+	// those reachable only through exclude, assuming compressed
+	// references. Library collections and strings are counted by a
+	// simple model rather than by their private fields.
+	static long sizeOf(Object root,Object exclude) {
+		Map<Object,Boolean> seen = new IdentityHashMap<>();
+		seen.put(exclude,Boolean.TRUE);
+		ArrayDeque<Object> pending = new ArrayDeque<>();
+		pending.push(root);
+		long total = 0;
+		while (!pending.isEmpty()) {
+			Object obj = pending.pop();
+			if (seen.put(obj,Boolean.TRUE) != null) {
+				continue;
+			}
+			Class<?> cls = obj.getClass();
+			if (cls.isArray()) {
+				int length = Array.getLength(obj);
+				Class<?> elem = cls.getComponentType();
+				total += align(16 + (long)length * fieldSize(elem));
+				if (!elem.isPrimitive()) {
+					for (int ii=0; ii<length; ++ii) {
+						Object item = Array.get(obj,ii);
+						if (item != null) {
+							pending.push(item);
+						}
+					}
+				}
+			} else if (obj instanceof String) {
+				total += align(24) + align(16 + ((String)obj).length());
+			} else if (obj instanceof Collection) {
+				total += 24 + 24L * ((Collection<?>)obj).size();
+				for (Object item: (Collection<?>)obj) {
+					pending.push(item);
+				}
+			} else if (obj instanceof Map) {
+				total += 48 + 40L * ((Map<?,?>)obj).size();
+				for (Map.Entry<?,?> entry: ((Map<?,?>)obj).entrySet()) {
+					pending.push(entry.getKey());
+					pending.push(entry.getValue());
+				}
+			} else if (cls.getName().startsWith("java.")) {
+				total += 16;
+			} else {
+				long size = 12;
+				for (Class<?> c=cls; c!=null; c=c.getSuperclass()) {
+					for (Field field: c.getDeclaredFields()) {
+						if (Modifier.isStatic(field.getModifiers())) {
+							continue;
+						}
+						size += fieldSize(field.getType());
+						if (!field.getType().isPrimitive()) {
+							try {
+								field.setAccessible(true);
+								Object value = field.get(obj);
+								if (value != null) {
+									pending.push(value);
+								}
+							} catch (IllegalAccessException ex) {
+								throw new AssertionError(ex);
+							}
+						}
+					}
+				}
+				total += align(size);
+			}
+		}
+		return total;
+	}
+
+	private static long fieldSize(Class<?> type) {
+		if ((type == long.class) || (type == double.class)) {
+			return 8;
+		}
+		if ((type == char.class) || (type == short.class)) {
+			return 2;
+		}
+		if ((type == byte.class) || (type == boolean.class)) {
+			return 1;
+		}
+		return 4;
+	}
+
+	private static long align(long size) {
+		return (size + 7) & ~7L;
+	}
+}
@@ -0,0 +1,168 @@
+/**
+ * Copyright (c) 2018 Joseph A Knapka
+ *
+ * This code is released under the terms of the MIT License.
+ */
+package net.kneuro.layout;
+
+import static org.junit.Assert.*;
+
+import org.junit.Assume;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.InputStream;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+
+import javax.tools.Diagnostic;
+import javax.tools.DiagnosticCollector;
+import javax.tools.JavaCompiler;
+import javax.tools.JavaFileObject;
+import javax.tools.SimpleJavaFileObject;
+import javax.tools.ToolProvider;
+
+import com.sun.source.util.JavacTask;
+
+/**
+ * Tests for the ConstraintCompilerPlugin and PrecompiledConstraints
+ * classes.
+ *
+ * @author jk
+ */
+public class TestConstraintCompilerPlugin {
+
+	@Rule
+	public TemporaryFolder tmp = new TemporaryFolder();
+
+	@Test
+	public void testGoodConstraintsArePrecompiled() throws Exception {
+		File classes = tmp.newFolder("classes");
+		DiagnosticCollector<JavaFileObject> diags = compile(classes,
+				"import net.kneuro.layout.Gridder;\n"+
+				"import javax.swing.*;\n"+
+				"class Demo {\n"+
+				"  static final String FIELD = \"fill x wx 1\";\n"+
+				"  void build(JPanel pnl,String dynamic) {\n"+
+				"    Gridder gr = new Gridder(pnl,\"anchor w\",\"insets*\",5);\n"+
+				"    gr.add(new JLabel(),0,0,FIELD);\n"+
+				"    gr.add(new JLabel(),0,1,\"a e\",dynamic);\n"+
+				"    gr.updateConstraints(\"weighty\",2.5);\n"+
+				"    pnl.add(new JLabel(),\"North\");\n"+
+				"  }\n"+
+				"}\n");
+		assertTrue(diags.getDiagnostics().toString(),diags.getDiagnostics().isEmpty());
+
+		File resource = new File(classes,PrecompiledConstraints.RESOURCE);
+		Map<Object,ConstraintSpec> specs = new HashMap<>();
+		try (InputStream in = new FileInputStream(resource)) {
+			for (Map.Entry<Object[],ConstraintSpec> entry: PrecompiledConstraints.read(in).entrySet()) {
+				specs.put(ConstraintCache.keyFor(entry.getKey()),entry.getValue());
+			}
+		}
+		assertEquals(3,specs.size());
+		assertEquals(ConstraintParser.compile("fill x wx 1"),specs.get("fill x wx 1"));
+		assertEquals(ConstraintParser.compile("a w i* 5"),specs.get(Arrays.asList("anchor w","insets*",5)));
+		assertEquals(ConstraintParser.compile("wy 2.5"),specs.get(Arrays.asList("weighty",2.5)));
+
+		// A cache built from the resource never compiles those constraints.
+		ConstraintCache cache = new ConstraintCache(16,specs);
+		assertSame(specs.get("fill x wx 1"),cache.get(new Object[] {"fill x wx 1"}));
+		assertSame(specs.get(Arrays.asList("weighty",2.5)),cache.get(new Object[] {"weighty",2.5}));
+		assertEquals(0,cache.misses());
+		assertEquals(0,cache.size());
+	}
+
+	@Test
+	public void testBadConstraintsAreCompileErrors() throws Exception {
+		DiagnosticCollector<JavaFileObject> diags = compile(tmp.newFolder("classes"),
+				"import net.kneuro.layout.Gridder;\n"+
+				"import javax.swing.*;\n"+
+				"class Demo {\n"+
+				"  void build(JPanel pnl) {\n"+
+				"    Gridder gr = new Gridder(pnl);\n"+
+				"    gr.add(new JLabel(),0,0,\"wieghtx 1\");\n"+
+				"    gr.add(\"c1\",new JLabel(),\"anchor\",\"sideways\");\n"+
+				"    gr.addAll(new JLabel[0],\"fill\",\"some\");\n"+
+				"    gr.addSubLayouts(\"wx heavy\");\n"+
+				"  }\n"+
+				"}\n");
+		String[] expected = {"wieghtx","sideways","some","heavy"};
+		int errors = 0;
+		for (Diagnostic<? extends JavaFileObject> diag: diags.getDiagnostics()) {
+			if (diag.getKind() != Diagnostic.Kind.ERROR) continue;
+			++errors;
+			String message = diag.getMessage(null);
+			assertTrue(message,message.startsWith("Bad Gridder constraints: "));
+			assertTrue(message,message.contains(expected[(int)diag.getLineNumber() - 6]));
+		}
+		assertEquals(4,errors);
+	}
+
+	@Test
+	public void testFullBuildStartsOver() throws Exception {
+		File classes = tmp.newFolder("classes");
+		compile(classes,demo("wx 1"));
+		compile(classes,demo("wx 2"));
+		assertEquals(Arrays.asList("wx 2"),new ArrayList<>(readKeys(classes)));
+
+		// An incremental build keeps the earlier constraints.
+		compile(classes,demo("wx 3"),ConstraintCompilerPlugin.INCREMENTAL);
+		assertEquals(new HashSet<>(Arrays.asList("wx 2","wx 3")),readKeys(classes));
+	}
+
+	// A class that adds a component with constant constraints.
+	private static String demo(String constraints) {
+		return "import net.kneuro.layout.Gridder;\n"+
+				"import javax.swing.*;\n"+
+				"class Demo {\n"+
+				"  void build(JPanel pnl) {\n"+
+				"    new Gridder(pnl).add(new JLabel(),0,0,\""+constraints+"\");\n"+
+				"  }\n"+
+				"}\n";
+	}
+
+	// The cache keys of the constraints saved in classes, apart from
+	// the Gridder constructor's empty list.
+	private static Set<Object> readKeys(File classes) throws Exception {
+		Set<Object> keys = new LinkedHashSet<>();
+		try (InputStream in = new FileInputStream(new File(classes,PrecompiledConstraints.RESOURCE))) {
+			for (Object[] args: PrecompiledConstraints.read(in).keySet()) {
+				keys.add(ConstraintCache.keyFor(args));
+			}
+		}
+		keys.remove(ConstraintCache.keyFor(new Object[0]));
+		return keys;
+	}
+
+	// Compile one class with the plugin, writing its output to classes.
+	private static DiagnosticCollector<JavaFileObject> compile(File classes,String source,String... options) {
+		JavaCompiler javac = ToolProvider.getSystemJavaCompiler();
+		Assume.assumeNotNull(javac);
+		DiagnosticCollector<JavaFileObject> diags = new DiagnosticCollector<>();
+		JavaFileObject file = new SimpleJavaFileObject(URI.create("string:///Demo.java"),JavaFileObject.Kind.SOURCE) {
+			@Override
+			public CharSequence getCharContent(boolean ignoreEncodingErrors) {
+				return source;
+			}
+		};
+		JavacTask task = (JavacTask)javac.getTask(null,null,diags,
+				Arrays.asList("-classpath",System.getProperty("java.class.path"),"-d",classes.getPath()),
+				null,Arrays.asList(file));
+		String[] args = new String[options.length + 1];
+		args[0] = classes.getPath();
+		System.arraycopy(options,0,args,1,options.length);
+		new ConstraintCompilerPlugin().init(task,args);
+		task.call();
+		return diags;
+	}
+}
@@ -403,13 +403,61 @@ public class TestConstraintParser {
 	}
 
 	@Test
-	public void testParseConstraintsFromIdentifier() {
+	public void testBadValueMessages() {
+		try {
+			ConstraintParser.toAnchorValue("up");
+			fail();
+		} catch (RuntimeException ex) {
+			assertEquals("Unknown anchor value {up}",ex.getMessage());
+		}
+		try {
+			ConstraintParser.toFillValue("some");
+			fail();
+		} catch (RuntimeException ex) {
+			assertEquals("Unknown fill value {some}",ex.getMessage());
+		}
+		try {
+			ConstraintParser.toInt("ipadx","1.5");
+			fail();
+		} catch (RuntimeException ex) {
+			assertEquals("Bad int constraint value {1.5} for constraint ipadx",ex.getMessage());
+		}
+		try {
+			ConstraintParser.toDouble("wx","heavy");
+			fail();
+		} catch (RuntimeException ex) {
+			assertEquals("Bad float constraint value {heavy} for constraint wx",ex.getMessage());
+		}
+	}
+
+	@Test
+	public void testSymbolicValuesDoNotThrow() {
+		// A thrown and caught exception would show up as allocation.
+		com.sun.management.ThreadMXBean threads = TestConstraintScanner.getThreadMXBean();
+		int sum = 0;
+		for (int ii=0; ii<20000; ++ii) {
+			sum += ConstraintParser.toAnchorValue("nw") + ConstraintParser.toFillValue("xy");
+		}
+		final int calls = 20000;
+		long tid = Thread.currentThread().getId();
+		long before = threads.getThreadAllocatedBytes(tid);
+		for (int ii=0; ii<calls; ++ii) {
+			sum += ConstraintParser.toAnchorValue("nw") + ConstraintParser.toFillValue("xy");
+			sum += ConstraintParser.toInt("px","12") + (int)ConstraintParser.toDouble("wx","0.5");
+		}
+		long after = threads.getThreadAllocatedBytes(tid);
+		assertEquals("bytes allocated per call",0,(after - before) / calls);
+		assertTrue(sum > 0);
+	}
+
+	@Test
+	public void testCompileEmbedded() {
 		String layoutId = "comp:wd2,gridheight3,wx2.0,weighty1,fxy,ac,i*4,px3,py4";
-		String constraints = ConstraintParser.parseConstraintsFromIdentifier(layoutId);
-		assertEquals("wd 2 gridheight 3 wx 2.0 weighty 1 f xy a c i* 4 px 3 py 4",constraints);
-		
+		ConstraintSpec spec = ConstraintScanner.compileEmbedded(layoutId,layoutId.indexOf(':') + 1,layoutId.length());
+		assertEquals(ConstraintParser.compile("wd 2 gridheight 3 wx 2.0 weighty 1 f xy a c i* 4 px 3 py 4"),spec);
+
 		GridBagConstraints gbc = new GridBagConstraints(0, 0, 0, 0, 0.0, 0.0, 0, 0, new Insets(0,0,0,0), 0, 0);
-		ConstraintParser.parseConstraints(gbc,constraints);
+		spec.applyTo(gbc);
 		assertEquals(2,gbc.gridwidth);
 		assertEquals(3,gbc.gridheight);
 		assertEquals(2.0,gbc.weightx,0.001);
@@ -425,155 +473,16 @@ public class TestConstraintParser {
 	}
 
 	@Test
-	public void testGetConstraintNameAndValue() {
-		String[] cval;
-		cval = ConstraintParser.getConstraintNameAndValue("gridwidth2");
-		assertEquals(cval[0],"gridwidth");
-		assertEquals(cval[1],"2");
-		
-		cval = ConstraintParser.getConstraintNameAndValue("width42");
-		assertEquals(cval[0],"width");
-		assertEquals(cval[1],"42");
-		
-		cval = ConstraintParser.getConstraintNameAndValue("wd42");
-		assertEquals(cval[0],"wd");
-		assertEquals(cval[1],"42");
-		
-		cval = ConstraintParser.getConstraintNameAndValue("gridheight42");
-		assertEquals(cval[0],"gridheight");
-		assertEquals(cval[1],"42");
-		
-		cval = ConstraintParser.getConstraintNameAndValue("height42");
-		assertEquals(cval[0],"height");
-		assertEquals(cval[1],"42");
-		
-		cval = ConstraintParser.getConstraintNameAndValue("ht42");
-		assertEquals(cval[0],"ht");
-		assertEquals(cval[1],"42");
-		
-		cval = ConstraintParser.getConstraintNameAndValue("weightx42");
-		assertEquals(cval[0],"weightx");
-		assertEquals(cval[1],"42");
-		
-		cval = ConstraintParser.getConstraintNameAndValue("wx42");
-		assertEquals(cval[0],"wx");
-		assertEquals(cval[1],"42");
-		
-		cval = ConstraintParser.getConstraintNameAndValue("weighty42");
-		assertEquals(cval[0],"weighty");
-		assertEquals(cval[1],"42");
-		
-		cval = ConstraintParser.getConstraintNameAndValue("wy42");
-		assertEquals(cval[0],"wy");
-		assertEquals(cval[1],"42");
-		
-		cval = ConstraintParser.getConstraintNameAndValue("w*42");
-		assertEquals(cval[0],"w*");
-		assertEquals(cval[1],"42");
-		
-		cval = ConstraintParser.getConstraintNameAndValue("weight*42");
-		assertEquals(cval[0],"weight*");
-		assertEquals(cval[1],"42");
-		
-		cval = ConstraintParser.getConstraintNameAndValue("anchor42");
-		assertEquals(cval[0],"anchor");
-		assertEquals(cval[1],"42");
-		
-		cval = ConstraintParser.getConstraintNameAndValue("a42");
-		assertEquals(cval[0],"a");
-		assertEquals(cval[1],"42");
-		
-		cval = ConstraintParser.getConstraintNameAndValue("fill42");
-		assertEquals(cval[0],"fill");
-		assertEquals(cval[1],"42");
-		
-		cval = ConstraintParser.getConstraintNameAndValue("f42");
-		assertEquals(cval[0],"f");
-		assertEquals(cval[1],"42");
-		
-		cval = ConstraintParser.getConstraintNameAndValue("ipadx42");
-		assertEquals(cval[0],"ipadx");
-		assertEquals(cval[1],"42");
-		
-		cval = ConstraintParser.getConstraintNameAndValue("px42");
-		assertEquals(cval[0],"px");
-		assertEquals(cval[1],"42");
-		
-		cval = ConstraintParser.getConstraintNameAndValue("ipady42");
-		assertEquals(cval[0],"ipady");
-		assertEquals(cval[1],"42");
-		
-		cval = ConstraintParser.getConstraintNameAndValue("py42");
-		assertEquals(cval[0],"py");
-		assertEquals(cval[1],"42");
-		
-		cval = ConstraintParser.getConstraintNameAndValue("ipad*42");
-		assertEquals(cval[0],"ipad*");
-		assertEquals(cval[1],"42");
-		
-		cval = ConstraintParser.getConstraintNameAndValue("p*42");
-		assertEquals(cval[0],"p*");
-		assertEquals(cval[1],"42");
-		
-		cval = ConstraintParser.getConstraintNameAndValue("inset_top42");
-		assertEquals(cval[0],"inset_top");
-		assertEquals(cval[1],"42");
-		
-		cval = ConstraintParser.getConstraintNameAndValue("insets_top42");
-		assertEquals(cval[0],"insets_top");
-		assertEquals(cval[1],"42");
-		
-		cval = ConstraintParser.getConstraintNameAndValue("it42");
-		assertEquals(cval[0],"it");
-		assertEquals(cval[1],"42");
-		
-		cval = ConstraintParser.getConstraintNameAndValue("inset_bottom42");
-		assertEquals(cval[0],"inset_bottom");
-		assertEquals(cval[1],"42");
-		
-		cval = ConstraintParser.getConstraintNameAndValue("insets_bottom42");
-		assertEquals(cval[0],"insets_bottom");
-		assertEquals(cval[1],"42");
-		
-		cval = ConstraintParser.getConstraintNameAndValue("ib42");
-		assertEquals(cval[0],"ib");
-		assertEquals(cval[1],"42");
-		
-		cval = ConstraintParser.getConstraintNameAndValue("inset_left42");
-		assertEquals(cval[0],"inset_left");
-		assertEquals(cval[1],"42");
-		
-		cval = ConstraintParser.getConstraintNameAndValue("insets_left42");
-		assertEquals(cval[0],"insets_left");
-		assertEquals(cval[1],"42");
-		
-		cval = ConstraintParser.getConstraintNameAndValue("il42");
-		assertEquals(cval[0],"il");
-		assertEquals(cval[1],"42");
-		
-		cval = ConstraintParser.getConstraintNameAndValue("inset_right42");
-		assertEquals(cval[0],"inset_right");
-		assertEquals(cval[1],"42");
-		
-		cval = ConstraintParser.getConstraintNameAndValue("insets_right42");
-		assertEquals(cval[0],"insets_right");
-		assertEquals(cval[1],"42");
-		
-		cval = ConstraintParser.getConstraintNameAndValue("ir42");
-		assertEquals(cval[0],"ir");
-		assertEquals(cval[1],"42");
-		
-		cval = ConstraintParser.getConstraintNameAndValue("insets*42");
-		assertEquals(cval[0],"insets*");
-		assertEquals(cval[1],"42");
-		
-		cval = ConstraintParser.getConstraintNameAndValue("inset*42");
-		assertEquals(cval[0],"inset*");
-		assertEquals(cval[1],"42");
-		
-		cval = ConstraintParser.getConstraintNameAndValue("i*42");
-		assertEquals(cval[0],"i*");
-		assertEquals(cval[1],"42");
+	public void testCompileEmbeddedAliases() {
+		// Each constraint name runs straight into its value, as in "wd42".
+		String[] names = {"gridwidth","width","wd","gridheight","height","ht","weightx","wx",
+				"weighty","wy","w*","weight*","anchor","a","fill","f","ipadx","px","ipady","py",
+				"ipad*","p*","inset_top","insets_top","it","inset_bottom","insets_bottom","ib",
+				"inset_left","insets_left","il","inset_right","insets_right","ir","insets*",
+				"inset*","i*"};
+		for (String name: names) {
+			String item = name+"42";
+			assertEquals(item,ConstraintParser.compile(name+" 42"),ConstraintScanner.compileEmbedded(item,0,item.length()));
+		}
 	}
-
 }
@@ -0,0 +1,153 @@
+/**
+ * Copyright (c) 2018 Joseph A Knapka
+ *
+ * This code is released under the terms of the MIT License.
+ */
+package net.kneuro.layout;
+
+import static org.junit.Assert.*;
+
+import org.junit.Assume;
+import org.junit.Test;
+
+import java.awt.GridBagConstraints;
+import java.awt.Insets;
+import java.lang.management.ManagementFactory;
+
+/**
+ * Tests for the ConstraintScanner class.
+ *
+ * @author jk
+ */
+public class TestConstraintScanner {
+
+	@Test
+	public void testScan() {
+		GridBagConstraints gbc = new GridBagConstraints(0, 0, 1, 1, 0.0, 0.0, 0, 0, new Insets(0,0,0,0), 0, 0);
+		ConstraintScanner.scan("  ANCHOR nw\tweightx 1.5  fill XY i* 3 it -2 ",gbc);
+		assertEquals(GridBagConstraints.NORTHWEST,gbc.anchor);
+		assertEquals(1.5,gbc.weightx,0.0);
+		assertEquals(GridBagConstraints.BOTH,gbc.fill);
+		assertEquals(-2,gbc.insets.top);
+		assertEquals(3,gbc.insets.bottom);
+		assertEquals(3,gbc.insets.left);
+		assertEquals(3,gbc.insets.right);
+	}
+
+	@Test
+	public void testScanSubSequence() {
+		// The scanner works on any CharSequence, not just Strings.
+		StringBuilder sb = new StringBuilder("wx 2 fill y");
+		ConstraintSpec.Builder builder = new ConstraintSpec.Builder();
+		ConstraintScanner.scan(sb,builder);
+		assertEquals(ConstraintParser.compile("weightx 2.0 fill vertical"),builder.build());
+	}
+
+	@Test
+	public void testCompileAcrossArguments() {
+		ConstraintSpec spec = ConstraintScanner.compile(new Object[] {"anchor","e","wy",0.25,null,"ipadx 3 ipady",4});
+		assertEquals(ConstraintParser.compile("anchor east weighty 0.25 ipadx 3 ipady 4"),spec);
+	}
+
+	@Test
+	public void testNumberWeights() {
+		// A float weight means what it prints as, not its exact binary value.
+		assertEquals(ConstraintParser.compile("wx 0.1 wy 0.3"),ConstraintScanner.compile(new Object[] {"wx",0.1f,"wy",0.3f}));
+		for (Object bad: new Object[] {Double.NaN,Double.POSITIVE_INFINITY,Float.NEGATIVE_INFINITY,"NaN","Infinity"}) {
+			try {
+				ConstraintScanner.compile(new Object[] {"wx",bad});
+				fail("Expected an exception for "+bad);
+			} catch (RuntimeException ex) {
+				assertEquals("Bad float constraint value {"+bad.toString().toLowerCase()+"} for constraint wx",ex.getMessage());
+			}
+		}
+	}
+
+	@Test
+	public void testSeparators() {
+		assertEquals(ConstraintParser.compile("fill x ipadx 2"),
+				ConstraintScanner.compile(new Object[] {"\u001cfill\tx\u000B","ipadx\r\n2\u001f"}));
+		// Other control characters are part of a token.
+		try {
+			ConstraintScanner.compile(new Object[] {"fill\u001cx"});
+			fail("Expected an exception");
+		} catch (RuntimeException ex) {
+			assertEquals("Odd number of constraint tokens in {fill\u001cx}",ex.getMessage());
+		}
+		assertError("Unknown fill value {x\u2003ipadx}","fill x\u2003ipadx 2");
+	}
+
+	@Test
+	public void testParseInt() {
+		assertEquals(42,ConstraintScanner.parseInt("x42x",1,3));
+		assertEquals(-7,ConstraintScanner.parseInt("-7",0,2));
+		assertEquals(7,ConstraintScanner.parseInt("+7",0,2));
+		assertEquals(Integer.MIN_VALUE,ConstraintScanner.parseInt("-2147483648",0,11));
+		assertEquals(ConstraintScanner.NOT_AN_INT,ConstraintScanner.parseInt("2147483648",0,10));
+		assertEquals(ConstraintScanner.NOT_AN_INT,ConstraintScanner.parseInt("1.0",0,3));
+		assertEquals(ConstraintScanner.NOT_AN_INT,ConstraintScanner.parseInt("-",0,1));
+		assertEquals(ConstraintScanner.NOT_AN_INT,ConstraintScanner.parseInt("",0,0));
+	}
+
+	@Test
+	public void testParseDouble() {
+		for (String s: new String[] {"1","1.0","0.5",".5","-0.25","1.2345","3.","1e3","2.5E-2","123456789012345678"}) {
+			assertEquals(s,Double.parseDouble(s),ConstraintScanner.parseDouble(s,0,s.length()),0.0);
+		}
+		assertTrue(Double.isNaN(ConstraintScanner.parseDouble("x",0,1)));
+		assertTrue(Double.isNaN(ConstraintScanner.parseDouble(".",0,1)));
+		assertTrue(Double.isNaN(ConstraintScanner.parseDouble("",0,0)));
+	}
+
+	@Test
+	public void testErrorMessages() {
+		assertError("Unknown constraint: bogus","BOGUS 1");
+		assertError("Bad int constraint value {1.5} for constraint ipadx","ipadx 1.5");
+		assertError("Bad float constraint value {heavy} for constraint wx","wx HEAVY");
+		assertError("Unknown anchor value {up}","anchor up");
+		assertError("Unknown fill value {some}","fill some");
+		assertError("Odd number of constraint tokens in {wx 1 fill}","wx 1 fill");
+	}
+
+	@Test
+	public void testScanAllocatesNothing() {
+		com.sun.management.ThreadMXBean threads = getThreadMXBean();
+		GridBagConstraints gbc = new GridBagConstraints();
+		String[] inputs = {
+				"anchor nw weightx 1 fill xy",
+				"anchor e i* 5 wx 0",
+				"fill x wx 1.5 gridwidth 2"
+		};
+		// Let the JIT settle before measuring.
+		for (int ii=0; ii<20000; ++ii) {
+			ConstraintScanner.scan(inputs[ii % inputs.length],gbc);
+		}
+		final int calls = 30000;
+		long tid = Thread.currentThread().getId();
+		long before = threads.getThreadAllocatedBytes(tid);
+		for (int ii=0; ii<calls; ++ii) {
+			ConstraintScanner.scan(inputs[ii % inputs.length],gbc);
+		}
+		long after = threads.getThreadAllocatedBytes(tid);
+		assertEquals("bytes allocated per call",0,(after - before) / calls);
+		assertEquals(GridBagConstraints.HORIZONTAL,gbc.fill);
+	}
+
+	// Get the HotSpot thread bean, skipping the test on other JVMs.
+	static com.sun.management.ThreadMXBean getThreadMXBean() {
+		Assume.assumeTrue(ManagementFactory.getThreadMXBean() instanceof com.sun.management.ThreadMXBean);
+		com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean)ManagementFactory.getThreadMXBean();
+		Assume.assumeTrue(threads.isThreadAllocatedMemorySupported());
+		threads.setThreadAllocatedMemoryEnabled(true);
+		return threads;
+	}
+
+	private static void assertError(String message,String constraints) {
+		try {
+			ConstraintScanner.scan(constraints,new GridBagConstraints());
+			fail("Expected an exception for {"+constraints+"}");
+		} catch (RuntimeException ex) {
+			assertEquals(message,ex.getMessage());
+		}
+	}
+}
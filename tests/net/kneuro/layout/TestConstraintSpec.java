@@ -0,0 +1,112 @@
+/**
+ * Copyright (c) 2018 Joseph A Knapka
+ *
+ * This code is released under the terms of the MIT License.
+ */
+package net.kneuro.layout;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+import java.awt.GridBagConstraints;
+import java.awt.Insets;
+
+/**
+ * Tests for the ConstraintSpec and ConstraintCache classes.
+ *
+ * @author jk
+ */
+public class TestConstraintSpec {
+
+	@Test
+	public void testCompileAndApply() {
+		ConstraintSpec spec = ConstraintParser.compile("i* 5 it 3","wx",2.0,"anchor nw fill xy");
+		assertEquals(7,spec.size());
+		GridBagConstraints gbc = new GridBagConstraints(0, 0, 1, 1, 0.0, 0.0, 0, 0, new Insets(0,0,0,0), 0, 0);
+		spec.applyTo(gbc);
+		assertEquals(3,gbc.insets.top);
+		assertEquals(5,gbc.insets.bottom);
+		assertEquals(5,gbc.insets.left);
+		assertEquals(5,gbc.insets.right);
+		assertEquals(2.0,gbc.weightx,0.001);
+		assertEquals(0.0,gbc.weighty,0.001);
+		assertEquals(GridBagConstraints.NORTHWEST,gbc.anchor);
+		assertEquals(GridBagConstraints.BOTH,gbc.fill);
+		assertEquals(1,gbc.gridwidth);
+	}
+
+	@Test
+	public void testEquality() {
+		assertEquals(ConstraintParser.compile("wx 1 a nw"),ConstraintParser.compile("anchor","NW","weightx",1));
+		assertEquals(ConstraintParser.compile("i* 2").hashCode(),ConstraintParser.compile("it 2 ib 2 il 2 ir 2").hashCode());
+		assertNotEquals(ConstraintParser.compile("wx 1"),ConstraintParser.compile("wy 1"));
+		assertSame(ConstraintSpec.EMPTY,ConstraintParser.compile(""));
+	}
+
+	@Test
+	public void testOverriddenBy() {
+		ConstraintSpec base = ConstraintParser.compile("wx 1 fill x");
+		ConstraintSpec merged = base.overriddenBy(ConstraintParser.compile("fill y ipadx 2"));
+		assertEquals(ConstraintParser.compile("wx 1 fill y ipadx 2"),merged);
+		assertSame(base,base.overriddenBy(ConstraintSpec.EMPTY));
+	}
+
+	@Test
+	public void testIntern() {
+		ConstraintSpec spec = ConstraintParser.compile("wx 1 fill x").intern();
+		assertSame(spec,ConstraintParser.compile("fill","x","weightx",1.0).intern());
+		assertSame(spec,spec.intern());
+		assertSame(ConstraintCache.SHARED.get(new Object[] {"fill x wx 1"}),
+				ConstraintCache.SHARED.get(new Object[] {"wx 1","fill","x"}));
+	}
+
+	@Test
+	public void testCacheHitsAndMisses() {
+		ConstraintCache cache = new ConstraintCache(16);
+		ConstraintSpec first = cache.get(new Object[] {"anchor e i* 5 wx 0"});
+		ConstraintSpec second = cache.get(new Object[] {"anchor e i* 5 wx 0"});
+		assertSame(first,second);
+		assertEquals(1,cache.misses());
+		assertEquals(1,cache.hits());
+
+		cache.get(new Object[] {"anchor","e","weightx",2.0});
+		cache.get(new Object[] {"anchor","e","weightx",2.0});
+		assertEquals(2,cache.misses());
+		assertEquals(2,cache.hits());
+		assertEquals(2,cache.size());
+	}
+
+	@Test
+	public void testCacheEviction() {
+		ConstraintCache cache = new ConstraintCache(4);
+		for (int ii=0; ii<10; ++ii) {
+			cache.get(new Object[] {"ipadx "+ii});
+		}
+		assertEquals(4,cache.size());
+		assertEquals(6,cache.evictions());
+	}
+
+	@Test
+	public void testCacheDoesNotRetainMutableArguments() {
+		ConstraintCache cache = new ConstraintCache(4);
+		StringBuilder sb = new StringBuilder("wx 1");
+		cache.get(new Object[] {sb});
+		sb.setLength(0);
+		sb.append("wx 2");
+		GridBagConstraints gbc = new GridBagConstraints();
+		cache.get(new Object[] {sb}).applyTo(gbc);
+		assertEquals(2.0,gbc.weightx,0.001);
+		assertEquals(0,cache.size());
+	}
+
+	@Test(expected=RuntimeException.class)
+	public void testBadConstraintIsNotCached() {
+		ConstraintCache cache = new ConstraintCache(4);
+		try {
+			cache.get(new Object[] {"bogus 1"});
+		} finally {
+			assertEquals(0,cache.size());
+		}
+	}
+}
@@ -0,0 +1,121 @@
+/**
+ * Copyright (c) 2018 Joseph A Knapka
+ *
+ * This code is released under the terms of the MIT License.
+ */
+package net.kneuro.layout;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+import java.awt.GridBagConstraints;
+
+import javax.swing.JLabel;
+import javax.swing.JPanel;
+
+/**
+ * Tests for the ConstraintStyles class.
+ *
+ * @author jk
+ */
+public class TestConstraintStyles {
+
+	@Test
+	public void testStylesInConstraintStrings() {
+		ConstraintStyles.define("tcs_label","anchor e i* 5 wx 0");
+		assertEquals(ConstraintParser.compile("anchor e i* 5 wx 0"),ConstraintParser.compile("@tcs_label"));
+		assertEquals(ConstraintParser.compile("anchor e i* 5 wx 2"),ConstraintParser.compile("@tcs_label wx 2"));
+		assertEquals(ConstraintParser.compile("anchor e i* 5 wx 0"),ConstraintParser.compile("wx 2 @tcs_label"));
+		assertEquals(ConstraintParser.compile("anchor e i* 5 wx 0 fill x"),
+				ConstraintParser.compile("fill","x","@tcs_label"));
+
+		GridBagConstraints gbc = new GridBagConstraints();
+		ConstraintParser.parseStringConstraints("ipadx 3 @tcs_label",gbc);
+		assertEquals(GridBagConstraints.EAST,gbc.anchor);
+		assertEquals(5,gbc.insets.bottom);
+		assertEquals(3,gbc.ipadx);
+	}
+
+	@Test
+	public void testStylesFromVarargsAndLayouts() {
+		ConstraintStyles.define("tcsField",Cons.fill(GridBagConstraints.HORIZONTAL).weightx(1));
+		ConstraintStyles.define("tcsWide","@tcsField","gridwidth",2);
+		JPanel pnl = new JPanel();
+		Gridder gr = new Gridder(pnl);
+		JLabel byString = new JLabel();
+		JLabel byObject = new JLabel();
+		gr.add(byString,0,0,"@tcsWide");
+		gr.add(byObject,1,0,ConstraintStyles.get("tcsField").weightx(3));
+		GridBagConstraints gbc = TestGridder.constraintsOf(pnl,byString);
+		assertEquals(GridBagConstraints.HORIZONTAL,gbc.fill);
+		assertEquals(2,gbc.gridwidth);
+		gbc = TestGridder.constraintsOf(pnl,byObject);
+		assertEquals(GridBagConstraints.HORIZONTAL,gbc.fill);
+		assertEquals(3.0,gbc.weightx,0.0);
+
+		pnl = new JPanel();
+		gr = new Gridder(pnl);
+		gr.parseLayout("{c1:@tcsField,wy2 c2:an,@tcsField}");
+		JLabel c1 = new JLabel();
+		JLabel c2 = new JLabel();
+		gr.add("c1",c1);
+		gr.add("c2",c2);
+		gbc = TestGridder.constraintsOf(pnl,c1);
+		assertEquals(GridBagConstraints.HORIZONTAL,gbc.fill);
+		assertEquals(2.0,gbc.weighty,0.0);
+		gbc = TestGridder.constraintsOf(pnl,c2);
+		assertEquals(GridBagConstraints.HORIZONTAL,gbc.fill);
+		assertEquals(GridBagConstraints.NORTH,gbc.anchor);
+	}
+
+	@Test
+	public void testRedefinitionReplacesCachedConstraints() {
+		ConstraintStyles.define("tcsChanging","wx 1");
+		assertEquals(1.0,wxOf(ConstraintCache.SHARED.get(new Object[] {"@tcsChanging"})),0.0);
+		ConstraintStyles.define("tcsChanging","wx 2");
+		assertEquals(2.0,wxOf(ConstraintCache.SHARED.get(new Object[] {"@tcsChanging"})),0.0);
+
+		// Cached layouts are compiled again too.
+		assertEquals(2.0,wxOf(CompiledLayout.of("{c1:@tcsChanging}").getComponent("c1").constraints),0.0);
+		ConstraintStyles.define("tcsChanging","wx 7");
+		assertEquals(7.0,wxOf(CompiledLayout.of("{c1:@tcsChanging}").getComponent("c1").constraints),0.0);
+	}
+
+	@Test
+	public void testErrors() {
+		assertMessage("Unknown constraint style: tcsUndefined","@tcsUndefined wx 1");
+		try {
+			ConstraintStyles.define("bad,name","wx 1");
+			fail("Expected an exception");
+		} catch (IllegalArgumentException ex) {
+			// Expected.
+		}
+		assertFalse(ConstraintStyles.isDefined("bad,name"));
+		// Names that a layout could not refer to.
+		for (String name: new String[] {"a[b","a]b","row#"}) {
+			try {
+				ConstraintStyles.define(name,"wx 1");
+				fail("Expected an exception for "+name);
+			} catch (IllegalArgumentException ex) {
+				assertTrue(ex.getMessage(),ex.getMessage().startsWith("Bad character"));
+			}
+			assertFalse(ConstraintStyles.isDefined(name));
+		}
+	}
+
+	private static double wxOf(ConstraintSpec spec) {
+		GridBagConstraints gbc = new GridBagConstraints();
+		spec.applyTo(gbc);
+		return gbc.weightx;
+	}
+
+	private static void assertMessage(String message,String constraints) {
+		try {
+			ConstraintParser.compile(constraints);
+			fail("Expected an exception for {"+constraints+"}");
+		} catch (RuntimeException ex) {
+			assertEquals(message,ex.getMessage());
+		}
+	}
+}
@@ -0,0 +1,79 @@
+/**
+ * Copyright (c) 2018 Joseph A Knapka
+ *
+ * This code is released under the terms of the MIT License.
+ */
+package net.kneuro.layout;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+import java.awt.GridBagConstraints;
+
+/**
+ * Tests for the Constraints and Cons classes.
+ *
+ * @author jk
+ */
+public class TestConstraints {
+
+	@Test
+	public void testFluentBuilder() {
+		Constraints cons = Cons.anchor(GridBagConstraints.WEST).weightx(1).fill(GridBagConstraints.BOTH).insets(5);
+		GridBagConstraints gbc = new GridBagConstraints();
+		cons.spec().applyTo(gbc);
+		assertEquals(GridBagConstraints.WEST,gbc.anchor);
+		assertEquals(1.0,gbc.weightx,0.0);
+		assertEquals(GridBagConstraints.BOTH,gbc.fill);
+		assertEquals(5,gbc.insets.top);
+		assertEquals(5,gbc.insets.left);
+		assertEquals(5,gbc.insets.bottom);
+		assertEquals(5,gbc.insets.right);
+		assertEquals(ConstraintParser.compile("anchor w wx 1 fill both i* 5"),cons.spec());
+	}
+
+	@Test
+	public void testImmutable() {
+		Constraints base = Cons.weight(2);
+		Constraints derived = base.ipad(3).insetTop(1);
+		assertEquals(ConstraintParser.compile("w* 2"),base.spec());
+		assertEquals(ConstraintParser.compile("w* 2 p* 3 it 1"),derived.spec());
+		assertEquals(Constraints.NONE.weightx(2).weighty(2),base);
+		assertSame(ConstraintSpec.EMPTY,Constraints.NONE.spec());
+	}
+
+	@Test
+	public void testAnd() {
+		Constraints merged = Cons.fill(GridBagConstraints.HORIZONTAL).weightx(1)
+				.and(Cons.fill(GridBagConstraints.VERTICAL));
+		assertEquals(ConstraintParser.compile("fill v wx 1"),merged.spec());
+	}
+
+	@Test
+	public void testToStringIsParseable() {
+		Constraints cons = Cons.gridwidth(2).gridheight(3).weighty(0.5).anchor(GridBagConstraints.NORTH)
+				.ipadx(1).ipady(2).insets(1,2,3,4);
+		assertEquals(cons.spec(),ConstraintParser.compile(cons.toString()));
+	}
+
+	@Test
+	public void testMixedWithStrings() {
+		Constraints cons = Cons.anchor(GridBagConstraints.EAST);
+		ConstraintSpec spec = ConstraintScanner.compile(new Object[] {"wx 1",cons,"fill","x"});
+		assertEquals(ConstraintParser.compile("wx 1 anchor e fill x"),spec);
+		spec = ConstraintScanner.compile(new Object[] {cons,"anchor w"});
+		assertEquals(ConstraintParser.compile("anchor w"),spec);
+	}
+
+	@Test
+	public void testTypedNumbersAreNotStringified() {
+		ConstraintSpec spec = ConstraintScanner.compile(new Object[] {"anchor",GridBagConstraints.WEST,"wx",2.5,"px",3L});
+		assertEquals(ConstraintParser.compile("anchor west weightx 2.5 ipadx 3"),spec);
+	}
+
+	@Test(expected=RuntimeException.class)
+	public void testDoubleForIntConstraintIsRejected() {
+		ConstraintScanner.compile(new Object[] {"px",3.5});
+	}
+}
@@ -0,0 +1,555 @@
+/**
+ * Copyright (c) 2018 Joseph A Knapka
+ *
+ * This code is released under the terms of the MIT License.
+ */
+package net.kneuro.layout;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+import java.awt.Component;
+import java.awt.GridBagConstraints;
+import java.awt.GridBagLayout;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import javax.swing.JLabel;
+import javax.swing.JPanel;
+import javax.swing.JTextField;
+
+/**
+ * Tests for the Gridder class.
+ *
+ * @author jk
+ */
+public class TestGridder {
+
+	static final String LAYOUT =
+			 "    {c1                 +   +     c2}    "+
+			 "    {c3:wx1,wy2,i*5,fxy +   c4    + }    "+
+			 "    {|                  -   -     c5}    "+
+			 "    {|                  -   c6    + }    ";
+
+	@Test
+	public void testAddWithStringConstraints() {
+		JPanel pnl = new JPanel();
+		Gridder gr = new Gridder(pnl,"insets* 2");
+		JLabel lbl = new JLabel();
+		gr.add(lbl,1,2,"anchor","e","weightx",1.5,"gridwidth 2");
+		GridBagConstraints gbc = constraintsOf(pnl,lbl);
+		assertEquals(2,gbc.gridx);
+		assertEquals(1,gbc.gridy);
+		assertEquals(2,gbc.gridwidth);
+		assertEquals(GridBagConstraints.EAST,gbc.anchor);
+		assertEquals(1.5,gbc.weightx,0.0);
+		assertEquals(2,gbc.insets.left);
+	}
+
+	@Test
+	public void testAddWithTypedConstraints() {
+		JPanel pnl = new JPanel();
+		Gridder gr = new Gridder(pnl,Cons.insets(2));
+		gr.updateConstraints(Cons.weighty(1));
+		JLabel lbl = new JLabel();
+		gr.add(lbl,1,2,Cons.anchor(GridBagConstraints.EAST).weightx(1.5).gridwidth(2));
+		GridBagConstraints gbc = constraintsOf(pnl,lbl);
+		assertEquals(2,gbc.gridx);
+		assertEquals(1,gbc.gridy);
+		assertEquals(2,gbc.gridwidth);
+		assertEquals(GridBagConstraints.EAST,gbc.anchor);
+		assertEquals(1.5,gbc.weightx,0.0);
+		assertEquals(1.0,gbc.weighty,0.0);
+		assertEquals(2,gbc.insets.left);
+	}
+
+	@Test
+	public void testAddByName() {
+		JPanel pnl = new JPanel();
+		Gridder gr = new Gridder(pnl,"anchor w");
+		gr.parseLayout(LAYOUT);
+		JLabel c3 = new JLabel();
+		JLabel c4 = new JLabel();
+		gr.add("c3",c3,"wy 3 gridwidth 7");
+		gr.add("c4",c4,Cons.fill(GridBagConstraints.VERTICAL));
+
+		GridBagConstraints gbc = constraintsOf(pnl,c3);
+		assertEquals(0,gbc.gridx);
+		assertEquals(1,gbc.gridy);
+		assertEquals(2,gbc.gridwidth);
+		assertEquals(3,gbc.gridheight);
+		assertEquals(1.0,gbc.weightx,0.0);
+		assertEquals(3.0,gbc.weighty,0.0);
+		assertEquals(5,gbc.insets.top);
+		assertEquals(GridBagConstraints.BOTH,gbc.fill);
+		assertEquals(GridBagConstraints.WEST,gbc.anchor);
+
+		gbc = constraintsOf(pnl,c4);
+		assertEquals(2,gbc.gridx);
+		assertEquals(1,gbc.gridy);
+		assertEquals(2,gbc.gridwidth);
+		assertEquals(1,gbc.gridheight);
+		assertEquals(GridBagConstraints.VERTICAL,gbc.fill);
+	}
+
+	@Test(expected=RuntimeException.class)
+	public void testAddUnknownName() {
+		Gridder gr = new Gridder(new JPanel());
+		gr.parseLayout(LAYOUT);
+		gr.add("c7",new JLabel());
+	}
+
+	@Test
+	public void testSharedCompiledLayout() {
+		CompiledLayout compiled = CompiledLayout.of(LAYOUT);
+		assertSame(compiled,CompiledLayout.of(new String(LAYOUT)));
+		JPanel pnl1 = new JPanel();
+		JPanel pnl2 = new JPanel();
+		Gridder gr1 = new Gridder(pnl1);
+		Gridder gr2 = new Gridder(pnl2,"fill xy");
+		gr1.useLayout(compiled);
+		gr2.parseLayout(LAYOUT);
+		assertSame(gr1.getLayoutParser(),gr2.getLayoutParser());
+		JLabel lbl1 = new JLabel();
+		JLabel lbl2 = new JLabel();
+		gr1.add("c4",lbl1);
+		gr2.add("c4",lbl2,"wx 1");
+		assertEquals(2,constraintsOf(pnl1,lbl1).gridwidth);
+		assertEquals(GridBagConstraints.NONE,constraintsOf(pnl1,lbl1).fill);
+		assertEquals(2,constraintsOf(pnl2,lbl2).gridwidth);
+		assertEquals(GridBagConstraints.BOTH,constraintsOf(pnl2,lbl2).fill);
+		assertEquals(2,compiled.getComponent("c4").getWidth());
+	}
+
+	@Test
+	public void testRepeatedRows() {
+		JPanel pnl = new JPanel();
+		Gridder gr = new Gridder(pnl);
+		gr.parseLayout("{title + +}*500{lbl_#:ae fld_#:fx,wx1 +}");
+		JLabel lbl = new JLabel();
+		JTextField fld = new JTextField();
+		gr.add("lbl_250",lbl);
+		gr.add("fld_250",fld);
+		GridBagConstraints gbc = constraintsOf(pnl,lbl);
+		assertEquals(251,gbc.gridy);
+		assertEquals(0,gbc.gridx);
+		assertEquals(GridBagConstraints.EAST,gbc.anchor);
+		gbc = constraintsOf(pnl,fld);
+		assertEquals(251,gbc.gridy);
+		assertEquals(1,gbc.gridx);
+		assertEquals(2,gbc.gridwidth);
+		assertEquals(GridBagConstraints.HORIZONTAL,gbc.fill);
+	}
+
+	@Test
+	public void testAddAll() {
+		int[] revalidations = new int[1];
+		JPanel pnl = new JPanel() {
+			@Override
+			public void revalidate() {
+				++revalidations[0];
+				super.revalidate();
+			}
+		};
+		Gridder gr = new Gridder(pnl);
+		gr.parseLayout("{a b + }{| c d}*2{e#:fx - f#}");
+		Map<String,Component> byName = new LinkedHashMap<>();
+		for (String name: new String[] { "d", "a", "f1" }) {
+			byName.put(name,new JLabel(name));
+		}
+
+		// A bad name is found before anything is added.
+		int before = revalidations[0];
+		byName.put("g",new JLabel());
+		try {
+			gr.addAll(byName);
+			fail("Expected an exception");
+		} catch (RuntimeException ex) {
+			assertEquals("No component named g in layout string.",ex.getMessage());
+		}
+		assertEquals(0,pnl.getComponentCount());
+		assertEquals(before,revalidations[0]);
+
+		byName.remove("g");
+		gr.addAll(byName,"wy 2");
+		assertEquals(before+1,revalidations[0]);
+		assertSame(byName.get("a"),pnl.getComponent(1));
+		GridBagConstraints gbc = constraintsOf(pnl,byName.get("f1"));
+		assertEquals(3,gbc.gridy);
+		assertEquals(2,gbc.gridx);
+		assertEquals(2.0,gbc.weighty,0.0);
+
+		// Row-major order, with repeated rows expanded.
+		pnl = new JPanel();
+		gr = new Gridder(pnl);
+		gr.parseLayout("{a b + }{| c d}*2{e#:fx - f#}");
+		Component[] comps = new Component[8];
+		for (int ii=0; ii<comps.length; ++ii) {
+			comps[ii] = (ii == 2) ? null : new JLabel();
+		}
+		try {
+			gr.addAll(Arrays.copyOf(comps,7));
+			fail("Expected an exception");
+		} catch (IllegalArgumentException ex) {
+			assertEquals("Expected 8 components for the layout, got 7",ex.getMessage());
+		}
+		gr.addAll(comps);
+		assertEquals(7,pnl.getComponentCount());
+		int[][] cells = { {0,0}, {0,1}, null, {1,2}, {2,0}, {2,2}, {3,0}, {3,2} };
+		for (int ii=0; ii<comps.length; ++ii) {
+			if (comps[ii] != null) {
+				gbc = constraintsOf(pnl,comps[ii]);
+				assertEquals(cells[ii][0],gbc.gridy);
+				assertEquals(cells[ii][1],gbc.gridx);
+			}
+		}
+		assertEquals(GridBagConstraints.HORIZONTAL,constraintsOf(pnl,comps[6]).fill);
+
+		// Components added in a batch are moved by relayout().
+		assertEquals(1,gr.relayout("{a b + }{| d c}*2{e#:fx - f#}"));
+		assertEquals(1,constraintsOf(pnl,comps[3]).gridx);
+	}
+
+	@Test
+	public void testBeginUpdate() {
+		int[] revalidations = new int[1];
+		JPanel pnl = new JPanel() {
+			@Override
+			public void revalidate() {
+				++revalidations[0];
+				super.revalidate();
+			}
+		};
+		pnl.setSize(200,100);
+		Gridder gr = new Gridder(pnl);
+		gr.parseLayout("{a b}{c +}");
+		JLabel a = new JLabel("a");
+		JLabel b = new JLabel("b");
+		JLabel c = new JLabel("c");
+		int before = revalidations[0];
+		try (GridderUpdate outer = gr.beginUpdate()) {
+			try (GridderUpdate inner = gr.beginUpdate()) {
+				assertNotSame(outer,inner);
+				gr.add("a",a);
+				gr.updateConstraints("fill horizontal weightx 1");
+				gr.addAll(Map.of("b",b,"c",c));
+				gr.relayout("{b a}{c +}");
+				// Layouts are skipped while an update is open.
+				pnl.doLayout();
+				assertEquals(0,c.getWidth());
+			}
+			assertEquals(before,revalidations[0]);
+		}
+		assertEquals(before+1,revalidations[0]);
+		pnl.doLayout();
+		assertEquals(200,c.getWidth());
+		assertEquals(0,constraintsOf(pnl,b).gridx);
+
+		// An exception ends the update, and the changes made before it
+		// are laid out.
+		JLabel d = new JLabel("d");
+		GridderUpdate update = gr.beginUpdate();
+		try (GridderUpdate closing = update) {
+			assertSame(update,closing);
+			gr.relayout("{a b}{c +}{d +}");
+			gr.add("d",d);
+			throw new IllegalStateException();
+		} catch (IllegalStateException ex) {
+			// Expected.
+		}
+		assertEquals(before+2,revalidations[0]);
+		update.close();
+		gr.beginUpdate().close();
+		assertEquals(before+2,revalidations[0]);
+		pnl.doLayout();
+		assertEquals(200,d.getWidth());
+	}
+
+	@Test
+	public void testGetReplaceRemove() {
+		JPanel pnl = new JPanel();
+		Gridder gr = new Gridder(pnl,"insets* 2");
+		gr.parseLayout("{name:ae field:fx + }{notes + + }");
+		JLabel name = new JLabel();
+		JTextField field = new JTextField();
+		JTextField notes = new JTextField();
+		gr.add("name",name);
+		gr.add("field",field,"wx 1");
+		gr.add("notes",notes);
+		// Nothing listens to the container, so adds and removes cost
+		// no container events.
+		assertEquals(0,pnl.getContainerListeners().length);
+		assertSame(field,gr.get("field"));
+		assertNull(gr.get("other"));
+
+		// The replacement takes the old component's slot and constraints.
+		JTextField newField = new JTextField();
+		assertSame(field,gr.replace("field",newField));
+		assertNull(field.getParent());
+		assertSame(newField,gr.get("field"));
+		assertSame(newField,pnl.getComponent(1));
+		GridBagConstraints gbc = constraintsOf(pnl,newField);
+		assertEquals(1,gbc.gridx);
+		assertEquals(2,gbc.gridwidth);
+		assertEquals(GridBagConstraints.HORIZONTAL,gbc.fill);
+		assertEquals(1.0,gbc.weightx,0.0);
+		assertEquals(2,gbc.insets.left);
+
+		try {
+			gr.replace("field",name);
+			fail("Expected an exception");
+		} catch (IllegalArgumentException ex) {
+			assertEquals("component is already in the container",ex.getMessage());
+		}
+		try {
+			gr.replace("other",new JLabel());
+			fail("Expected an exception");
+		} catch (RuntimeException ex) {
+			assertEquals("No component has been added as other.",ex.getMessage());
+		}
+
+		assertSame(notes,gr.remove("notes"));
+		assertNull(notes.getParent());
+		assertNull(gr.get("notes"));
+		assertNull(gr.remove("notes"));
+
+		// Components removed by other means are forgotten.
+		pnl.remove(newField);
+		assertNull(gr.get("field"));
+		assertEquals(1,gr.relayout("{name}"));
+		new JPanel().add(name);
+		assertNull(gr.get("name"));
+		assertEquals(0,gr.relayout("{other}"));
+
+		// A component added again by another name is only found by it.
+		gr.parseLayout("{a b}");
+		JLabel lbl = new JLabel();
+		gr.add("a",lbl);
+		gr.add("b",lbl);
+		assertNull(gr.get("a"));
+		assertSame(lbl,gr.get("b"));
+		assertEquals(1,constraintsOf(pnl,lbl).gridx);
+		assertEquals(1,gr.relayout("{b}"));
+	}
+
+	@Test
+	public void testContainerSerializes() throws Exception {
+		JPanel pnl = new JPanel();
+		Gridder gr = new Gridder(pnl);
+		gr.parseLayout("{a b}");
+		gr.add("a",new JLabel("a"));
+		try (GridderUpdate update = gr.beginUpdate()) {
+			assertNotNull(update);
+			gr.add("b",new JLabel("b"));
+		}
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+			out.writeObject(pnl);
+		}
+		JPanel copy;
+		try (ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(bytes.toByteArray()))) {
+			copy = (JPanel)in.readObject();
+		}
+		assertEquals(2,copy.getComponentCount());
+		assertEquals(1,constraintsOf(copy,copy.getComponent(1)).gridx);
+	}
+
+	@Test
+	public void testRelayout() {
+		JPanel pnl = new JPanel();
+		Gridder gr = new Gridder(pnl,"insets* 2");
+		gr.parseLayout("{name:ae field:fx + }{notes + + }");
+		JLabel name = new JLabel();
+		JTextField field = new JTextField();
+		JTextField notes = new JTextField();
+		JLabel other = new JLabel();
+		gr.add("name",name);
+		gr.add("field",field,"wx 1");
+		gr.add("notes",notes);
+		gr.add(other,5,0);
+
+		// Only the moved and changed components are updated.
+		assertEquals(1,gr.relayout("{name:ae field:fx + }{notes:fxy + - }{ - - extra}"));
+		GridBagConstraints gbc = constraintsOf(pnl,notes);
+		assertEquals(2,gbc.gridwidth);
+		assertEquals(GridBagConstraints.BOTH,gbc.fill);
+		assertEquals(2,gbc.insets.left);
+		gbc = constraintsOf(pnl,field);
+		assertEquals(1.0,gbc.weightx,0.0);
+		assertEquals(0,gr.relayout(new StringBuilder("{name:ae field:fx + }{notes:fxy + - }")));
+
+		assertEquals(1,gr.relayout("{name:ae - field:fx}{notes:fxy + - }"));
+		gbc = constraintsOf(pnl,field);
+		assertEquals(2,gbc.gridx);
+		assertEquals(1,gbc.gridwidth);
+		assertEquals(1.0,gbc.weightx,0.0);
+		assertEquals(5,constraintsOf(pnl,other).gridy);
+
+		// A layout missing an added component changes nothing.
+		try {
+			gr.relayout("{name field:fx}");
+			fail("Expected an exception");
+		} catch (RuntimeException ex) {
+			assertEquals("No component named notes in layout string.",ex.getMessage());
+		}
+		assertEquals(2,constraintsOf(pnl,field).gridx);
+		assertEquals(GridBagConstraints.EAST,constraintsOf(pnl,name).anchor);
+
+		// Removed components are forgotten.
+		pnl.remove(notes);
+		assertEquals(2,gr.relayout("{name field:fx}"));
+	}
+
+	@Test
+	public void testAddSubLayouts() {
+		JPanel pnl = new JPanel();
+		Gridder gr = new Gridder(pnl);
+		gr.parseLayout("{title + }{form:fxy[{nameLbl name:fx}{buttons:ae[{ok cancel}] +}] side}");
+		Map<String,Gridder> subs = gr.addSubLayouts("insets* 3");
+		assertEquals(Arrays.asList("form","buttons"),new ArrayList<>(subs.keySet()));
+		Gridder form = subs.get("form");
+		assertSame(pnl,form.getContainer().getParent());
+		GridBagConstraints gbc = constraintsOf(pnl,(JPanel)form.getContainer());
+		assertEquals(1,gbc.gridy);
+		assertEquals(GridBagConstraints.BOTH,gbc.fill);
+		assertEquals(0,gbc.insets.top);
+		Gridder buttons = subs.get("buttons");
+		assertSame(form.getContainer(),buttons.getContainer().getParent());
+		gbc = constraintsOf((JPanel)form.getContainer(),buttons.getContainer());
+		assertEquals(1,gbc.gridy);
+		assertEquals(2,gbc.gridwidth);
+		assertEquals(GridBagConstraints.EAST,gbc.anchor);
+		assertEquals(3,gbc.insets.top);
+
+		JLabel cancel = new JLabel();
+		buttons.add("cancel",cancel);
+		assertEquals(1,constraintsOf((JPanel)buttons.getContainer(),cancel).gridx);
+		JLabel side = new JLabel();
+		gr.add("side",side);
+		assertEquals(3,pnl.getComponentCount() + form.getContainer().getComponentCount());
+
+		// relayout() reaches into the sub-layouts, and checks them all
+		// before changing anything.
+		JLabel ok = new JLabel();
+		buttons.add("ok",ok);
+		try {
+			gr.relayout("{side + }{form:fxy[{nameLbl name:fx}{buttons:ae[{ok help}] +}] title}");
+			fail("Expected an exception");
+		} catch (RuntimeException ex) {
+			assertEquals("No component named cancel in layout string.",ex.getMessage());
+		}
+		assertEquals(1,constraintsOf(pnl,side).gridx);
+		assertEquals(3,gr.relayout("{side + }{form:fxy[{nameLbl name:fx}{buttons:ae[{cancel ok}] +}] title}"));
+		assertEquals(0,constraintsOf((JPanel)buttons.getContainer(),cancel).gridx);
+		assertEquals(1,constraintsOf((JPanel)buttons.getContainer(),ok).gridx);
+		assertEquals(0,constraintsOf(pnl,side).gridy);
+
+		gr = new Gridder(new JPanel());
+		gr.parseLayout("{a[{x[{y}]}] b[{x[{z}]}]}");
+		try {
+			gr.addSubLayouts();
+			fail("Expected an exception");
+		} catch (RuntimeException ex) {
+			assertEquals("Duplicate sub-layout name x in layout string.",ex.getMessage());
+		}
+		assertEquals(0,gr.getContainer().getComponentCount());
+	}
+
+	@Test
+	public void testCompiledLayoutCacheIsBounded() {
+		for (int ii=0; ii<CompiledLayout.CACHE_CAPACITY+10; ++ii) {
+			CompiledLayout.of("{bounded"+ii+"}");
+		}
+		assertEquals(CompiledLayout.CACHE_CAPACITY,CompiledLayout.cacheSize());
+	}
+
+	@Test
+	public void testReusedConstraintsDoNotLeak() {
+		JPanel pnl = new JPanel();
+		Gridder gr = new Gridder(pnl,"anchor w");
+		JLabel first = new JLabel();
+		JLabel second = new JLabel();
+		gr.add(first,0,0,"fill xy wx 2 i* 4 gridwidth 3");
+		gr.add(second,1,0);
+		GridBagConstraints gbc = constraintsOf(pnl,first);
+		assertEquals(GridBagConstraints.BOTH,gbc.fill);
+		assertEquals(4,gbc.insets.right);
+		gbc = constraintsOf(pnl,second);
+		assertEquals(GridBagConstraints.NONE,gbc.fill);
+		assertEquals(GridBagConstraints.WEST,gbc.anchor);
+		assertEquals(0.0,gbc.weightx,0.0);
+		assertEquals(0,gbc.insets.right);
+		assertEquals(1,gbc.gridwidth);
+		assertEquals(1,gbc.gridy);
+	}
+
+	@Test
+	public void testAddAllocatesLessThanCopyAndParse() {
+		com.sun.management.ThreadMXBean threads = TestConstraintScanner.getThreadMXBean();
+		final int adds = 2000;
+		// Let the JIT settle before measuring.
+		for (int ii=0; ii<10; ++ii) {
+			addAll(new JPanel(),labels(adds),true);
+			addAll(new JPanel(),labels(adds),false);
+		}
+		long viaGridder = 0;
+		long viaCopy = 0;
+		for (int ii=0; ii<5; ++ii) {
+			viaGridder += measure(threads,adds,true);
+			viaCopy += measure(threads,adds,false);
+		}
+		assertTrue("bytes per add: Gridder "+(viaGridder/(5*adds))+", copy and parse "+(viaCopy/(5*adds)),
+				viaGridder < viaCopy);
+	}
+
+	static GridBagConstraints constraintsOf(JPanel pnl,Component comp) {
+		return ((GridBagLayout)pnl.getLayout()).getConstraints(comp);
+	}
+
+	// Measure the bytes allocated by adding components to a fresh panel.
+	private static long measure(com.sun.management.ThreadMXBean threads,int adds,boolean viaGridder) {
+		JPanel pnl = new JPanel();
+		JLabel[] lbls = labels(adds);
+		long tid = Thread.currentThread().getId();
+		long before = threads.getThreadAllocatedBytes(tid);
+		addAll(pnl,lbls,viaGridder);
+		return threads.getThreadAllocatedBytes(tid) - before;
+	}
+
+	// Add components either through a Gridder or by copying and
+	// parsing a GridBagConstraints object for each one.
+	private static void addAll(JPanel pnl,JLabel[] lbls,boolean viaGridder) {
+		if (viaGridder) {
+			Gridder gr = new Gridder(pnl,"insets* 2");
+			for (int ii=0; ii<lbls.length; ++ii) {
+				gr.add(lbls[ii],ii,0,"anchor e wx 1");
+			}
+		} else {
+			GridBagConstraints defaults = new GridBagConstraints();
+			ConstraintParser.parseConstraints(defaults,"insets* 2");
+			pnl.setLayout(new GridBagLayout());
+			for (int ii=0; ii<lbls.length; ++ii) {
+				GridBagConstraints gbc = ConstraintParser.copyGBC(defaults);
+				ConstraintParser.parseStringConstraints("anchor e wx 1",gbc);
+				gbc.gridx = 0;
+				gbc.gridy = ii;
+				pnl.add(lbls[ii],gbc);
+			}
+		}
+	}
+
+	private static JLabel[] labels(int count) {
+		JLabel[] lbls = new JLabel[count];
+		for (int ii=0; ii<count; ++ii) {
+			lbls[ii] = new JLabel();
+		}
+		return lbls;
+	}
+}
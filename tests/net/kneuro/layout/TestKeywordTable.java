@@ -0,0 +1,67 @@
+/**
+ * Copyright (c) 2018 Joseph A Knapka
+ *
+ * This code is released under the terms of the MIT License.
+ */
+package net.kneuro.layout;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+import java.awt.GridBagConstraints;
+
+/**
+ * Tests for the KeywordTable class.
+ *
+ * @author jk
+ */
+public class TestKeywordTable {
+
+	@Test
+	public void testEveryConstraintNameResolves() {
+		for (String name: ConstraintParser.CONSTRAINT_NAMES) {
+			assertNotEquals(name,KeywordTable.NO_MATCH,lookup(KeywordTable.NAME,name));
+			assertNotEquals(name,KeywordTable.NO_MATCH,lookup(KeywordTable.NAME,name.toUpperCase()));
+		}
+		assertEquals(1 << ConstraintSpec.WEIGHTX,lookup(KeywordTable.NAME,"WeightX"));
+		assertEquals(KeywordTable.NO_MATCH,lookup(KeywordTable.NAME,"weight"));
+		assertEquals(KeywordTable.NO_MATCH,lookup(KeywordTable.NAME,"weightxx"));
+		assertEquals(KeywordTable.NO_MATCH,lookup(KeywordTable.NAME,""));
+		assertEquals(KeywordTable.NO_MATCH,lookup(KeywordTable.NAME,"w\u00e9ight"));
+	}
+
+	@Test
+	public void testKindsAreSeparate() {
+		assertEquals(GridBagConstraints.NORTH,lookup(KeywordTable.ANCHOR,"n"));
+		assertEquals(GridBagConstraints.NONE,lookup(KeywordTable.FILL,"N"));
+		assertEquals(KeywordTable.NO_MATCH,lookup(KeywordTable.NAME,"n"));
+		assertEquals(KeywordTable.NO_MATCH,lookup(KeywordTable.FILL,"center"));
+		assertEquals(KeywordTable.NO_MATCH,lookup(KeywordTable.ANCHOR,"anchor"));
+	}
+
+	@Test
+	public void testLongestPrefix() {
+		assertPrefix("weightx","weightx1.5");
+		assertPrefix("wx","wx1");
+		assertPrefix("insets_top","insets_top4");
+		assertPrefix("insets*","insets*4");
+		assertPrefix("inset*","inset*4");
+		assertPrefix("i*","i*4");
+		assertPrefix("a","anw");
+		assertPrefix("fill","fillxy");
+		assertPrefix("FILL","FILLxy");
+		assertEquals(KeywordTable.NONE,KeywordTable.longestPrefix(KeywordTable.NAME,"zz1",0,3));
+	}
+
+	private static int lookup(int kind,String word) {
+		return KeywordTable.lookup(kind,word,0,word.length());
+	}
+
+	private static void assertPrefix(String expectedName,String constraint) {
+		int node = KeywordTable.longestPrefix(KeywordTable.NAME,constraint,0,constraint.length());
+		assertNotEquals(KeywordTable.NONE,node);
+		assertEquals(expectedName,constraint.substring(0,KeywordTable.lengthOf(node)));
+		assertEquals(lookup(KeywordTable.NAME,expectedName),KeywordTable.codeOf(KeywordTable.NAME,node));
+	}
+}
@@ -9,6 +9,13 @@ import static org.junit.Assert.*;
 
 import org.junit.Test;
 
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
 /**
  * A basic test for the LayoutParser class.
  * 
@@ -24,7 +31,7 @@ public class TestLayoutParser {
 				 "    {|                  -   -     c5}    "+
 				 "    {|                  -   c6    + }    ";
 		LayoutParser lp = new LayoutParser(layout);
-		LayoutParser.ComponentPosition cp;
+		LayoutComponent cp;
 		
 		cp = lp.getComponentByName("nobody");
 		assertNull(cp);
@@ -34,42 +41,625 @@ public class TestLayoutParser {
 		assertEquals(0,cp.row);
 		assertEquals(3,cp.width);
 		assertEquals(1,cp.height);
-		assertEquals("",cp.constraints);
+		assertSame(ConstraintSpec.EMPTY,cp.constraints);
 		
 		cp = lp.getComponentByName("c2");
 		assertEquals(3,cp.col);
 		assertEquals(0,cp.row);
 		assertEquals(1,cp.width);
 		assertEquals(1,cp.height);
-		assertEquals("",cp.constraints);
+		assertSame(ConstraintSpec.EMPTY,cp.constraints);
 		
 		cp = lp.getComponentByName("c3");
 		assertEquals(0,cp.col);
 		assertEquals(1,cp.row);
 		assertEquals(2,cp.width);
 		assertEquals(3,cp.height);
-		assertEquals("wx 1 wy 2 i* 5 f xy",cp.constraints);
+		assertEquals(ConstraintParser.compile("wx 1 wy 2 i* 5 f xy"),cp.constraints);
 		
 		cp = lp.getComponentByName("c4");
 		assertEquals(2,cp.col);
 		assertEquals(1,cp.row);
 		assertEquals(2,cp.width);
 		assertEquals(1,cp.height);
-		assertEquals("",cp.constraints);
+		assertSame(ConstraintSpec.EMPTY,cp.constraints);
 		
 		cp = lp.getComponentByName("c5");
 		assertEquals(3,cp.col);
 		assertEquals(2,cp.row);
 		assertEquals(1,cp.width);
 		assertEquals(1,cp.height);
-		assertEquals("",cp.constraints);
+		assertSame(ConstraintSpec.EMPTY,cp.constraints);
 		
 		cp = lp.getComponentByName("c6");
 		assertEquals(2,cp.col);
 		assertEquals(3,cp.row);
 		assertEquals(2,cp.width);
 		assertEquals(1,cp.height);
-		assertEquals("",cp.constraints);
+		assertSame(ConstraintSpec.EMPTY,cp.constraints);
+	}
+
+	@Test
+	public void testDuplicateNames() {
+		try {
+			new LayoutParser("{c1 c2}{c3 c1:wx1}");
+			fail("Expected an exception");
+		} catch (RuntimeException ex) {
+			assertEquals("Duplicate component name c1 in layout string.",ex.getMessage());
+		}
+	}
+
+	@Test
+	public void testManyNames() {
+		StringBuilder sb = new StringBuilder();
+		for (int row=0; row<100; ++row) {
+			sb.append('{');
+			for (int col=0; col<50; ++col) {
+				sb.append(" r").append(row).append('c').append(col);
+			}
+			sb.append('}');
+		}
+		LayoutParser lp = new LayoutParser(sb.toString());
+		for (int row=0; row<100; ++row) {
+			for (int col=0; col<50; ++col) {
+				LayoutComponent cp = lp.getComponentByName("r"+row+"c"+col);
+				assertEquals(row,cp.row);
+				assertEquals(col,cp.col);
+			}
+		}
+	}
+
+	@Test
+	public void testSpansCannotSkipGaps() {
+		try {
+			new LayoutParser("{c1 c2}{- c3}{| |}{c4 -}{| |}");
+			fail("Expected an exception");
+		} catch (RuntimeException ex) {
+			assertEquals("Component c1 does not form a rectangle at row 2, column 0 in layout string.",ex.getMessage());
+		}
+		LayoutParser lp = new LayoutParser("{c1 c2}{| c3}{| |}{c4 |}{| -}");
+		assertEquals(3,lp.getComponentByName("c1").height);
+		assertEquals(1,lp.getComponentByName("c2").height);
+		assertEquals(3,lp.getComponentByName("c3").height);
+		assertEquals(2,lp.getComponentByName("c4").height);
+	}
+
+	@Test
+	public void testBadGrids() {
+		String[][] bad = {
+				{ "{a + b}{| c}", "Component a overlaps another component at row 1, column 1 in layout string." },
+				{ "{a + b}{| | c}", "Component a overlaps another component at row 1, column 1 in layout string." },
+				{ "{a + b}{| +}", "Component a overlaps another component at row 1, column 1 in layout string." },
+				{ "{a b}{c + +}{| - |}", "Component c overlaps another component at row 2, column 2 in layout string." },
+				{ "{a}{| b + c}{- | | -}", "Component b overlaps another component at row 2, column 2 in layout string." },
+				{ "{+ a}", "Span at row 0, column 0 does not extend any component in layout string." },
+				{ "{a}{- +}", "Span at row 1, column 1 does not extend any component in layout string." },
+				{ "{a + b}{- | -}", "Span at row 1, column 1 does not extend any component in layout string." },
+				{ "{|}", "Span at row 0, column 0 does not extend any component in layout string." },
+				{ "{a - +}", "Component a does not form a rectangle at row 0, column 2 in layout string." },
+				{ "{a b}{c | +}", "Component c does not form a rectangle at row 1, column 2 in layout string." },
+				{ "{a}{-}{|}", "Component a does not form a rectangle at row 2, column 0 in layout string." },
+				{ "{a}*3{-}{|}", "Component a does not form a rectangle at row 4, column 0 in layout string." },
+				{ "{a b[{c + d}{| x}]}", "Component c overlaps another component at row 1, column 1 in layout string." },
+				{ "{:wx1}", "Empty component identifier at row 0, column 0 in layout string." },
+				{ "{a :fx}", "Empty component identifier at row 0, column 1 in layout string." },
+				{ "{a}}", "Unmatched '}' in layout string." },
+				{ "a}", "Unmatched '}' in layout string." },
+				{ "{{a}", "Row 0 is missing its '}' in layout string." },
+				{ "{a}{b", "Row 1 is missing its '}' in layout string." },
+				{ "{a b[{c]}", "Row 0 is missing its '}' in layout string." },
+		};
+		for (String[] test: bad) {
+			try {
+				new LayoutParser(test[0]);
+				fail("Expected an exception for "+test[0]);
+			} catch (RuntimeException ex) {
+				assertEquals(test[0],test[1],ex.getMessage());
+			}
+		}
+		// Interior cells of a large component are '-', and a repeated
+		// row can extend it.
+		LayoutParser lp = new LayoutParser("{a + + b}{| - - c}*3{| - - d#}{e f + +}");
+		assertEquals(5,lp.getComponentByName("a").height);
+		assertEquals(3,lp.getComponentByName("a").width);
+		assertEquals(5,lp.getComponentByName("f").row);
+	}
+
+	@Test
+	public void testSpanParseTimeIsLinear() {
+		// Parse time per row should not grow with the number of rows.
+		long shortTime = bestParseTime(spanLayout(125));
+		long longTime = bestParseTime(spanLayout(500));
+		LayoutParser lp = new LayoutParser(spanLayout(500));
+		assertEquals(501,lp.getComponentByName("c19").height);
+		assertTrue("125 rows: "+shortTime+"ns, 500 rows: "+longTime+"ns",longTime < 10 * shortTime);
+	}
+
+	// A row of components, each spanning the given number of rows below.
+	private static String spanLayout(int rows) {
+		StringBuilder sb = new StringBuilder("{");
+		for (int col=0; col<20; ++col) {
+			sb.append(" c").append(col);
+		}
+		sb.append('}');
+		for (int row=0; row<rows; ++row) {
+			sb.append("{| | | | | | | | | | | | | | | | | | | |}");
+		}
+		return sb.toString();
+	}
+
+	private static long bestParseTime(String layout) {
+		long best = Long.MAX_VALUE;
+		for (int trial=0; trial<20; ++trial) {
+			long start = System.nanoTime();
+			for (int ii=0; ii<10; ++ii) {
+				new LayoutParser(layout);
+			}
+			best = Math.min(best,System.nanoTime() - start);
+		}
+		return best;
 	}
 
+	@Test
+	public void testNamesAreCreatedLazily() {
+		CountingSequence text = new CountingSequence("{alpha:wx1 + beta}{| - gamma}");
+		LayoutParser lp = new LayoutParser(text);
+		assertNull(lp.getComponentByName("alph"));
+		LayoutComponent beta = lp.getComponentByName("beta");
+		assertEquals(2,beta.col);
+		assertEquals(0,text.copies);
+		assertEquals("beta",beta.getName());
+		assertSame(beta.getName(),beta.getName());
+		assertEquals(1,text.copies);
+		assertEquals(2,lp.getComponentByName("alpha").height);
+	}
+
+	@Test
+	public void testMappedFiles() throws Exception {
+		Path file = Files.createTempFile("layout",".txt");
+		try {
+			Files.write(file,"{c1:fx + c2}{| - c3}".getBytes(StandardCharsets.UTF_8));
+			CharSequence text = LayoutFiles.map(file,StandardCharsets.UTF_8);
+			assertTrue(text instanceof LayoutFiles.AsciiSequence);
+			LayoutParser lp = new LayoutParser(text);
+			assertEquals(2,lp.getComponentByName("c1").width);
+			assertEquals("c3",lp.getComponentByName("c3").getName());
+			assertEquals("{c1:fx + c2}",text.subSequence(0,12).toString());
+
+			Files.write(file,"{\u00e9t\u00e9 + c2}".getBytes(StandardCharsets.UTF_8));
+			text = LayoutFiles.map(file,StandardCharsets.UTF_8);
+			assertTrue(text instanceof String);
+			assertEquals(2,new LayoutParser(text).getComponentByName("\u00e9t\u00e9").width);
+		} finally {
+			Files.delete(file);
+		}
+	}
+
+	@Test
+	public void testChangeableTextIsCopied() {
+		StringBuilder sb = new StringBuilder("{alpha beta}");
+		CompiledLayout layout = CompiledLayout.compile(sb);
+		sb.replace(1,6,"gamma");
+		assertEquals("alpha",layout.getComponent("alpha").getName());
+		assertNull(layout.getComponent("gamma"));
+		String text = "{alpha beta}";
+		assertSame(text,LayoutFiles.unchanging(text));
+	}
+
+	// A CharSequence that counts the copies made of parts of it.
+	private static class CountingSequence implements CharSequence {
+		CountingSequence(String text) {
+			this.text = text;
+		}
+		@Override
+		public int length() {
+			return text.length();
+		}
+		@Override
+		public char charAt(int index) {
+			return text.charAt(index);
+		}
+		@Override
+		public CharSequence subSequence(int start,int end) {
+			++copies;
+			return text.subSequence(start,end);
+		}
+		@Override
+		public String toString() {
+			++copies;
+			return text;
+		}
+		final String text;
+		int copies;
+	}
+
+	@Test
+	public void testEmbeddedConstraints() {
+		LayoutParser lp = new LayoutParser("{c1:anw,px3,wx1.5 c2:}");
+		assertEquals(ConstraintParser.compile("anchor nw ipadx 3 weightx 1.5"),
+				lp.getComponentByName("c1").constraints);
+		assertSame(ConstraintSpec.EMPTY,lp.getComponentByName("c2").constraints);
+		try {
+			new LayoutParser("{c1:zz1}");
+			fail("Expected an exception");
+		} catch (RuntimeException ex) {
+			assertEquals("Could not intepret embedded constraint zz1",ex.getMessage());
+		}
+	}
+
+	@Test
+	public void testParallelParse() {
+		String layout = generatedLayout("r",2000,20);
+		assertTrue(layout.length() > 10 * LayoutParser.BLOCK_SIZE);
+		LayoutParser sequential = new LayoutParser(layout);
+		LayoutParser parallel = new LayoutParser(layout,ForkJoinPool.commonPool());
+		for (int row=0; row<2000; ++row) {
+			for (int col=0; col<20; ++col) {
+				String name = "r"+row+"c"+col;
+				LayoutComponent expected = sequential.getComponentByName(name);
+				LayoutComponent cp = parallel.getComponentByName(name);
+				if (expected == null) {
+					assertNull(cp);
+				} else {
+					assertEquals(name,cp.getName());
+					assertEquals(expected.row,cp.row);
+					assertEquals(expected.col,cp.col);
+					assertEquals(expected.width,cp.width);
+					assertEquals(expected.height,cp.height);
+					assertSame(expected.constraints,cp.constraints);
+				}
+			}
+		}
+		// Column 0 is one component spanning every block.
+		assertEquals(2000,parallel.getComponentByName("r0c0").height);
+		// Small layouts are a single block.
+		assertEquals(2,new LayoutParser("{c1}{|}",ForkJoinPool.commonPool()).getComponentByName("c1").height);
+	}
+
+	@Test
+	public void testParallelParseErrors() {
+		String layout = generatedLayout("r",1000,20);
+		String[] badLayouts = {
+				layout + "{r0c1}",
+				layout + "{ bad:zz1 }" + layout,
+				layout + layout + "{ bad:zz1 }",
+				"{r999c1}" + layout,
+				crossBlock("{ wide + }","{ | - }","{ | x }"),
+				crossBlock("{ wide + }","{ | - }","{ | - }{ | x }{ y z }"),
+				crossBlock("{ a }","{ | }","{ | | }"),
+				crossBlock("{ a b }","{ | - }","{ | | }"),
+				crossBlock("{ a b }{ - b2 }","{ - | }","{ | - }"),
+				crossBlock("{ wide + }","{ | - }","{ | x bad:zz1 }"),
+		};
+		for (String bad: badLayouts) {
+			String expected = null;
+			try {
+				new LayoutParser(bad);
+				fail("Expected an exception for "+bad.substring(0,Math.min(bad.length(),40)));
+			} catch (RuntimeException ex) {
+				expected = ex.getMessage();
+			}
+			try {
+				new LayoutParser(bad,ForkJoinPool.commonPool());
+				fail("Expected an exception");
+			} catch (RuntimeException ex) {
+				assertEquals(expected,ex.getMessage());
+			}
+		}
+	}
+
+	@Test
+	public void testParallelParseErrorsMatchSequential() {
+		String[][] fixed = {
+				{ "{ c0 + +}", "{ | < ^}" },
+				{ "{ c0 + -}", "{ | + - c1 |}", "{ + | -}" },
+				{ "{ c0}", "{ c1 c2 < - c3}", "{ - | < < -}" },
+		};
+		for (String[] rows: fixed) {
+			assertSameError(separateBlocks(rows));
+		}
+		// Random rows, each in a block of its own.
+		String[] cells = { "+", "<", "|", "^", "-", "|", "-", "q:zz1", "[{s}]", "]", "*", "x:wx1", "{", "}", ":wx1" };
+		Random rnd = new Random(22);
+		for (int ii=0; ii<2000; ++ii) {
+			String[] rows = new String[1 + rnd.nextInt(4)];
+			int name = 0;
+			for (int row=0; row<rows.length; ++row) {
+				StringBuilder sb = new StringBuilder((rnd.nextInt(8) == 0) ? "*2{" : "{");
+				for (int col=rnd.nextInt(5); col>=0; --col) {
+					sb.append(' ');
+					if (rnd.nextInt(3) == 0) {
+						sb.append('c').append((rnd.nextInt(10) == 0) ? 0 : name++);
+					} else {
+						sb.append(cells[rnd.nextInt(cells.length)]);
+					}
+				}
+				rows[row] = sb.append('}').toString();
+			}
+			assertSameError(separateBlocks(rows));
+		}
+	}
+
+	// Parse a layout sequentially and in parallel, checking that both
+	// report the same error, or none.
+	private static void assertSameError(String layout) {
+		String expected = null;
+		try {
+			new LayoutParser(layout);
+		} catch (RuntimeException ex) {
+			expected = ex.getMessage();
+		}
+		try {
+			new LayoutParser(layout,ForkJoinPool.commonPool());
+			assertNull(expected);
+		} catch (RuntimeException ex) {
+			assertEquals(layout.replaceAll("\\s+"," "),expected,ex.getMessage());
+		}
+	}
+
+	// A layout with each row in a block of its own.
+	private static String separateBlocks(String... rows) {
+		char[] gap = new char[LayoutParser.BLOCK_SIZE + 1];
+		Arrays.fill(gap,' ');
+		return String.join(new String(gap),rows);
+	}
+
+	// A layout whose middle rows fill several blocks, so that spans in
+	// its last rows extend components in its first block.
+	private static String crossBlock(String first,String middle,String last) {
+		StringBuilder sb = new StringBuilder(first);
+		while (sb.length() < 3 * LayoutParser.BLOCK_SIZE) {
+			sb.append(middle).append('\n');
+		}
+		return sb.append(last).toString();
+	}
+
+	// A generated layout mixing components, constraints, gaps and spans
+	// in both directions. Column 0 holds one component spanning every row.
+	private static String generatedLayout(String prefix,int rows,int cols) {
+		StringBuilder sb = new StringBuilder();
+		// The width of the component at each column in the previous
+		// row and in this one, or 0 where no component starts.
+		int[] above = new int[cols];
+		int[] widths = new int[cols];
+		for (int row=0; row<rows; ++row) {
+			sb.append("{");
+			Arrays.fill(widths,0);
+			// The column of the component a '+' can extend, or -1.
+			int current = -1;
+			for (int col=0; col<cols; ) {
+				int kind = (row * 7 + col * 13) % 11;
+				if ((above[col] > 0) && ((col == 0) || (kind < 3))) {
+					sb.append(" |");
+					for (int ii=1; ii<above[col]; ++ii) {
+						sb.append(" -");
+					}
+					widths[col] = above[col];
+					col += above[col];
+					current = -1;
+				} else if ((current >= 0) && (kind == 3)) {
+					sb.append(" +");
+					++widths[current];
+					++col;
+				} else if ((col > 0) && (kind == 4)) {
+					sb.append(" -");
+					current = -1;
+					++col;
+				} else {
+					sb.append(' ').append(prefix).append(row).append('c').append(col);
+					if (kind > 7) {
+						sb.append(":wx1,a").append("nsew".charAt(col % 4));
+					}
+					widths[col] = 1;
+					current = col;
+					++col;
+				}
+			}
+			sb.append(" }\n");
+			int[] tmp = above;
+			above = widths;
+			widths = tmp;
+		}
+		return sb.toString();
+	}
+
+	@Test
+	public void testRepeatedRows() {
+		LayoutParser lp = new LayoutParser("{side title:fx +}*1000{| lbl_# fld_#:wx1}{| ok +}");
+		assertEquals(1002,lp.getComponentByName("side").height);
+		LayoutComponent cp = lp.getComponentByName("lbl_0");
+		assertEquals("lbl_0",cp.getName());
+		assertEquals(1,cp.row);
+		assertEquals(1,cp.col);
+		cp = lp.getComponentByName("fld_999");
+		assertEquals(1000,cp.row);
+		assertEquals(2,cp.col);
+		assertEquals(ConstraintParser.compile("wx 1"),cp.constraints);
+		assertEquals(1001,lp.getComponentByName("ok").row);
+		assertEquals(2,lp.getComponentByName("ok").width);
+		assertNull(lp.getComponentByName("lbl_1000"));
+		assertNull(lp.getComponentByName("lbl_01"));
+		assertNull(lp.getComponentByName("lbl_"));
+		assertNull(lp.getComponentByName("lbl_#"));
+		assertNull(lp.getComponentByName("lbl_x"));
+
+		// Several marks get the same index.
+		lp = new LayoutParser("*20{a#b# -}");
+		assertEquals(12,lp.getComponentByName("a12b12").row);
+		assertNull(lp.getComponentByName("a12b13"));
+		assertNull(lp.getComponentByName("a1b12"));
+
+		// Outside a repeated row, # is an ordinary character.
+		assertEquals(0,new LayoutParser("{a_#}").getComponentByName("a_#").row);
+
+		// Repeated components whose copies' names cannot meet.
+		lp = new LayoutParser("*10{x#}*5{x1#}*3{a#b}*3{a1#b}*9{p#_#}*9{p1#}*1{z#0}*10{z#}");
+		assertEquals(10,lp.getComponentByName("x10").row);
+		assertEquals(9,lp.getComponentByName("x9").row);
+		assertEquals(39,lp.getComponentByName("z00").row);
+
+		// Within a row, * starts an identifier.
+		lp = new LayoutParser("{a *b}*2{c# d*#}");
+		assertEquals(1,lp.getComponentByName("*b").col);
+		assertEquals(2,lp.getComponentByName("d*1").row);
+		// Even a *N{ within a row, which the parallel parse must not
+		// split at, so that it reports the '{' as the same error.
+		StringBuilder sb = new StringBuilder();
+		for (int row=0; sb.length()<3*LayoutParser.BLOCK_SIZE; ++row) {
+			sb.append("{r").append(row).append(" *").append(row).append("{x").append(row).append("}\n");
+		}
+		sb.append("*2{t#}");
+		try {
+			new LayoutParser(sb.toString(),ForkJoinPool.commonPool());
+			fail("Expected an exception");
+		} catch (RuntimeException ex) {
+			assertEquals("Row 0 is missing its '}' in layout string.",ex.getMessage());
+		}
+		assertSameError(sb.toString());
+	}
+
+	@Test
+	public void testRepeatedRowsAreNotExpanded() {
+		// A billion copies cost no more than one.
+		LayoutParser lp = new LayoutParser("{top}*1000000000{| row#}{| bottom}");
+		assertEquals(1000000000,lp.getComponentByName("row999999999").row);
+		assertEquals(1000000002,lp.getComponentByName("top").height);
+		assertEquals(1000000001,lp.getComponentByName("bottom").row);
+
+		// Nor does checking names of the same shape that cannot clash.
+		lp = new LayoutParser("{r3}*100000000{r1#}*100000000{r2#}*100000000{r#_}");
+		assertEquals(200000000,lp.getComponentByName("r299999999").row);
+		assertEquals(200000008,lp.getComponentByName("r7_").row);
+		assertNull(lp.getComponentByName("r3_x"));
+	}
+
+	@Test
+	public void testRepeatedRowErrors() {
+		String[][] cases = {
+				{ "*3{a}", "Duplicate component name a in layout string." },
+				{ "{a_5}*10{a_#}", "Duplicate component name a_5 in layout string." },
+				{ "*10{a_#}{a_3}", "Duplicate component name a_3 in layout string." },
+				{ "*10{a_#}*5{a_#}", "Duplicate component name a_0 in layout string." },
+				{ "*20{x#}*5{x1#}", "Duplicate component name x10 in layout string." },
+				{ "*5{x1#}*20{x#}", "Duplicate component name x10 in layout string." },
+				{ "*12{a#b}*3{a1#b}", "Duplicate component name a10b in layout string." },
+				{ "*200{p#_#}*2000{p1#_1#}", "Duplicate component name p10_10 in layout string." },
+				{ "*1000000000{r#}*1000000000{r1#}", "Duplicate component name r10 in layout string." },
+				{ "*2{a#}{|}", "Component a# is in a repeated row and cannot span rows in layout string." },
+				{ "*0{a}", "A row repeat count must be a positive number followed by '{' in layout string." },
+				{ "*{a}", "A row repeat count must be a positive number followed by '{' in layout string." },
+				{ "*3 {a}", "A row repeat count must be a positive number followed by '{' in layout string." },
+		};
+		for (String[] test: cases) {
+			try {
+				new LayoutParser(test[0]);
+				fail("Expected an exception for "+test[0]);
+			} catch (RuntimeException ex) {
+				assertEquals(test[1],ex.getMessage());
+			}
+		}
+	}
+
+	@Test
+	public void testParallelParseWithRepeatedRows() {
+		StringBuilder sb = new StringBuilder(generatedLayout("r",1000,20));
+		sb.append("*5000{ |");
+		for (int col=1; col<20; ++col) {
+			sb.append(" t#c").append(col);
+		}
+		sb.append(" }\n{ |");
+		for (int col=1; col<20; ++col) {
+			sb.append(" u").append(col);
+		}
+		sb.append(" }\n");
+		sb.append(generatedLayout("s",1000,20).replaceFirst("\\{ s0c0","{ |"));
+		String layout = sb.toString();
+		LayoutParser sequential = new LayoutParser(layout);
+		LayoutParser parallel = new LayoutParser(layout,ForkJoinPool.commonPool());
+		assertEquals(7001,parallel.getComponentByName("r0c0").height);
+		for (String name: new String[] { "r0c1", "t0c1", "t4999c19", "u1", "s0c1", "s999c1" }) {
+			LayoutComponent expected = sequential.getComponentByName(name);
+			LayoutComponent cp = parallel.getComponentByName(name);
+			assertEquals(name,cp.getName());
+			assertEquals(expected.row,cp.row);
+			assertEquals(expected.col,cp.col);
+			assertEquals(expected.width,cp.width);
+			assertEquals(expected.height,cp.height);
+		}
+		assertEquals(6001,parallel.getComponentByName("s0c1").row);
+		assertEquals(sequential.getComponentByName("u7").height,parallel.getComponentByName("u7").height);
+		// A span below a repeated row is reported in a later block.
+		String bad = layout.replace("{ | u1","{ | |");
+		for (ForkJoinPool pool: new ForkJoinPool[] { null, ForkJoinPool.commonPool() }) {
+			try {
+				if (pool == null) {
+					new LayoutParser(bad);
+				} else {
+					new LayoutParser(bad,pool);
+				}
+				fail("Expected an exception");
+			} catch (RuntimeException ex) {
+				assertEquals("Component t#c1 is in a repeated row and cannot span rows in layout string.",ex.getMessage());
+			}
+		}
+	}
+
+	@Test
+	public void testSubLayouts() {
+		LayoutParser lp = new LayoutParser(
+				"{title + +}"+
+				"{form:fxy [ {nameLbl name:fx}{buttons [{ok cancel}] +} ] + side}"+
+				"{| - ok}");
+		LayoutComponent form = lp.getComponentByName("form");
+		assertEquals(2,form.getWidth());
+		assertEquals(2,form.getHeight());
+		assertEquals(ConstraintParser.compile("fill xy"),form.constraints);
+		assertEquals(2,lp.getComponentByName("side").getColumn());
+		// Sub-layout components have their own positions and names.
+		assertNull(lp.getComponentByName("nameLbl"));
+		assertEquals(2,lp.getComponentByName("ok").getRow());
+		CompiledLayout sub = form.getSubLayout();
+		assertEquals(1,sub.getComponent("name").getColumn());
+		LayoutComponent buttons = sub.getComponent("buttons");
+		assertEquals(1,buttons.getRow());
+		assertEquals(2,buttons.getWidth());
+		assertEquals(1,buttons.getSubLayout().getComponent("cancel").getColumn());
+		assertEquals(0,buttons.getSubLayout().getComponent("ok").getRow());
+		assertNull(lp.getComponentByName("side").getSubLayout());
+		assertEquals(1,lp.getSubLayoutComponents().size());
+		assertEquals(1,sub.subLayoutComponents().size());
+
+		try {
+			new LayoutParser("{a b[{c d}{d}] }");
+			fail("Expected an exception");
+		} catch (RuntimeException ex) {
+			assertEquals("Duplicate component name d in layout string.",ex.getMessage());
+		}
+		try {
+			CompiledLayout.compileCompact("{a b[{c d}]}");
+			fail("Expected an exception");
+		} catch (RuntimeException ex) {
+			assertEquals("Component b holds a sub-layout, which a compact layout cannot store.",ex.getMessage());
+		}
+	}
+
+	@Test
+	public void testParallelParseWithSubLayouts() {
+		// A sub-layout larger than a block is kept in one block.
+		String layout = generatedLayout("r",500,10).replaceFirst(" r0c1",
+				" r0c1[\n"+generatedLayout("s",1000,20)+"]")+
+				"{ | inner[{x}{|}] }";
+		assertTrue(layout.length() > 10 * LayoutParser.BLOCK_SIZE);
+		LayoutParser sequential = new LayoutParser(layout);
+		LayoutParser parallel = new LayoutParser(layout,ForkJoinPool.commonPool());
+		assertEquals(501,parallel.getComponentByName("r0c0").height);
+		assertEquals(2,parallel.getSubLayoutComponents().size());
+		for (String name: new String[] { "s0c0", "s999c1", "s500c7" }) {
+			LayoutComponent expected = sequential.getComponentByName("r0c1").getSubLayout().getComponent(name);
+			LayoutComponent cp = parallel.getComponentByName("r0c1").getSubLayout().getComponent(name);
+			assertEquals(expected.toString(),cp.toString());
+		}
+		assertEquals(1000,parallel.getComponentByName("r0c1").getSubLayout().getComponent("s0c0").height);
+		assertEquals(2,parallel.getComponentByName("inner").getSubLayout().getComponent("x").height);
+	}
 }
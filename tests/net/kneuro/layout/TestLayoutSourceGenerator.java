@@ -0,0 +1,182 @@
+/**
+ * Copyright (c) 2018 Joseph A Knapka
+ *
+ * This code is released under the terms of the MIT License.
+ */
+package net.kneuro.layout;
+
+import static org.junit.Assert.*;
+
+import org.junit.Assume;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.awt.GridBagConstraints;
+import java.io.File;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+import javax.swing.JLabel;
+import javax.swing.JPanel;
+import javax.tools.JavaCompiler;
+import javax.tools.ToolProvider;
+
+/**
+ * Tests for the LayoutSourceGenerator class.
+ *
+ * @author jk
+ */
+public class TestLayoutSourceGenerator {
+
+	@Rule
+	public TemporaryFolder tmp = new TemporaryFolder();
+
+	private static final String LAYOUT =
+			"{c1 + + c2:@genField}{c3:wx1,wy2,i*5,fxy + c4 +}{| - - c5:an,px3}{| - c6:fx +}*3{row# - - -}";
+
+	static {
+		ConstraintStyles.define("genField","fill x","weightx",1.5);
+	}
+
+	@Test
+	public void testGeneratedConstraints() throws Exception {
+		Class<?> generated = compile("demo","DemoLayout",
+				LayoutSourceGenerator.generate("demo","DemoLayout","demo/demo.layout",LAYOUT));
+		Method constraints = generated.getMethod("constraints",String.class);
+
+		JPanel pnl = new JPanel();
+		Gridder gr = new Gridder(pnl);
+		gr.parseLayout(LAYOUT);
+		for (String name: new String[] { "c1", "c2", "c3", "c4", "c5", "c6", "row0", "row2" }) {
+			JLabel lbl = new JLabel(name);
+			gr.add(name,lbl);
+			assertEquals(name,expected(TestGridder.constraintsOf(pnl,lbl)),
+					expected((GridBagConstraints)constraints.invoke(null,name)));
+		}
+
+		try {
+			constraints.invoke(null,"row3");
+			fail("Expected an exception");
+		} catch (InvocationTargetException ex) {
+			assertTrue(ex.getCause() instanceof IllegalArgumentException);
+			assertEquals("No component named row3 in demo/demo.layout.",ex.getCause().getMessage());
+		}
+
+		// Only the layout's fields are changed.
+		GridBagConstraints gbc = new GridBagConstraints();
+		gbc.weighty = 4;
+		assertEquals(Boolean.TRUE,generated.getMethod("apply",String.class,GridBagConstraints.class).invoke(null,"c1",gbc));
+		assertEquals(4.0,gbc.weighty,0.0);
+		assertEquals(3,gbc.gridwidth);
+	}
+
+	@Test
+	public void testManyComponents() throws Exception {
+		// Enough for several nested classes.
+		int rows = 2 * LayoutSourceGenerator.COMPONENTS_PER_METHOD * LayoutSourceGenerator.METHODS_PER_CLASS / 20 + 1;
+		StringBuilder sb = new StringBuilder();
+		for (int row=0; row<rows; ++row) {
+			sb.append("{");
+			for (int col=0; col<20; ++col) {
+				sb.append(" r").append(row).append('c').append(col);
+			}
+			sb.append("}");
+		}
+		Class<?> generated = compile("","ManyLayout",
+				LayoutSourceGenerator.generate("","ManyLayout","many.layout",sb));
+		Method constraints = generated.getMethod("constraints",String.class);
+		for (int row=0; row<rows; ++row) {
+			for (int col=0; col<20; ++col) {
+				GridBagConstraints gbc = (GridBagConstraints)constraints.invoke(null,"r"+row+"c"+col);
+				assertEquals(row,gbc.gridy);
+				assertEquals(col,gbc.gridx);
+			}
+		}
+		Method apply = generated.getMethod("apply",String.class,GridBagConstraints.class);
+		assertEquals(Boolean.FALSE,apply.invoke(null,"r"+rows+"c0",new GridBagConstraints()));
+	}
+
+	@Test
+	public void testRepeatedRows() throws Exception {
+		String source = LayoutSourceGenerator.generate("","RepeatedLayout","repeated.layout",
+				"{title + +}*100000{lbl_# fld_#:fx x#_#}{side}");
+		// The copies are not written out.
+		assertTrue(source.length() < 10000);
+		Class<?> generated = compile("","RepeatedLayout",source);
+		Method apply = generated.getMethod("apply",String.class,GridBagConstraints.class);
+		GridBagConstraints gbc = new GridBagConstraints();
+		assertEquals(Boolean.TRUE,apply.invoke(null,"fld_99999",gbc));
+		assertEquals(100000,gbc.gridy);
+		assertEquals(1,gbc.gridx);
+		assertEquals(GridBagConstraints.HORIZONTAL,gbc.fill);
+		assertEquals(Boolean.TRUE,apply.invoke(null,"x12_12",gbc));
+		assertEquals(13,gbc.gridy);
+		assertEquals(2,gbc.gridx);
+		assertEquals(Boolean.TRUE,apply.invoke(null,"lbl_0",gbc));
+		assertEquals(1,gbc.gridy);
+		assertEquals(Boolean.TRUE,apply.invoke(null,"side",gbc));
+		assertEquals(100001,gbc.gridy);
+		for (String missing: new String[] { "fld_100000", "fld_01", "fld_", "fld_x", "x1_2", "lbl_#", "title0" }) {
+			assertEquals(missing,Boolean.FALSE,apply.invoke(null,missing,gbc));
+		}
+	}
+
+	@Test
+	public void testClassNames() {
+		assertEquals("OrderEntryLayout",LayoutSourceGenerator.className("order-entry.layout"));
+		assertEquals("MainLayout",LayoutSourceGenerator.className("main.layout"));
+		assertEquals("MainWindowLayout",LayoutSourceGenerator.className("main_window.layout"));
+		assertEquals("_2colLayout",LayoutSourceGenerator.className("2col.layout"));
+	}
+
+	@Test
+	public void testMain() throws Exception {
+		Path src = tmp.newFolder("src").toPath();
+		Path out = tmp.getRoot().toPath().resolve("gen");
+		Files.createDirectories(src.resolve("com/example"));
+		Files.write(src.resolve("com/example/order-entry.layout"),
+				"{nameLbl nameFld:fx + }".getBytes(StandardCharsets.UTF_8));
+		LayoutSourceGenerator.main(new String[] { src.toString(), out.toString() });
+		String source = new String(Files.readAllBytes(out.resolve("com/example/OrderEntryLayout.java")),
+				StandardCharsets.UTF_8);
+		assertTrue(source.contains("package com.example;"));
+		assertTrue(source.contains("public final class OrderEntryLayout"));
+		assertTrue(source.contains("case \"nameFld\":\n\t\t\t\tgbc.fill = 2;\n\t\t\t\tgbc.gridwidth = 2;\n"));
+
+		Files.createDirectories(src.resolve("bad-dir"));
+		Files.write(src.resolve("bad-dir/x.layout"),"{a}".getBytes(StandardCharsets.UTF_8));
+		try {
+			LayoutSourceGenerator.main(new String[] { src.toString(), out.toString() });
+			fail("Expected an exception");
+		} catch (RuntimeException ex) {
+			assertTrue(ex.getMessage(),ex.getMessage().endsWith("bad-dir is not a valid package name"));
+		}
+	}
+
+	// The fields a layout sets, for comparison.
+	private static String expected(GridBagConstraints gbc) {
+		return Arrays.asList(gbc.gridx,gbc.gridy,gbc.gridwidth,gbc.gridheight,gbc.weightx,gbc.weighty,
+				gbc.anchor,gbc.fill,gbc.ipadx,gbc.ipady,gbc.insets).toString();
+	}
+
+	// Compile a generated class and load it.
+	private Class<?> compile(String packageName,String className,String source) throws Exception {
+		JavaCompiler javac = ToolProvider.getSystemJavaCompiler();
+		Assume.assumeNotNull(javac);
+		File srcDir = tmp.newFolder();
+		File classes = tmp.newFolder();
+		Path file = srcDir.toPath().resolve(packageName.replace('.','/')).resolve(className + ".java");
+		Files.createDirectories(file.getParent());
+		Files.write(file,source.getBytes(StandardCharsets.UTF_8));
+		assertEquals(source,0,javac.run(null,null,null,"-d",classes.getPath(),file.toString()));
+		ClassLoader loader = new URLClassLoader(new URL[] { classes.toURI().toURL() },null);
+		return loader.loadClass(packageName.isEmpty() ? className : packageName + "." + className);
+	}
+}
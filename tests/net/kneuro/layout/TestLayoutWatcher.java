@@ -0,0 +1,83 @@
+/**
+ * Copyright (c) 2018 Joseph A Knapka
+ *
+ * This code is released under the terms of the MIT License.
+ */
+package net.kneuro.layout;
+
+import static org.junit.Assert.*;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.awt.GridBagConstraints;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.BooleanSupplier;
+
+import javax.swing.JLabel;
+import javax.swing.JPanel;
+import javax.swing.SwingUtilities;
+
+/**
+ * Tests for the LayoutWatcher class.
+ *
+ * @author jk
+ */
+public class TestLayoutWatcher {
+
+	@Rule
+	public TemporaryFolder tmp = new TemporaryFolder();
+
+	@Test
+	public void testReload() throws Exception {
+		Path file = tmp.getRoot().toPath().resolve("form.layout");
+		write(file,"{lbl fld}");
+		JPanel pnl = new JPanel();
+		Gridder gr = new Gridder(pnl);
+		List<Exception> errors = new ArrayList<>();
+		try (LayoutWatcher watcher = gr.watchLayout(file,errors::add)) {
+			assertEquals(file.toAbsolutePath(),watcher.getFile());
+			JLabel lbl = new JLabel();
+			JLabel fld = new JLabel();
+			gr.add("lbl",lbl);
+			gr.add("fld",fld);
+			assertEquals(1,TestGridder.constraintsOf(pnl,fld).gridx);
+
+			write(file,"{lbl}{| fld:fx}");
+			waitFor(() -> TestGridder.constraintsOf(pnl,fld).gridy == 1);
+			GridBagConstraints gbc = TestGridder.constraintsOf(pnl,fld);
+			assertEquals(1,gbc.gridx);
+			assertEquals(GridBagConstraints.HORIZONTAL,gbc.fill);
+			assertEquals(2,TestGridder.constraintsOf(pnl,lbl).gridheight);
+
+			// A bad layout is reported and the old one kept.
+			write(file,"{lbl}{| other}");
+			waitFor(() -> !errors.isEmpty());
+			assertEquals("No component named fld in layout string.",errors.get(0).getMessage());
+			assertEquals(1,TestGridder.constraintsOf(pnl,fld).gridy);
+		}
+	}
+
+	private static void write(Path file,String text) throws Exception {
+		Files.write(file,text.getBytes(StandardCharsets.UTF_8));
+	}
+
+	// Wait until a condition, checked on the event thread, is true.
+	private static void waitFor(BooleanSupplier condition) throws Exception {
+		boolean[] result = new boolean[1];
+		long deadline = System.currentTimeMillis() + 20000;
+		while (System.currentTimeMillis() < deadline) {
+			SwingUtilities.invokeAndWait(() -> result[0] = condition.getAsBoolean());
+			if (result[0]) {
+				return;
+			}
+			Thread.sleep(20);
+		}
+		fail("Timed out waiting for the layout to be reloaded");
+	}
+}
@@ -0,0 +1,176 @@
+/**
+ * Copyright (c) 2018 Joseph A Knapka
+ *
+ * This code is released under the terms of the MIT License.
+ */
+package net.kneuro.layout;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.stream.Stream;
+
+/**
+ * Tests for the PrecompiledLayout class and the CompiledLayout methods
+ * that use it.
+ *
+ * @author jk
+ */
+public class TestPrecompiledLayout {
+
+	private static final String LAYOUT =
+			"{c1 + + c2:@tplField}{c3:wx1,wy2,i*5,fxy + c4 +}{| - - c5}{| - c6:fx +}*3{row# - - -}";
+
+	static {
+		ConstraintStyles.define("tplField","fill x","weightx",1);
+	}
+
+	@Test
+	public void testRoundTrip() throws IOException {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		CompiledLayout.precompile(LAYOUT,out);
+		CompactLayout read = PrecompiledLayout.read(new ByteArrayInputStream(out.toByteArray()));
+		LayoutParser expected = new LayoutParser(LAYOUT);
+		assertEquals(7,read.size());
+		assertEquals(9,read.componentCount());
+		for (String name: new String[] { "c1", "c2", "c3", "c4", "c5", "c6", "row0", "row2" }) {
+			LayoutComponent cp = expected.getComponentByName(name);
+			LayoutComponent readCp = read.getComponent(name);
+			assertEquals(cp.row,readCp.row);
+			assertEquals(cp.col,readCp.col);
+			assertEquals(cp.width,readCp.width);
+			assertEquals(cp.height,readCp.height);
+			// Specs are interned as they are read.
+			assertSame(cp.constraints,readCp.constraints);
+		}
+		assertNull(read.getComponent("row3"));
+	}
+
+	@Test
+	public void testRepeatedRowsAreNotExpanded() throws IOException {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		CompiledLayout.precompile("{title +}*100000{lbl_# fld_#:fx}",out);
+		assertTrue(out.size() < 200);
+		CompactLayout read = PrecompiledLayout.read(new ByteArrayInputStream(out.toByteArray()));
+		assertEquals(200001,read.componentCount());
+		LayoutComponent fld = read.getComponent("fld_99999");
+		assertEquals(100000,fld.row);
+		assertEquals(1,fld.col);
+		assertEquals(ConstraintParser.compile("fill x"),fld.constraints);
+	}
+
+	@Test
+	public void testBadStreams() throws IOException {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		CompiledLayout.precompile(LAYOUT,out);
+		byte[] bytes = out.toByteArray();
+
+		// Another version is not read.
+		byte[] otherVersion = bytes.clone();
+		otherVersion[7] = (byte)(PrecompiledLayout.VERSION + 1);
+		assertNull(PrecompiledLayout.read(new ByteArrayInputStream(otherVersion)));
+		assertNull(PrecompiledLayout.read(new ByteArrayInputStream("{c1}".getBytes(StandardCharsets.UTF_8))));
+
+		try {
+			PrecompiledLayout.read(new ByteArrayInputStream(Arrays.copyOf(bytes,bytes.length - 1)));
+			fail("Expected an exception");
+		} catch (IOException ex) {
+			assertEquals("Truncated precompiled layout",ex.getMessage());
+		}
+	}
+
+	@Test
+	public void testBuildLeavesSomeLayoutsToLoadTime() throws IOException {
+		Path dir = Files.createTempDirectory("layouts");
+		try {
+			Path src = dir.resolve("src/demo");
+			Files.createDirectories(src);
+			Files.write(src.resolve("plain.layout"),"{a b}".getBytes(StandardCharsets.UTF_8));
+			Files.write(src.resolve("nested.layout"),"{c1[{a b}{c d}] c2}".getBytes(StandardCharsets.UTF_8));
+			Files.write(src.resolve("styled.layout"),"{a:@tplField b}".getBytes(StandardCharsets.UTF_8));
+			Path classes = dir.resolve("classes");
+			Path generated = dir.resolve("gen");
+			// A precompiled form left by an earlier build.
+			Files.createDirectories(classes.resolve("demo"));
+			Files.write(classes.resolve("demo/nested.layout.bin"),new byte[] { 1 });
+
+			// The precompile-layouts and generate-layouts steps.
+			PrecompiledLayout.main(new String[] { dir.resolve("src").toString(), classes.toString() });
+			LayoutSourceGenerator.main(new String[] { dir.resolve("src").toString(), generated.toString() });
+			assertTrue(Files.isRegularFile(classes.resolve("demo/plain.layout.bin")));
+			assertFalse(Files.exists(classes.resolve("demo/nested.layout.bin")));
+			assertFalse(Files.exists(classes.resolve("demo/styled.layout.bin")));
+			assertTrue(Files.isRegularFile(generated.resolve("demo/PlainLayout.java")));
+			assertFalse(Files.exists(generated.resolve("demo/NestedLayout.java")));
+			assertFalse(Files.exists(generated.resolve("demo/StyledLayout.java")));
+
+			ClassLoader loader = new URLClassLoader(new URL[] { classes.toUri().toURL(), dir.resolve("src").toUri().toURL() },null);
+			CompiledLayout layout = CompiledLayout.load(loader,"demo/nested.layout");
+			assertNotNull(layout.parser());
+			assertEquals(1,layout.getComponent("c1").getSubLayout().getComponent("d").getRow());
+			assertNull(CompiledLayout.load(loader,"demo/plain.layout").parser());
+		} finally {
+			try (Stream<Path> files = Files.walk(dir)) {
+				files.sorted(Comparator.reverseOrder()).forEach(f -> f.toFile().delete());
+			}
+		}
+	}
+
+	@Test
+	public void testLoad() throws IOException {
+		Path dir = Files.createTempDirectory("layouts");
+		try {
+			Path src = dir.resolve("src/demo");
+			Files.createDirectories(src);
+			Files.write(src.resolve("detail.layout"),"{nameLbl nameFld:fx + }".getBytes(StandardCharsets.UTF_8));
+			// Styles are defined by the program, so this is not precompiled.
+			Files.write(src.resolve("styled.layout"),"{nameLbl nameFld:@tplField}".getBytes(StandardCharsets.UTF_8));
+			Path classes = dir.resolve("classes");
+			ClassLoader loader = new URLClassLoader(new URL[] { dir.resolve("src").toUri().toURL() },null);
+
+			// Without a precompiled form, the layout text is parsed.
+			CompiledLayout layout = CompiledLayout.load(loader,"demo/detail.layout");
+			assertNotNull(layout.parser());
+			assertEquals(2,layout.getComponent("nameFld").getWidth());
+
+			PrecompiledLayout.main(new String[] { dir.resolve("src").toString(), classes.toString() });
+			Path precompiled = classes.resolve("demo/detail.layout.bin");
+			assertTrue(Files.isRegularFile(precompiled));
+			loader = new URLClassLoader(new URL[] { classes.toUri().toURL(), dir.resolve("src").toUri().toURL() },null);
+			layout = CompiledLayout.load(loader,"demo/detail.layout");
+			assertNull(layout.parser());
+			assertEquals(2,layout.getComponent("nameFld").getWidth());
+			assertEquals(ConstraintParser.compile("fill x"),layout.getComponent("nameFld").constraints);
+
+			assertFalse(Files.exists(classes.resolve("demo/styled.layout.bin")));
+			layout = CompiledLayout.load(loader,"demo/styled.layout");
+			assertNotNull(layout.parser());
+			assertEquals(ConstraintStyles.get("tplField").spec(),layout.getComponent("nameFld").constraints);
+
+			layout = CompiledLayout.loadPrecompiled(precompiled);
+			assertEquals(1,layout.getComponent("nameFld").getColumn());
+
+			try {
+				CompiledLayout.load(loader,"demo/missing.layout");
+				fail("Expected an exception");
+			} catch (IOException ex) {
+				assertEquals("Layout resource demo/missing.layout not found",ex.getMessage());
+			}
+		} finally {
+			try (Stream<Path> files = Files.walk(dir)) {
+				files.sorted(Comparator.reverseOrder()).forEach(f -> f.toFile().delete());
+			}
+		}
+	}
+}
@@ -0,0 +1,257 @@
+/**
+ * Copyright (c) 2018 Joseph A Knapka
+ *
+ * This code is released under the terms of the MIT License.
+ */
+package net.kneuro.layout;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+import java.awt.GridBagConstraints;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
+import java.nio.channels.Channels;
+import java.nio.charset.StandardCharsets;
+
+import javax.swing.JLabel;
+import javax.swing.JPanel;
+
+/**
+ * Tests for the StreamingLayoutParser class.
+ *
+ * @author jk
+ */
+public class TestStreamingLayoutParser {
+
+	@Test
+	public void testEvents() {
+		EventLog log = new EventLog();
+		StreamingLayoutParser.parse("{c1 + c2}{| - c3:wx1}",log);
+		assertEquals("row0 def:c1@0,0 span0,1h:c1 def:c2@0,2 end0 "+
+				"row1 span1,0v:c1 cell1,1 fin:c2/1x1 def:c3@1,2 end1 "+
+				"fin:c1/2x2 fin:c3/1x1",log.toString().trim());
+	}
+
+	@Test
+	public void testSubLayouts() throws IOException {
+		EventLog log = new EventLog();
+		StreamingLayoutParser.parse("{c1 pnl:fx [{a b}{| c}] c2}{c3 | -}",log);
+		assertEquals("row0 def:c1@0,0 def:pnl@0,1 sub:pnl "+
+				"row0 def:a@0,0 def:b@0,1 end0 row1 span1,0v:a fin:b/1x1 def:c@1,1 end1 fin:a/1x2 fin:c/1x1 "+
+				"endsub:pnl def:c2@0,2 end0 "+
+				"row1 fin:c1/1x1 def:c3@1,0 span1,1v:pnl cell1,2 end1 "+
+				"fin:c3/1x1 fin:pnl/1x2 fin:c2/1x1",log.toString().trim());
+
+		// With no listener for it, a sub-layout is skipped.
+		log = new EventLog() {
+			@Override
+			public LayoutListener subLayoutStarted(LayoutComponent comp) {
+				return new LayoutListener() {};
+			}
+		};
+		StreamingLayoutParser.parse(new StringReader("{x[{y[{z}]}] w}"),log);
+		assertEquals("row0 def:x@0,0 endsub:x def:w@0,1 end0 fin:x/1x1 fin:w/1x1",log.toString().trim());
+
+		for (String[] bad: new String[][] {
+				{ "{a [{b}] [{c}]}", "A sub-layout must follow a component identifier in layout string." },
+				{ "{a b]}", "Unmatched ']' in layout string." },
+				{ "{a b[{c}{d}", "Missing ']' after the sub-layout of b in layout string." },
+				{ "*2{a#[{b}]}", "Component a# is in a repeated row and cannot hold a sub-layout in layout string." } }) {
+			try {
+				StreamingLayoutParser.parse(bad[0],new EventLog());
+				fail("Expected an exception for "+bad[0]);
+			} catch (RuntimeException ex) {
+				assertEquals(bad[1],ex.getMessage());
+			}
+		}
+	}
+
+	@Test
+	public void testRepeatedRows() {
+		EventLog log = new EventLog();
+		StreamingLayoutParser.parse("{c1 c2}*3{| lbl_#}{c3 -}",log);
+		assertEquals("row0 def:c1@0,0 def:c2@0,1 end0 "+
+				"row1 rep1x3 span1,0v:c1 fin:c2/1x1 def:lbl_#@1,1 end1 "+
+				"row4 fin:c1/1x4 def:c3@4,0 cell4,1 end4 "+
+				"fin:c3/1x1 fin:lbl_#/1x1",log.toString().trim());
+		final LayoutComponent[] lbl = new LayoutComponent[1];
+		StreamingLayoutParser.parse("*3{- lbl_#:wx1}",new LayoutListener() {
+			@Override
+			public void componentFinished(LayoutComponent comp) {
+				lbl[0] = comp;
+			}
+		});
+		assertEquals(3,lbl[0].getRepeatCount());
+		LayoutComponent copy = lbl[0].getRepetition(2);
+		assertEquals("lbl_2",copy.getName());
+		assertEquals(2,copy.getRow());
+		assertEquals(1,copy.getColumn());
+		assertEquals(0,copy.getRepeatCount());
+		assertSame(lbl[0].constraints,copy.constraints);
+		try {
+			lbl[0].getRepetition(3);
+			fail("Expected an exception");
+		} catch (IndexOutOfBoundsException ex) {
+			// Expected.
+		}
+	}
+
+	@Test
+	public void testReaderAcrossReads() throws IOException {
+		// A reader that returns one character per read() call.
+		final String layout = "{first:wx1,anw + second}*12{| - third_#}";
+		Reader trickle = new Reader() {
+			@Override
+			public int read(char[] cbuf,int off,int len) {
+				if (pos >= layout.length()) return -1;
+				cbuf[off] = layout.charAt(pos++);
+				return 1;
+			}
+			@Override
+			public void close() {
+			}
+			private int pos;
+		};
+		EventLog fromReader = new EventLog();
+		StreamingLayoutParser.parse(trickle,fromReader);
+		EventLog fromString = new EventLog();
+		StreamingLayoutParser.parse(layout,fromString);
+		assertEquals(fromString.toString(),fromReader.toString());
+		assertTrue(fromReader.toString().contains("def:first@0,0"));
+		assertTrue(fromReader.toString().contains("rep1x12"));
+	}
+
+	@Test
+	public void testChannel() throws IOException {
+		String layout = "{\u00e9t\u00e9 + hiver}";
+		EventLog log = new EventLog();
+		StreamingLayoutParser.parse(Channels.newChannel(new ByteArrayInputStream(layout.getBytes(StandardCharsets.UTF_8))),
+				StandardCharsets.UTF_8,log);
+		assertEquals("row0 def:\u00e9t\u00e9@0,0 span0,1h:\u00e9t\u00e9 def:hiver@0,2 end0 "+
+				"fin:\u00e9t\u00e9/2x1 fin:hiver/1x1",log.toString().trim());
+	}
+
+	@Test
+	public void testComponentsFinishWhileParsing() throws IOException {
+		// A generated layout that is never held in memory as a whole.
+		final int rows = 20000;
+		Reader generated = new Reader() {
+			@Override
+			public int read(char[] cbuf,int off,int len) {
+				if (line.length() == 0) {
+					if (row >= rows) return -1;
+					line.append("{r").append(row).append("a r").append(row).append("b:fx +}");
+					++row;
+				}
+				int n = Math.min(len,line.length());
+				line.getChars(0,n,cbuf,off);
+				line.delete(0,n);
+				return n;
+			}
+			@Override
+			public void close() {
+			}
+			private final StringBuilder line = new StringBuilder();
+			private int row;
+		};
+		final int[] counts = new int[3];
+		StreamingLayoutParser.parse(generated,new LayoutListener() {
+			@Override
+			public void componentDefined(LayoutComponent comp) {
+				++counts[0];
+				// Everything from two rows up has already been finished.
+				assertTrue(counts[1] >= 2 * (comp.row - 1));
+			}
+			@Override
+			public void componentFinished(LayoutComponent comp) {
+				++counts[1];
+				assertEquals((comp.col == 0) ? 1 : 2,comp.width);
+				assertEquals(1,comp.height);
+			}
+			@Override
+			public void rowStarted(int row) {
+				++counts[2];
+			}
+		});
+		assertEquals(2 * rows,counts[0]);
+		assertEquals(2 * rows,counts[1]);
+		assertEquals(rows,counts[2]);
+	}
+
+	@Test
+	public void testAddWhileParsing() {
+		JPanel pnl = new JPanel();
+		final Gridder gr = new Gridder(pnl,"anchor w");
+		final JLabel[] labels = new JLabel[2];
+		StreamingLayoutParser.parse("{c0:fx + c1}{| - -}",new LayoutListener() {
+			@Override
+			public void componentFinished(LayoutComponent comp) {
+				JLabel lbl = new JLabel(comp.getName());
+				labels[comp.getColumn() / 2] = lbl;
+				gr.add(comp,lbl,"wy",1);
+			}
+		});
+		GridBagConstraints gbc = TestGridder.constraintsOf(pnl,labels[0]);
+		assertEquals(2,gbc.gridwidth);
+		assertEquals(2,gbc.gridheight);
+		assertEquals(GridBagConstraints.HORIZONTAL,gbc.fill);
+		assertEquals(GridBagConstraints.WEST,gbc.anchor);
+		assertEquals(1.0,gbc.weighty,0.0);
+		gbc = TestGridder.constraintsOf(pnl,labels[1]);
+		assertEquals(2,gbc.gridx);
+		assertEquals(GridBagConstraints.NONE,gbc.fill);
+	}
+
+	// Records events in a compact form.
+	private static class EventLog implements LayoutListener {
+		@Override
+		public void rowStarted(int row) {
+			sb.append("row").append(row).append(' ');
+		}
+		@Override
+		public void rowRepeated(int row,int count) {
+			sb.append("rep").append(row).append('x').append(count).append(' ');
+		}
+		@Override
+		public void rowFinished(int row) {
+			sb.append("end").append(row).append(' ');
+		}
+		@Override
+		public void cell(int row,int col) {
+			sb.append("cell").append(row).append(',').append(col).append(' ');
+		}
+		@Override
+		public void span(int row,int col,boolean vertical,LayoutComponent comp) {
+			sb.append("span").append(row).append(',').append(col).append(vertical ? "v:" : "h:")
+				.append((comp != null) ? comp.getName() : "-").append(' ');
+		}
+		@Override
+		public void componentDefined(LayoutComponent comp) {
+			sb.append("def:").append(comp.getName()).append('@')
+				.append(comp.getRow()).append(',').append(comp.getColumn()).append(' ');
+		}
+		@Override
+		public void componentFinished(LayoutComponent comp) {
+			sb.append("fin:").append(comp.getName()).append('/')
+				.append(comp.getWidth()).append('x').append(comp.getHeight()).append(' ');
+		}
+		@Override
+		public LayoutListener subLayoutStarted(LayoutComponent comp) {
+			sb.append("sub:").append(comp.getName()).append(' ');
+			return this;
+		}
+		@Override
+		public void subLayoutFinished(LayoutComponent comp) {
+			sb.append("endsub:").append(comp.getName()).append(' ');
+		}
+		@Override
+		public String toString() {
+			return sb.toString();
+		}
+		private final StringBuilder sb = new StringBuilder();
+	}
+}